@@ -0,0 +1,207 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.benchmarks;
+
+import com.google.common.reflect.AbstractInvocationHandler;
+import me.shedaniel.architectury.event.Actor;
+import me.shedaniel.architectury.event.Event;
+import me.shedaniel.architectury.event.EventFactory;
+import me.shedaniel.architectury.event.KeyedEvent;
+import net.minecraft.world.InteractionResult;
+import net.minecraft.world.InteractionResultHolder;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Dispatch cost of every {@link EventFactory} flavor, listeners only pass so that every one of them is invoked.
+ * <p>
+ * The {@code proxy} benchmarks dispatch through reflective proxies like {@link EventFactory} did before it generated
+ * invokers, as the baseline for the generated ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDispatchBenchmark {
+    @Param({"0", "1", "10", "100"})
+    public int listeners;
+    private final Payload payload = new Payload();
+    private final Object key = new Object();
+    private Event<LoopListener> loop;
+    private Event<ResultListener> interactionResult;
+    private Event<HolderListener> interactionResultHolder;
+    private Event<Consumer<Payload>> consumerLoop;
+    private Event<Actor<Payload>> actorLoop;
+    private KeyedEvent<Object, ResultListener> keyed;
+    private Event<LoopListener> proxyLoop;
+    private Event<ResultListener> proxyInteractionResult;
+    private long sink;
+    
+    public interface LoopListener {
+        void invoke(int value);
+    }
+    
+    public interface ResultListener {
+        InteractionResult invoke(int value);
+    }
+    
+    public interface HolderListener {
+        InteractionResultHolder<Payload> invoke(int value);
+    }
+    
+    public static class Payload {
+        public long value;
+    }
+    
+    @Setup
+    public void setup() {
+        loop = EventFactory.createLoop(LoopListener.class);
+        interactionResult = EventFactory.createInteractionResult(ResultListener.class);
+        interactionResultHolder = EventFactory.createInteractionResultHolder(HolderListener.class);
+        consumerLoop = EventFactory.createConsumerLoop(Payload.class);
+        actorLoop = EventFactory.createActorLoop(Payload.class);
+        keyed = EventFactory.createKeyedInteractionResult(ResultListener.class);
+        proxyLoop = EventFactory.of(listeners -> createProxyLoop(LoopListener.class, listeners));
+        proxyInteractionResult = EventFactory.of(listeners -> createProxyInteractionResult(ResultListener.class, listeners));
+        for (int i = 0; i < listeners; i++) {
+            // Distinct lambda instances, the same instance could be deduplicated by a listener set
+            int index = i;
+            loop.register(value -> sink += value + index);
+            proxyLoop.register(value -> sink += value + index);
+            interactionResult.register(value -> {
+                sink += value + index;
+                return InteractionResult.PASS;
+            });
+            proxyInteractionResult.register(value -> {
+                sink += value + index;
+                return InteractionResult.PASS;
+            });
+            interactionResultHolder.register(value -> {
+                sink += value + index;
+                return InteractionResultHolder.pass(payload);
+            });
+            consumerLoop.register(payload -> payload.value += index);
+            actorLoop.register(payload -> {
+                payload.value += index;
+                return InteractionResult.PASS;
+            });
+            // Half global, half keyed, so that the keyed invoker merges both
+            if (i % 2 == 0) {
+                keyed.register(value -> {
+                    sink += value + index;
+                    return InteractionResult.PASS;
+                });
+            } else {
+                keyed.registerFor(key, value -> {
+                    sink += value + index;
+                    return InteractionResult.PASS;
+                });
+            }
+        }
+    }
+    
+    @SuppressWarnings("UnstableApiUsage")
+    private static <T> T createProxyLoop(Class<T> clazz, List<T> listeners) {
+        return (T) Proxy.newProxyInstance(EventDispatchBenchmark.class.getClassLoader(), new Class[]{clazz}, new AbstractInvocationHandler() {
+            @Override
+            protected Object handleInvocation(@NotNull Object proxy, @NotNull Method method, Object @NotNull [] args) throws Throwable {
+                for (T listener : listeners) {
+                    method.invoke(listener, args);
+                }
+                return null;
+            }
+        });
+    }
+    
+    @SuppressWarnings("UnstableApiUsage")
+    private static <T> T createProxyInteractionResult(Class<T> clazz, List<T> listeners) {
+        return (T) Proxy.newProxyInstance(EventDispatchBenchmark.class.getClassLoader(), new Class[]{clazz}, new AbstractInvocationHandler() {
+            @Override
+            protected Object handleInvocation(@NotNull Object proxy, @NotNull Method method, Object @NotNull [] args) throws Throwable {
+                for (T listener : listeners) {
+                    InteractionResult result = (InteractionResult) method.invoke(listener, args);
+                    if (result != InteractionResult.PASS) {
+                        return result;
+                    }
+                }
+                return InteractionResult.PASS;
+            }
+        });
+    }
+    
+    @Benchmark
+    public long loop() {
+        loop.invoker().invoke(1);
+        return sink;
+    }
+    
+    @Benchmark
+    public InteractionResult interactionResult() {
+        return interactionResult.invoker().invoke(1);
+    }
+    
+    @Benchmark
+    public long proxyLoop() {
+        proxyLoop.invoker().invoke(1);
+        return sink;
+    }
+    
+    @Benchmark
+    public InteractionResult proxyInteractionResult() {
+        return proxyInteractionResult.invoker().invoke(1);
+    }
+    
+    @Benchmark
+    public InteractionResultHolder<Payload> interactionResultHolder() {
+        return interactionResultHolder.invoker().invoke(1);
+    }
+    
+    @Benchmark
+    public long consumerLoop() {
+        consumerLoop.invoker().accept(payload);
+        return payload.value;
+    }
+    
+    @Benchmark
+    public InteractionResult actorLoop() {
+        return actorLoop.invoker().act(payload);
+    }
+    
+    @Benchmark
+    public InteractionResult keyedInteractionResult() {
+        return keyed.invoker(key).invoke(1);
+    }
+    
+    /**
+     * The cost callers avoid by checking {@link Event#isEmpty()} before building arguments.
+     */
+    @Benchmark
+    public boolean isEmpty() {
+        return interactionResult.isEmpty();
+    }
+}
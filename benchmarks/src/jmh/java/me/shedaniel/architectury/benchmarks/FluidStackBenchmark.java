@@ -0,0 +1,86 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.benchmarks;
+
+import io.netty.buffer.Unpooled;
+import me.shedaniel.architectury.fluid.FluidStack;
+import me.shedaniel.architectury.utils.Fraction;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.material.Fluids;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of {@link FluidStack} over {@link FriendlyByteBuf} and {@link CompoundTag}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FluidStackBenchmark {
+    @Param({"false", "true"})
+    public boolean withTag;
+    private FluidStack stack;
+    private FriendlyByteBuf buf;
+    private CompoundTag tag;
+    
+    @Setup
+    public void setup() {
+        Bootstrap.bootStrap();
+        CompoundTag data = null;
+        if (withTag) {
+            data = new CompoundTag();
+            data.putInt("temperature", 1300);
+            data.putString("source", "architectury:benchmark");
+        }
+        stack = FluidStack.create(Fluids.WATER, Fraction.of(5, 3), data);
+        buf = new FriendlyByteBuf(Unpooled.buffer());
+        stack.write(buf);
+        tag = stack.write(new CompoundTag());
+    }
+    
+    @Benchmark
+    public FriendlyByteBuf writeBuf() {
+        buf.clear();
+        stack.write(buf);
+        return buf;
+    }
+    
+    @Benchmark
+    public FluidStack readBuf() {
+        buf.readerIndex(0);
+        return FluidStack.read(buf);
+    }
+    
+    @Benchmark
+    public CompoundTag writeTag() {
+        return stack.write(new CompoundTag());
+    }
+    
+    @Benchmark
+    public FluidStack readTag() {
+        return FluidStack.read(tag);
+    }
+}
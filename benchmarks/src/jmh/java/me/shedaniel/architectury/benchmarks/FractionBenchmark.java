@@ -0,0 +1,80 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.benchmarks;
+
+import me.shedaniel.architectury.utils.Fraction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chains of {@link Fraction} arithmetic as done when moving fluids around.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FractionBenchmark {
+    private Fraction[] terms;
+    private Fraction unsimplified;
+    
+    @Setup
+    public void setup() {
+        terms = new Fraction[]{
+                Fraction.of(1, 3), Fraction.of(1, 6), Fraction.of(2, 9), Fraction.of(1, 81),
+                Fraction.of(5, 4), Fraction.of(3, 8), Fraction.of(7, 12), Fraction.of(1, 1000),
+        };
+        unsimplified = Fraction.of(81000L * 7 * 11, 81000L * 13);
+    }
+    
+    @Benchmark
+    public Fraction addChain() {
+        Fraction sum = Fraction.zero();
+        for (Fraction term : terms) {
+            sum = sum.add(term).simplify();
+        }
+        return sum;
+    }
+    
+    @Benchmark
+    public Fraction multiplyChain() {
+        Fraction product = Fraction.ofWhole(1);
+        for (Fraction term : terms) {
+            product = product.multiply(term).simplify();
+        }
+        return product;
+    }
+    
+    @Benchmark
+    public Fraction mixedChain() {
+        Fraction amount = Fraction.ofWhole(1);
+        for (Fraction term : terms) {
+            amount = amount.minus(term).multiply(Fraction.of(3, 2)).add(term).simplify();
+        }
+        return amount;
+    }
+    
+    @Benchmark
+    public Fraction simplify() {
+        return Fraction.of(unsimplified.getNumerator(), unsimplified.getDenominator()).simplify();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.benchmarks;
+
+import io.netty.buffer.Unpooled;
+import me.shedaniel.architectury.networking.NetworkChannel;
+import me.shedaniel.architectury.networking.NetworkManager;
+import me.shedaniel.architectury.utils.Env;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.entity.player.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding messages into packets through {@link NetworkChannel}, and receiving their payloads through the receivers
+ * the channel registered, which decode and dispatch them like packets arriving from the platform.
+ * <p>
+ * Messages are registered client to server only, registering server to client receivers requires a running game.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkChannelBenchmark {
+    private NetworkChannel channel;
+    private SmallMessage small;
+    private LargeMessage large;
+    private NetworkManager.NetworkReceiver smallReceiver;
+    private NetworkManager.NetworkReceiver largeReceiver;
+    private byte[] smallPayload;
+    private byte[] largePayload;
+    private Object received;
+    private final NetworkManager.PacketContext context = new NetworkManager.PacketContext() {
+        @Override
+        public Player getPlayer() {
+            return null;
+        }
+        
+        @Override
+        public void queue(Runnable runnable) {
+            runnable.run();
+        }
+        
+        @Override
+        public Env getEnvironment() {
+            return Env.SERVER;
+        }
+    };
+    
+    /**
+     * Like a button press or a toggled setting.
+     */
+    public static class SmallMessage {
+        private final int id;
+        private final boolean state;
+        
+        public SmallMessage(int id, boolean state) {
+            this.id = id;
+            this.state = state;
+        }
+        
+        public SmallMessage(FriendlyByteBuf buf) {
+            this(buf.readVarInt(), buf.readBoolean());
+        }
+        
+        public void encode(FriendlyByteBuf buf) {
+            buf.writeVarInt(id);
+            buf.writeBoolean(state);
+        }
+    }
+    
+    /**
+     * Like a block entity or machine state sync.
+     */
+    public static class LargeMessage {
+        private final ResourceLocation type;
+        private final BlockPos pos;
+        private final String name;
+        private final int[] slots;
+        private final CompoundTag data;
+        
+        public LargeMessage(ResourceLocation type, BlockPos pos, String name, int[] slots, CompoundTag data) {
+            this.type = type;
+            this.pos = pos;
+            this.name = name;
+            this.slots = slots;
+            this.data = data;
+        }
+        
+        public LargeMessage(FriendlyByteBuf buf) {
+            this(buf.readResourceLocation(), buf.readBlockPos(), buf.readUtf(32767), buf.readVarIntArray(), buf.readNbt());
+        }
+        
+        public void encode(FriendlyByteBuf buf) {
+            buf.writeResourceLocation(type);
+            buf.writeBlockPos(pos);
+            buf.writeUtf(name);
+            buf.writeVarIntArray(slots);
+            buf.writeNbt(data);
+        }
+    }
+    
+    @Setup
+    public void setup() {
+        channel = NetworkChannel.create(new ResourceLocation("architectury", "benchmark"));
+        channel.register(Optional.of(NetworkManager.c2s()), SmallMessage.class, SmallMessage::encode, SmallMessage::new, (message, context) -> received = message);
+        channel.register(Optional.of(NetworkManager.c2s()), LargeMessage.class, LargeMessage::encode, LargeMessage::new, (message, context) -> received = message);
+        
+        small = new SmallMessage(42, true);
+        int[] slots = new int[64];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = i * 31;
+        }
+        CompoundTag data = new CompoundTag();
+        data.putString("owner", "Architectury");
+        data.putLong("energy", 123456789L);
+        data.putIntArray("progress", new int[]{1, 2, 3, 4});
+        CompoundTag nested = new CompoundTag();
+        nested.putFloat("speed", 1.5F);
+        data.put("upgrades", nested);
+        large = new LargeMessage(new ResourceLocation("architectury", "machine"), new BlockPos(123, 64, -456), "Benchmark Machine", slots, data);
+        
+        Map.Entry<ResourceLocation, FriendlyByteBuf> encodedSmall = channel.encode(NetworkManager.c2s(), small);
+        smallReceiver = NetworkManager.getReceiver(NetworkManager.c2s(), encodedSmall.getKey());
+        smallPayload = copyAndRelease(encodedSmall.getValue());
+        Map.Entry<ResourceLocation, FriendlyByteBuf> encodedLarge = channel.encode(NetworkManager.c2s(), large);
+        largeReceiver = NetworkManager.getReceiver(NetworkManager.c2s(), encodedLarge.getKey());
+        largePayload = copyAndRelease(encodedLarge.getValue());
+    }
+    
+    /**
+     * Copies the payload as the channel encoded it, which the platform hands to the receiver once it read the id.
+     */
+    private static byte[] copyAndRelease(FriendlyByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        buf.release();
+        return bytes;
+    }
+    
+    @Benchmark
+    public Packet<?> encodeSmall() {
+        return channel.toPacket(NetworkManager.c2s(), small);
+    }
+    
+    @Benchmark
+    public Packet<?> encodeLarge() {
+        return channel.toPacket(NetworkManager.c2s(), large);
+    }
+    
+    @Benchmark
+    public Object decodeSmall() {
+        smallReceiver.receive(new FriendlyByteBuf(Unpooled.wrappedBuffer(smallPayload)), context);
+        return received;
+    }
+    
+    @Benchmark
+    public Object decodeLarge() {
+        largeReceiver.receive(new FriendlyByteBuf(Unpooled.wrappedBuffer(largePayload)), context);
+        return received;
+    }
+}
@@ -19,14 +19,51 @@
 
 package me.shedaniel.architectury.event;
 
+/**
+ * An event holding a set of listeners.
+ * <p>
+ * Listeners may be registered and unregistered from any thread. Every modification publishes
+ * a new snapshot of the listeners, a dispatch that is already in progress keeps invoking the
+ * snapshot it started with, so listeners registered or unregistered while the event is being
+ * invoked (including by its own listeners) only take effect from the next invocation.
+ * <p>
+ * Once the server has started, {@link #invoker()} of events created by {@link EventFactory} returns the same
+ * instance for the rest of the game, which the JIT can inline through. Changing the listeners afterwards is
+ * still supported, but deoptimizes the code that invoked the event.
+ */
 public interface Event<T> {
     T invoker();
     
+    /**
+     * Registers a listener with {@link EventPriority#NORMAL} priority.
+     */
     void register(T listener);
     
+    /**
+     * Registers a listener with the priority, listeners of a higher priority are invoked first.
+     *
+     * @throws UnsupportedOperationException if the event does not support priorities other than
+     *                                       {@link EventPriority#NORMAL}, which events created by {@link EventFactory} do
+     */
+    default void register(EventPriority priority, T listener) {
+        if (priority != EventPriority.NORMAL) {
+            throw new UnsupportedOperationException(getClass().getName() + " does not support listener priorities!");
+        }
+        register(listener);
+    }
+    
     void unregister(T listener);
     
     boolean isRegistered(T listener);
     
+    /**
+     * Returns whether this event has no listeners, call sites can check this to skip
+     * building arguments that would only be handed to the invoker. Events that cannot tell
+     * are never empty, which is always safe.
+     */
+    default boolean isEmpty() {
+        return false;
+    }
+    
     void clearListeners();
 }
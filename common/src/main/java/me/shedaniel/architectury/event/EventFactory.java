@@ -23,22 +23,32 @@ import com.google.common.reflect.AbstractInvocationHandler;
 import me.shedaniel.architectury.ForgeEvent;
 import me.shedaniel.architectury.ForgeEventCancellable;
 import me.shedaniel.architectury.annotations.ExpectPlatform;
+import me.shedaniel.architectury.impl.event.EventGuard;
+import me.shedaniel.architectury.impl.event.EventInvokerGenerator;
+import me.shedaniel.architectury.impl.event.EventProfiler;
 import net.jodah.typetools.TypeResolver;
 import net.minecraft.world.InteractionResult;
 import net.minecraft.world.InteractionResultHolder;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MutableCallSite;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 public final class EventFactory {
+    /**
+     * Every event that can be measured by {@link EventMetrics} and guarded by {@link EventWatchdog}.
+     */
+    private static final Set<EventImpl<?>> PROFILED_EVENTS = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    
     private EventFactory() {}
     
     @Deprecated
@@ -55,29 +65,111 @@ public final class EventFactory {
     }
     
     public static <T> Event<T> of(Function<List<T>, T> function) {
-        return new EventImpl<>(function);
+        return new EventImpl<>(function, null);
+    }
+    
+    private static <T> Event<T> of(Class<T> clazz, Class<?> owner, EventInvokerGenerator.Mode mode, Function<List<T>, T> function) {
+        return register(new EventImpl<>(function, new EventProfiler<>(clazz, mode, owner)));
+    }
+    
+    private static <T, E extends EventImpl<T>> E register(E event) {
+        PROFILED_EVENTS.add(event);
+        return event;
+    }
+    
+    static void invalidateInvokers() {
+        for (EventImpl<?> event : snapshotProfiledEvents()) {
+            synchronized (event) {
+                event.invalidate();
+            }
+        }
+    }
+    
+    /**
+     * Switches every event to an invoker backed by a {@link MutableCallSite}, which the JIT can inline through.
+     * Called once the listeners are not expected to change anymore, changing them is still supported but more expensive.
+     */
+    static void freezeInvokers() {
+        for (EventImpl<?> event : snapshotProfiledEvents()) {
+            event.freeze();
+        }
+    }
+    
+    static void forEachProfiled(BiConsumer<Event<?>, EventProfiler<?>> consumer) {
+        for (EventImpl<?> event : snapshotProfiledEvents()) {
+            consumer.accept(event, event.profiler);
+        }
+    }
+    
+    static void forEachGuarded(BiConsumer<Event<?>, EventGuard<?>> consumer) {
+        for (EventImpl<?> event : snapshotProfiledEvents()) {
+            consumer.accept(event, event.guard);
+        }
+    }
+    
+    /**
+     * Calls the callback with {@code true} when the event gets its first listener and with {@code false} when it
+     * loses its last one, immediately with {@code true} if the event already has listeners.
+     * <p>
+     * Used by platforms to only hook into the platform event while someone listens.
+     */
+    @ApiStatus.Internal
+    public static void addActivityListener(Event<?> event, Consumer<Boolean> callback) {
+        if (event instanceof EventImpl) {
+            ((EventImpl<?>) event).addActivityListener(callback);
+        } else {
+            callback.accept(true);
+        }
+    }
+    
+    private static List<EventImpl<?>> snapshotProfiledEvents() {
+        synchronized (PROFILED_EVENTS) {
+            return new ArrayList<>(PROFILED_EVENTS);
+        }
     }
     
     @SuppressWarnings("UnstableApiUsage")
     public static <T> Event<T> createLoop(Class<T> clazz) {
-        return of(listeners -> (T) Proxy.newProxyInstance(EventFactory.class.getClassLoader(), new Class[]{clazz}, new AbstractInvocationHandler() {
+        return of(clazz, clazz, EventInvokerGenerator.Mode.LOOP, EventInvokerGenerator.invokerFactory(clazz, EventInvokerGenerator.Mode.LOOP, listeners -> (T) Proxy.newProxyInstance(EventFactory.class.getClassLoader(), new Class[]{clazz}, new AbstractInvocationHandler() {
             @Override
             protected Object handleInvocation(@NotNull Object proxy, @NotNull Method method, Object @NotNull [] args) throws Throwable {
                 for (T listener : listeners) {
-                    method.invoke(listener, args);
+                    invokeListener(method, listener, args);
                 }
                 return null;
             }
-        }));
+        })));
+    }
+    
+    /**
+     * Invokes a listener from a fallback proxy, which are used for package private interfaces that generated invokers can not implement.
+     */
+    private static Object invokeListener(Method method, Object listener, Object[] args) throws ReflectiveOperationException {
+        if (!method.isAccessible()) {
+            method.setAccessible(true);
+        }
+        return method.invoke(listener, args);
     }
     
-    @SuppressWarnings("UnstableApiUsage")
     public static <T> Event<T> createInteractionResult(Class<T> clazz) {
-        return of(listeners -> (T) Proxy.newProxyInstance(EventFactory.class.getClassLoader(), new Class[]{clazz}, new AbstractInvocationHandler() {
+        return of(clazz, clazz, EventInvokerGenerator.Mode.INTERACTION_RESULT, interactionResultFunction(clazz));
+    }
+    
+    /**
+     * Creates an {@link #createInteractionResult(Class) interaction result} event that also accepts
+     * listeners for a specific key, which are only invoked by {@link KeyedEvent#invoker(Object)} for that key.
+     */
+    public static <K, T> KeyedEvent<K, T> createKeyedInteractionResult(Class<T> clazz) {
+        return register(new KeyedEventImpl<>(interactionResultFunction(clazz), new EventProfiler<>(clazz, EventInvokerGenerator.Mode.INTERACTION_RESULT, clazz)));
+    }
+    
+    @SuppressWarnings("UnstableApiUsage")
+    private static <T> Function<List<T>, T> interactionResultFunction(Class<T> clazz) {
+        return EventInvokerGenerator.invokerFactory(clazz, EventInvokerGenerator.Mode.INTERACTION_RESULT, listeners -> (T) Proxy.newProxyInstance(EventFactory.class.getClassLoader(), new Class[]{clazz}, new AbstractInvocationHandler() {
             @Override
             protected Object handleInvocation(@NotNull Object proxy, @NotNull Method method, Object @NotNull [] args) throws Throwable {
                 for (T listener : listeners) {
-                    InteractionResult result = (InteractionResult) method.invoke(listener, args);
+                    InteractionResult result = (InteractionResult) invokeListener(method, listener, args);
                     if (result != InteractionResult.PASS) {
                         return result;
                     }
@@ -89,31 +181,31 @@ public final class EventFactory {
     
     @SuppressWarnings("UnstableApiUsage")
     public static <T> Event<T> createInteractionResultHolder(Class<T> clazz) {
-        return of(listeners -> (T) Proxy.newProxyInstance(EventFactory.class.getClassLoader(), new Class[]{clazz}, new AbstractInvocationHandler() {
+        return of(clazz, clazz, EventInvokerGenerator.Mode.INTERACTION_RESULT_HOLDER, EventInvokerGenerator.invokerFactory(clazz, EventInvokerGenerator.Mode.INTERACTION_RESULT_HOLDER, listeners -> (T) Proxy.newProxyInstance(EventFactory.class.getClassLoader(), new Class[]{clazz}, new AbstractInvocationHandler() {
             @Override
             protected Object handleInvocation(@NotNull Object proxy, @NotNull Method method, Object @NotNull [] args) throws Throwable {
                 for (T listener : listeners) {
-                    InteractionResultHolder result = (InteractionResultHolder) Objects.requireNonNull(method.invoke(listener, args));
+                    InteractionResultHolder result = (InteractionResultHolder) Objects.requireNonNull(invokeListener(method, listener, args));
                     if (result.getResult() != InteractionResult.PASS) {
                         return result;
                     }
                 }
                 return InteractionResultHolder.pass(null);
             }
-        }));
+        })));
     }
     
     @SuppressWarnings("UnstableApiUsage")
     public static <T> Event<Consumer<T>> createConsumerLoop(Class<T> clazz) {
-        Event<Consumer<T>> event = of(listeners -> (Consumer<T>) Proxy.newProxyInstance(EventFactory.class.getClassLoader(), new Class[]{Consumer.class}, new AbstractInvocationHandler() {
+        Event<Consumer<T>> event = of((Class<Consumer<T>>) (Class<?>) Consumer.class, clazz, EventInvokerGenerator.Mode.LOOP, EventInvokerGenerator.invokerFactory((Class<Consumer<T>>) (Class<?>) Consumer.class, EventInvokerGenerator.Mode.LOOP, listeners -> (Consumer<T>) Proxy.newProxyInstance(EventFactory.class.getClassLoader(), new Class[]{Consumer.class}, new AbstractInvocationHandler() {
             @Override
             protected Object handleInvocation(@NotNull Object proxy, @NotNull Method method, Object @NotNull [] args) throws Throwable {
                 for (Consumer<T> listener : listeners) {
-                    method.invoke(listener, args);
+                    invokeListener(method, listener, args);
                 }
                 return null;
             }
-        }));
+        })));
         Class<?> superClass = clazz;
         do {
             if (superClass.isAnnotationPresent(ForgeEvent.class)) {
@@ -126,18 +218,18 @@ public final class EventFactory {
     
     @SuppressWarnings("UnstableApiUsage")
     public static <T> Event<Actor<T>> createActorLoop(Class<T> clazz) {
-        Event<Actor<T>> event = of(listeners -> (Actor<T>) Proxy.newProxyInstance(EventFactory.class.getClassLoader(), new Class[]{Actor.class}, new AbstractInvocationHandler() {
+        Event<Actor<T>> event = of((Class<Actor<T>>) (Class<?>) Actor.class, clazz, EventInvokerGenerator.Mode.INTERACTION_RESULT, EventInvokerGenerator.invokerFactory((Class<Actor<T>>) (Class<?>) Actor.class, EventInvokerGenerator.Mode.INTERACTION_RESULT, listeners -> (Actor<T>) Proxy.newProxyInstance(EventFactory.class.getClassLoader(), new Class[]{Actor.class}, new AbstractInvocationHandler() {
             @Override
             protected Object handleInvocation(@NotNull Object proxy, @NotNull Method method, Object @NotNull [] args) throws Throwable {
                 for (Actor<T> listener : listeners) {
-                    InteractionResult result = (InteractionResult) method.invoke(listener, args);
+                    InteractionResult result = (InteractionResult) invokeListener(method, listener, args);
                     if (result != InteractionResult.PASS) {
                         return result;
                     }
                 }
                 return InteractionResult.PASS;
             }
-        }));
+        })));
         Class<?> superClass = clazz;
         do {
             
@@ -172,55 +264,351 @@ public final class EventFactory {
         throw new AssertionError();
     }
     
+    /**
+     * Immutable listeners ordered by priority.
+     */
+    private static final class Listeners {
+        private static final Listeners EMPTY = new Listeners(new Object[0], new EventPriority[0]);
+        private final Object[] listeners;
+        private final EventPriority[] priorities;
+        
+        private Listeners(Object[] listeners, EventPriority[] priorities) {
+            this.listeners = listeners;
+            this.priorities = priorities;
+        }
+        
+        private Listeners with(EventPriority priority, Object listener) {
+            // Insert after every listener of the same or higher priority
+            int index = listeners.length;
+            while (index > 0 && priorities[index - 1].compareTo(priority) > 0) {
+                index--;
+            }
+            Object[] newListeners = new Object[listeners.length + 1];
+            EventPriority[] newPriorities = new EventPriority[listeners.length + 1];
+            System.arraycopy(listeners, 0, newListeners, 0, index);
+            System.arraycopy(priorities, 0, newPriorities, 0, index);
+            newListeners[index] = listener;
+            newPriorities[index] = priority;
+            System.arraycopy(listeners, index, newListeners, index + 1, listeners.length - index);
+            System.arraycopy(priorities, index, newPriorities, index + 1, listeners.length - index);
+            return new Listeners(newListeners, newPriorities);
+        }
+        
+        private Listeners without(Object listener) {
+            int index = indexOf(listener);
+            if (index == -1) return this;
+            if (listeners.length == 1) return EMPTY;
+            Object[] newListeners = new Object[listeners.length - 1];
+            EventPriority[] newPriorities = new EventPriority[listeners.length - 1];
+            System.arraycopy(listeners, 0, newListeners, 0, index);
+            System.arraycopy(priorities, 0, newPriorities, 0, index);
+            System.arraycopy(listeners, index + 1, newListeners, index, listeners.length - index - 1);
+            System.arraycopy(priorities, index + 1, newPriorities, index, listeners.length - index - 1);
+            return new Listeners(newListeners, newPriorities);
+        }
+        
+        /**
+         * Merges two lists by priority, listeners of {@code first} go before listeners of {@code second} with the same priority.
+         */
+        private static Listeners merge(Listeners first, Listeners second) {
+            if (first.listeners.length == 0) return second;
+            if (second.listeners.length == 0) return first;
+            int length = first.listeners.length + second.listeners.length;
+            Object[] listeners = new Object[length];
+            EventPriority[] priorities = new EventPriority[length];
+            int i = 0, j = 0;
+            for (int k = 0; k < length; k++) {
+                if (j >= second.listeners.length || (i < first.listeners.length && first.priorities[i].compareTo(second.priorities[j]) <= 0)) {
+                    listeners[k] = first.listeners[i];
+                    priorities[k] = first.priorities[i++];
+                } else {
+                    listeners[k] = second.listeners[j];
+                    priorities[k] = second.priorities[j++];
+                }
+            }
+            return new Listeners(listeners, priorities);
+        }
+        
+        private int indexOf(Object listener) {
+            for (int i = 0; i < listeners.length; i++) {
+                if (Objects.equals(listeners[i], listener)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+    
+    private static <T> T createInvoker(Function<List<T>, T> function, Object[] listeners) {
+        if (listeners.length == 1) {
+            return (T) listeners[0];
+        } else {
+            return function.apply((List<T>) Collections.unmodifiableList(Arrays.asList(listeners)));
+        }
+    }
+    
+    private static <T> T createInvoker(EventImpl<T> event, Listeners listeners) {
+        Object[] array = listeners.listeners;
+        if (event.guard != null && EventWatchdog.isEnabled()) {
+            Object[] guarded = event.guard.wrapListeners(array);
+            if (guarded != null) {
+                array = guarded;
+            }
+        }
+        if (event.profiler != null && EventMetrics.isEnabled()) {
+            Object[] measured = event.profiler.wrapListeners(array);
+            if (measured != null) {
+                return event.profiler.wrapInvoker(createInvoker(event.function, measured));
+            }
+        }
+        return createInvoker(event.function, array);
+    }
+    
     private static class EventImpl<T> implements Event<T> {
-        private final Function<List<T>, T> function;
-        private T invoker = null;
-        private ArrayList<T> listeners;
+        protected final Function<List<T>, T> function;
+        @Nullable
+        protected final EventProfiler<T> profiler;
+        @Nullable
+        protected final EventGuard<T> guard;
+        private volatile T invoker = null;
+        /**
+         * Holds the current invoker once frozen, {@link #invoker} is then the generated invoker reading it.
+         */
+        @Nullable
+        private MutableCallSite frozenSite;
+        private final List<Consumer<Boolean>> activityListeners = new ArrayList<>();
+        private boolean active;
+        /**
+         * Immutable snapshot of the listeners, replaced as a whole on every modification.
+         */
+        protected volatile Listeners listeners = Listeners.EMPTY;
         
-        public EventImpl(Function<List<T>, T> function) {
+        public EventImpl(Function<List<T>, T> function, @Nullable EventProfiler<T> profiler) {
             this.function = function;
-            this.listeners = new ArrayList<>();
+            this.profiler = profiler;
+            this.guard = profiler == null ? null : new EventGuard<>(profiler.getType(), profiler.getMode(), () -> profiler.getName(this));
         }
         
         @Override
         public T invoker() {
+            T invoker = this.invoker;
             if (invoker == null) {
-                update();
+                synchronized (this) {
+                    invoker = this.invoker;
+                    if (invoker == null) {
+                        this.invoker = invoker = createInvoker(this, listeners);
+                    }
+                }
             }
             return invoker;
         }
         
         @Override
         public void register(T listener) {
-            listeners.add(listener);
-            invoker = null;
+            register(EventPriority.NORMAL, listener);
         }
         
         @Override
-        public void unregister(T listener) {
-            listeners.remove(listener);
-            listeners.trimToSize();
-            invoker = null;
+        public synchronized void register(EventPriority priority, T listener) {
+            Objects.requireNonNull(priority, "priority");
+            this.listeners = listeners.with(priority, listener);
+            invalidate();
+            updateActivity();
+        }
+        
+        @Override
+        public synchronized void unregister(T listener) {
+            Listeners listeners = this.listeners;
+            Listeners newListeners = listeners.without(listener);
+            if (newListeners != listeners) {
+                this.listeners = newListeners;
+                invalidate();
+                pruneListenerData();
+                updateActivity();
+            }
         }
         
         @Override
         public boolean isRegistered(T listener) {
-            return listeners.contains(listener);
+            return listeners.indexOf(listener) != -1;
+        }
+        
+        @Override
+        public boolean isEmpty() {
+            return listeners.listeners.length == 0;
+        }
+        
+        @Override
+        public synchronized void clearListeners() {
+            this.listeners = Listeners.EMPTY;
+            invalidate();
+            pruneListenerData();
+            updateActivity();
+        }
+        
+        /**
+         * Drops the cached invokers, called while holding the lock after any modification.
+         */
+        protected void invalidate() {
+            if (frozenSite != null) {
+                // Deoptimizes every compiled method that inlined the previous invoker
+                frozenSite.setTarget(MethodHandles.constant(Object.class, createInvoker(this, listeners)));
+                MutableCallSite.syncAll(new MutableCallSite[]{frozenSite});
+            } else {
+                this.invoker = null;
+            }
+        }
+        
+        /**
+         * Drops what is kept per listener for listeners that are no longer registered, called while holding the lock after a removal.
+         */
+        protected void pruneListenerData() {
+            if (profiler == null) return;
+            Set<Object> current = Collections.newSetFromMap(new IdentityHashMap<>());
+            collectListeners(current);
+            profiler.retainListeners(current);
+            guard.retainListeners(current);
+        }
+        
+        protected void collectListeners(Set<Object> into) {
+            Collections.addAll(into, listeners.listeners);
+        }
+        
+        private synchronized void freeze() {
+            if (frozenSite != null || profiler == null) return;
+            MutableCallSite site = new MutableCallSite(MethodHandles.constant(Object.class, createInvoker(this, listeners)));
+            T frozen = EventInvokerGenerator.createFrozen(profiler.getType(), site);
+            if (frozen != null) {
+                this.frozenSite = site;
+                this.invoker = frozen;
+            }
+        }
+        
+        private synchronized void addActivityListener(Consumer<Boolean> callback) {
+            activityListeners.add(callback);
+            if (active) {
+                callback.accept(true);
+            }
+        }
+        
+        /**
+         * Notifies the activity listeners if the event gained its first or lost its last listener, called while holding the lock.
+         */
+        protected void updateActivity() {
+            boolean active = !isEmpty();
+            if (this.active != active) {
+                this.active = active;
+                for (Consumer<Boolean> callback : activityListeners) {
+                    callback.accept(active);
+                }
+            }
+        }
+    }
+    
+    private static class KeyedEventImpl<K, T> extends EventImpl<T> implements KeyedEvent<K, T> {
+        private volatile Map<K, KeyedListeners<T>> keyed = Collections.emptyMap();
+        
+        public KeyedEventImpl(Function<List<T>, T> function, EventProfiler<T> profiler) {
+            super(function, profiler);
+        }
+        
+        @Override
+        public T invoker(K key) {
+            Map<K, KeyedListeners<T>> keyed = this.keyed;
+            KeyedListeners<T> entry = keyed.isEmpty() ? null : keyed.get(key);
+            if (entry == null) {
+                return invoker();
+            }
+            T invoker = entry.invoker;
+            if (invoker == null) {
+                synchronized (entry) {
+                    invoker = entry.invoker;
+                    if (invoker == null) {
+                        entry.invoker = invoker = createInvoker(this, entry.merged);
+                    }
+                }
+            }
+            return invoker;
         }
         
         @Override
-        public void clearListeners() {
-            listeners.clear();
-            listeners.trimToSize();
-            invoker = null;
+        public synchronized void registerFor(K key, EventPriority priority, T listener) {
+            Objects.requireNonNull(key, "key");
+            Objects.requireNonNull(priority, "priority");
+            Map<K, KeyedListeners<T>> keyed = new IdentityHashMap<>(this.keyed);
+            KeyedListeners<T> entry = keyed.get(key);
+            keyed.put(key, new KeyedListeners<>((entry == null ? Listeners.EMPTY : entry.listeners).with(priority, listener), listeners));
+            this.keyed = keyed;
+            updateActivity();
         }
         
-        public void update() {
-            if (listeners.size() == 1) {
-                invoker = listeners.get(0);
+        @Override
+        public synchronized void unregisterFor(K key, T listener) {
+            KeyedListeners<T> entry = this.keyed.get(key);
+            if (entry == null) return;
+            Listeners newListeners = entry.listeners.without(listener);
+            if (newListeners == entry.listeners) return;
+            Map<K, KeyedListeners<T>> keyed = new IdentityHashMap<>(this.keyed);
+            if (newListeners.listeners.length == 0) {
+                keyed.remove(key);
             } else {
-                invoker = function.apply(listeners);
+                keyed.put(key, new KeyedListeners<>(newListeners, listeners));
             }
+            this.keyed = keyed.isEmpty() ? Collections.emptyMap() : keyed;
+            pruneListenerData();
+            updateActivity();
+        }
+        
+        @Override
+        public boolean isRegisteredFor(K key, T listener) {
+            KeyedListeners<T> entry = this.keyed.get(key);
+            return entry != null && entry.listeners.indexOf(listener) != -1;
+        }
+        
+        @Override
+        public boolean hasKeyedListeners() {
+            return !keyed.isEmpty();
+        }
+        
+        @Override
+        public boolean isEmpty() {
+            return super.isEmpty() && keyed.isEmpty();
+        }
+        
+        @Override
+        public synchronized void clearListeners() {
+            this.keyed = Collections.emptyMap();
+            super.clearListeners();
+        }
+        
+        @Override
+        protected void collectListeners(Set<Object> into) {
+            super.collectListeners(into);
+            for (KeyedListeners<T> entry : keyed.values()) {
+                Collections.addAll(into, entry.listeners.listeners);
+            }
+        }
+        
+        @Override
+        protected void invalidate() {
+            super.invalidate();
+            // Every keyed invoker also contains the global listeners
+            if (!keyed.isEmpty()) {
+                Map<K, KeyedListeners<T>> keyed = new IdentityHashMap<>(this.keyed);
+                keyed.replaceAll((key, entry) -> new KeyedListeners<>(entry.listeners, listeners));
+                this.keyed = keyed;
+            }
+        }
+    }
+    
+    private static final class KeyedListeners<T> {
+        private final Listeners listeners;
+        private final Listeners merged;
+        private volatile T invoker;
+        
+        private KeyedListeners(Listeners listeners, Listeners global) {
+            this.listeners = listeners;
+            this.merged = Listeners.merge(listeners, global);
         }
     }
 }
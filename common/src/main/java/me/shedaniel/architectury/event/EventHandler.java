@@ -20,6 +20,10 @@
 package me.shedaniel.architectury.event;
 
 import me.shedaniel.architectury.annotations.ExpectPlatform;
+import me.shedaniel.architectury.event.events.CommandRegistrationEvent;
+import me.shedaniel.architectury.event.events.LifecycleEvent;
+import me.shedaniel.architectury.impl.event.EventMetricsCommand;
+import me.shedaniel.architectury.impl.networking.NetworkMetricsCommand;
 import me.shedaniel.architectury.platform.Platform;
 import me.shedaniel.architectury.utils.Env;
 import net.fabricmc.api.EnvType;
@@ -36,6 +40,9 @@ public final class EventHandler {
         if (Platform.getEnvironment() == Env.CLIENT)
             registerClient();
         registerCommon();
+        CommandRegistrationEvent.EVENT.register((dispatcher, selection) -> EventMetricsCommand.register(dispatcher));
+        CommandRegistrationEvent.EVENT.register((dispatcher, selection) -> NetworkMetricsCommand.register(dispatcher));
+        LifecycleEvent.SERVER_STARTED.register(server -> EventFactory.freezeInvokers());
         if (Platform.getEnvironment() == Env.SERVER)
             registerServer();
     }
@@ -0,0 +1,194 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.event;
+
+import me.shedaniel.architectury.impl.event.EventProfiler;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in timing of events created by {@link EventFactory}, enabled with {@code -Darchitectury.eventMetrics=true}
+ * or {@link #setEnabled(boolean)}.
+ * <p>
+ * While disabled, invokers are built exactly as without metrics and nothing is recorded.
+ * Events created with {@link EventFactory#of(java.util.function.Function)} are never measured.
+ */
+public final class EventMetrics {
+    private static volatile boolean enabled = Boolean.getBoolean("architectury.eventMetrics");
+    
+    private EventMetrics() {}
+    
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Enables or disables the metrics, rebuilding the invokers of every event.
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        if (EventMetrics.enabled != enabled) {
+            EventMetrics.enabled = enabled;
+            EventFactory.invalidateInvokers();
+        }
+    }
+    
+    public static void reset() {
+        EventFactory.forEachProfiled((event, profiler) -> profiler.reset());
+    }
+    
+    /**
+     * @return the statistics of every measured event that has been invoked, sorted by total time spent
+     */
+    @NotNull
+    public static List<EventStatistics> getStatistics() {
+        List<EventStatistics> statistics = new ArrayList<>();
+        EventFactory.forEachProfiled((event, profiler) -> {
+            if (profiler.getStatistics().getInvocations() > 0) {
+                statistics.add(new EventStatistics(profiler.getName(event), profiler.getStatistics(), profiler.getListenerStatistics()));
+            }
+        });
+        statistics.sort(Comparator.comparingLong((EventStatistics stats) -> stats.getStatistics().getTotalNanos()).reversed());
+        return statistics;
+    }
+    
+    public static final class Statistics {
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder shortCircuits = new LongAdder();
+        
+        @ApiStatus.Internal
+        public Statistics() {}
+        
+        @ApiStatus.Internal
+        public void record(long nanos, boolean shortCircuit) {
+            invocations.increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+            if (shortCircuit) {
+                shortCircuits.increment();
+            }
+        }
+        
+        @ApiStatus.Internal
+        public void reset() {
+            invocations.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+            shortCircuits.reset();
+        }
+        
+        public long getInvocations() {
+            return invocations.sum();
+        }
+        
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+        
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+        
+        /**
+         * @return how many invocations returned something other than a pass, cancelling the remaining listeners
+         */
+        public long getShortCircuits() {
+            return shortCircuits.sum();
+        }
+    }
+    
+    public static final class EventStatistics {
+        private final String name;
+        private final Statistics statistics;
+        private final List<ListenerStatistics> listeners;
+        
+        private EventStatistics(String name, Statistics statistics, List<ListenerStatistics> listeners) {
+            this.name = name;
+            this.statistics = statistics;
+            this.listeners = Collections.unmodifiableList(listeners);
+        }
+        
+        /**
+         * @return the name of the field holding the event, like {@code TickEvent.SERVER_PRE}
+         */
+        @NotNull
+        public String getName() {
+            return name;
+        }
+        
+        @NotNull
+        public Statistics getStatistics() {
+            return statistics;
+        }
+        
+        /**
+         * @return the statistics of every listener measured so far, sorted by total time spent
+         */
+        @NotNull
+        public List<ListenerStatistics> getListeners() {
+            return listeners;
+        }
+    }
+    
+    public static final class ListenerStatistics {
+        private final String listenerClass;
+        private final Optional<String> modId;
+        private final Statistics statistics;
+        
+        @ApiStatus.Internal
+        public ListenerStatistics(String listenerClass, Optional<String> modId, Statistics statistics) {
+            this.listenerClass = listenerClass;
+            this.modId = modId;
+            this.statistics = statistics;
+        }
+        
+        /**
+         * @return the name of the class declaring the listener
+         */
+        @NotNull
+        public String getListenerClass() {
+            return listenerClass;
+        }
+        
+        /**
+         * @return the mod providing the listener class, if it could be determined
+         */
+        @NotNull
+        public Optional<String> getModId() {
+            return modId;
+        }
+        
+        @NotNull
+        public Statistics getStatistics() {
+            return statistics;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.event;
+
+/**
+ * Priority of a listener, listeners with a higher priority are invoked first.
+ * Listeners of the same priority are invoked in registration order.
+ * <p>
+ * The order is resolved when a listener is registered, so dispatching never sorts.
+ */
+public enum EventPriority {
+    /**
+     * Invoked first, best suited for cheap listeners that filter or cancel the event early.
+     */
+    HIGHEST,
+    HIGH,
+    NORMAL,
+    LOW,
+    /**
+     * Invoked last, only if no listener before has short-circuited the event.
+     */
+    LOWEST,
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.event;
+
+import me.shedaniel.architectury.impl.event.EventGuard;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in guarded dispatch of events created by {@link EventFactory}, enabled with {@code -Darchitectury.eventWatchdog=true}
+ * or {@link #setEnabled(boolean)}.
+ * <p>
+ * While enabled, an exception thrown by a listener is logged and treated as a pass, so that the remaining listeners
+ * still run. Listeners that repeatedly take longer than the budget are reported with a sample of their stack taken
+ * while they were running, and listeners that keep failing or overrunning can be suspended until {@link #resumeAll()}.
+ * <p>
+ * The defaults can be changed with {@code architectury.eventWatchdog.budgetMs} (50), {@code architectury.eventWatchdog.warnAfter} (3)
+ * and {@code architectury.eventWatchdog.suspendAfter} (0, never suspend).
+ */
+public final class EventWatchdog {
+    private static volatile boolean enabled = Boolean.getBoolean("architectury.eventWatchdog");
+    private static volatile long budgetNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("architectury.eventWatchdog.budgetMs", 50));
+    private static volatile int warnAfter = Integer.getInteger("architectury.eventWatchdog.warnAfter", 3);
+    private static volatile int suspendAfter = Integer.getInteger("architectury.eventWatchdog.suspendAfter", 0);
+    
+    private EventWatchdog() {}
+    
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Enables or disables guarded dispatch, rebuilding the invokers of every event.
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        if (EventWatchdog.enabled != enabled) {
+            EventWatchdog.enabled = enabled;
+            EventFactory.invalidateInvokers();
+        }
+    }
+    
+    public static long getBudgetNanos() {
+        return budgetNanos;
+    }
+    
+    /**
+     * Sets how long a single listener may run before its call counts as an overrun.
+     */
+    public static void setBudget(long budget, TimeUnit unit) {
+        if (budget <= 0) throw new IllegalArgumentException("Budget must be positive!");
+        budgetNanos = unit.toNanos(budget);
+    }
+    
+    public static int getWarnAfter() {
+        return warnAfter;
+    }
+    
+    /**
+     * Sets after how many consecutive overruns a listener is reported, {@code 0} disables the reports.
+     */
+    public static void setWarnAfter(int warnAfter) {
+        EventWatchdog.warnAfter = Math.max(0, warnAfter);
+    }
+    
+    public static int getSuspendAfter() {
+        return suspendAfter;
+    }
+    
+    /**
+     * Sets after how many consecutive failures or overruns a listener is suspended, {@code 0} never suspends listeners.
+     */
+    public static void setSuspendAfter(int suspendAfter) {
+        EventWatchdog.suspendAfter = Math.max(0, suspendAfter);
+    }
+    
+    /**
+     * @return a description of every suspended listener
+     */
+    @NotNull
+    public static List<String> getSuspendedListeners() {
+        List<String> suspended = new ArrayList<>();
+        EventFactory.forEachGuarded((event, guard) -> {
+            for (EventGuard.ListenerGuard listener : guard.getSuspended()) {
+                suspended.add(listener.toString());
+            }
+        });
+        return suspended;
+    }
+    
+    /**
+     * Resumes every suspended listener.
+     *
+     * @return the number of listeners resumed
+     */
+    public static int resumeAll() {
+        int[] resumed = {0};
+        EventFactory.forEachGuarded((event, guard) -> {
+            for (EventGuard.ListenerGuard listener : guard.getSuspended()) {
+                listener.resume();
+                resumed[0]++;
+            }
+        });
+        return resumed[0];
+    }
+}
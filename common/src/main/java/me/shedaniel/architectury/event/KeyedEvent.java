@@ -0,0 +1,54 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.event;
+
+/**
+ * An event that additionally accepts listeners for a specific key, like the block being interacted with.
+ * <p>
+ * Keyed listeners are only invoked through {@link #invoker(Object)} for their key, merged with the
+ * global listeners by priority, so dispatch cost scales with the listeners relevant to the key.
+ * Keys are compared by identity.
+ */
+public interface KeyedEvent<K, T> extends Event<T> {
+    /**
+     * Returns the invoker for the listeners registered for the key and the global listeners,
+     * keyed listeners are invoked before global listeners of the same priority.
+     */
+    T invoker(K key);
+    
+    /**
+     * Registers a listener for the key with {@link EventPriority#NORMAL} priority.
+     */
+    default void registerFor(K key, T listener) {
+        registerFor(key, EventPriority.NORMAL, listener);
+    }
+    
+    void registerFor(K key, EventPriority priority, T listener);
+    
+    void unregisterFor(K key, T listener);
+    
+    boolean isRegisteredFor(K key, T listener);
+    
+    /**
+     * Returns whether any listener is registered for a key, call sites can check this to skip
+     * looking up keys that would only be handed to {@link #invoker(Object)}.
+     */
+    boolean hasKeyedListeners();
+}
@@ -21,20 +21,27 @@ package me.shedaniel.architectury.event.events;
 
 import me.shedaniel.architectury.event.Event;
 import me.shedaniel.architectury.event.EventFactory;
+import me.shedaniel.architectury.event.KeyedEvent;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.InteractionResult;
 import net.minecraft.world.damagesource.DamageSource;
 import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.state.BlockState;
 import org.jetbrains.annotations.Nullable;
 
 public interface EntityEvent {
+    /**
+     * {@link #LIVING_DEATH}, accepting listeners for the type of the dying entity.
+     */
+    KeyedEvent<EntityType<?>, LivingDeath> LIVING_DEATH_BY_TYPE = EventFactory.createKeyedInteractionResult(LivingDeath.class);
     /**
      * Invoked before LivingEntity#die, equivalent to forge's {@code LivingDeathEvent}.
      */
-    Event<LivingDeath> LIVING_DEATH = EventFactory.createInteractionResult(LivingDeath.class);
+    Event<LivingDeath> LIVING_DEATH = LIVING_DEATH_BY_TYPE;
     /**
      * Invoked before LivingEntity#hurt, equivalent to forge's {@code LivingAttackEvent}.
      */
@@ -43,7 +50,11 @@ public interface EntityEvent {
      * Invoked before entity is added to a world, equivalent to forge's {@code EntityJoinWorldEvent}.
      */
     Event<Add> ADD = EventFactory.createInteractionResult(Add.class);
-    Event<PlaceBlock> PLACE_BLOCK = EventFactory.createInteractionResult(PlaceBlock.class);
+    /**
+     * {@link #PLACE_BLOCK}, accepting listeners for the block of the state given to the listeners.
+     */
+    KeyedEvent<Block, PlaceBlock> PLACE_BLOCK_BY_BLOCK = EventFactory.createKeyedInteractionResult(PlaceBlock.class);
+    Event<PlaceBlock> PLACE_BLOCK = PLACE_BLOCK_BY_BLOCK;
     
     interface LivingDeath {
         InteractionResult die(LivingEntity entity, DamageSource source);
@@ -21,6 +21,7 @@ package me.shedaniel.architectury.event.events;
 
 import me.shedaniel.architectury.event.Event;
 import me.shedaniel.architectury.event.EventFactory;
+import me.shedaniel.architectury.event.KeyedEvent;
 import me.shedaniel.architectury.utils.IntValue;
 import net.minecraft.advancements.Advancement;
 import net.minecraft.core.BlockPos;
@@ -30,8 +31,10 @@ import net.minecraft.world.InteractionResult;
 import net.minecraft.world.entity.item.ItemEntity;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.inventory.AbstractContainerMenu;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.state.BlockState;
 import org.jetbrains.annotations.Nullable;
 
@@ -43,12 +46,20 @@ public interface PlayerEvent {
     Event<PlayerClone> PLAYER_CLONE = EventFactory.createLoop(PlayerClone.class);
     Event<CraftItem> CRAFT_ITEM = EventFactory.createLoop(CraftItem.class);
     Event<SmeltItem> SMELT_ITEM = EventFactory.createLoop(SmeltItem.class);
-    Event<PickupItemPredicate> PICKUP_ITEM_PRE = EventFactory.createInteractionResult(PickupItemPredicate.class);
+    /**
+     * {@link #PICKUP_ITEM_PRE}, accepting listeners for the item of the picked up stack.
+     */
+    KeyedEvent<Item, PickupItemPredicate> PICKUP_ITEM_PRE_BY_ITEM = EventFactory.createKeyedInteractionResult(PickupItemPredicate.class);
+    Event<PickupItemPredicate> PICKUP_ITEM_PRE = PICKUP_ITEM_PRE_BY_ITEM;
     Event<PickupItem> PICKUP_ITEM_POST = EventFactory.createLoop(PickupItem.class);
     Event<DropItem> DROP_ITEM = EventFactory.createLoop(DropItem.class);
     Event<OpenMenu> OPEN_MENU = EventFactory.createLoop(OpenMenu.class);
     Event<CloseMenu> CLOSE_MENU = EventFactory.createLoop(CloseMenu.class);
-    Event<BreakBlock> BREAK_BLOCK = EventFactory.createInteractionResult(BreakBlock.class);
+    /**
+     * {@link #BREAK_BLOCK}, accepting listeners for the block being broken.
+     */
+    KeyedEvent<Block, BreakBlock> BREAK_BLOCK_BY_BLOCK = EventFactory.createKeyedInteractionResult(BreakBlock.class);
+    Event<BreakBlock> BREAK_BLOCK = BREAK_BLOCK_BY_BLOCK;
     
     interface PlayerJoin {
         void join(ServerPlayer player);
@@ -0,0 +1,300 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.event;
+
+import me.shedaniel.architectury.event.EventWatchdog;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Guards the listeners of a single event for {@link EventWatchdog}.
+ */
+@ApiStatus.Internal
+public final class EventGuard<T> {
+    private static final Logger LOGGER = LogManager.getLogger(EventGuard.class);
+    private static final int MAX_SAMPLED_FRAMES = 32;
+    private final Class<T> type;
+    private final EventInvokerGenerator.Mode mode;
+    private final Supplier<String> name;
+    private final Map<Object, ListenerGuard> guards = Collections.synchronizedMap(new IdentityHashMap<>());
+    private BiFunction<T, Object, T> factory;
+    private boolean factoryGenerated;
+    
+    public EventGuard(Class<T> type, EventInvokerGenerator.Mode mode, Supplier<String> name) {
+        this.type = type;
+        this.mode = mode;
+        this.name = name;
+    }
+    
+    @Nullable
+    private synchronized BiFunction<T, Object, T> getFactory() {
+        if (!factoryGenerated) {
+            factoryGenerated = true;
+            factory = EventInvokerGenerator.guardFactory(type, mode);
+        }
+        return factory;
+    }
+    
+    /**
+     * Wraps every listener in a guard, a listener keeps its guard and with it its suspension across rebuilds.
+     *
+     * @return the wrapped listeners, or {@code null} if the event can not be guarded
+     */
+    @Nullable
+    public Object[] wrapListeners(Object[] listeners) {
+        BiFunction<T, Object, T> factory = getFactory();
+        if (factory == null) return null;
+        Sampler.ensureStarted();
+        Object[] wrapped = new Object[listeners.length];
+        for (int i = 0; i < listeners.length; i++) {
+            wrapped[i] = factory.apply((T) listeners[i], guards.computeIfAbsent(listeners[i], listener -> new ListenerGuard(name, listener.getClass())));
+        }
+        return wrapped;
+    }
+    
+    /**
+     * Drops the guards of listeners that are no longer registered, a listener registered again starts over unsuspended.
+     */
+    public void retainListeners(Set<Object> current) {
+        guards.keySet().retainAll(current);
+    }
+    
+    public List<ListenerGuard> getSuspended() {
+        List<ListenerGuard> suspended = new ArrayList<>();
+        synchronized (guards) {
+            for (ListenerGuard guard : guards.values()) {
+                if (guard.isSuspended()) {
+                    suspended.add(guard);
+                }
+            }
+        }
+        return suspended;
+    }
+    
+    public static final class ListenerGuard {
+        private final Supplier<String> event;
+        private final String listener;
+        private volatile boolean suspended;
+        private volatile int strikes;
+        private int overruns;
+        private long failures;
+        private long sampleStart;
+        private StackTraceElement[] sample;
+        
+        private ListenerGuard(Supplier<String> event, Class<?> listenerClass) {
+            this.event = event;
+            String name = listenerClass.getName();
+            int lambda = name.indexOf("$$Lambda");
+            this.listener = lambda == -1 ? name : name.substring(0, lambda);
+        }
+        
+        boolean isSuspended() {
+            return suspended;
+        }
+        
+        long start() {
+            long start = System.nanoTime();
+            Dispatch.current().push(this, start);
+            return start;
+        }
+        
+        void end(long start, @Nullable Throwable throwable) {
+            long elapsed = System.nanoTime() - start;
+            Dispatch.current().pop();
+            if (throwable instanceof VirtualMachineError) {
+                // Nothing sensible can be done after running out of memory or stack
+                throw (VirtualMachineError) throwable;
+            }
+            boolean overrun = elapsed > EventWatchdog.getBudgetNanos();
+            if (throwable != null || overrun) {
+                strike(start, elapsed, overrun, throwable);
+            } else if (strikes != 0) {
+                synchronized (this) {
+                    strikes = 0;
+                    overruns = 0;
+                }
+            }
+        }
+        
+        private synchronized void strike(long start, long elapsed, boolean overrun, @Nullable Throwable throwable) {
+            strikes++;
+            if (throwable != null) {
+                failures++;
+                // Back off exponentially so that a listener failing every tick does not flood the log
+                if (Long.bitCount(failures) == 1) {
+                    LOGGER.error("Listener {} of {} threw an exception ({} times so far), the remaining listeners are still invoked", listener, event.get(), failures, throwable);
+                }
+            }
+            if (overrun) {
+                overruns++;
+                int warnAfter = EventWatchdog.getWarnAfter();
+                if (warnAfter > 0 && overruns % warnAfter == 0) {
+                    LOGGER.warn(createReport(start, elapsed));
+                }
+            }
+            int suspendAfter = EventWatchdog.getSuspendAfter();
+            if (suspendAfter > 0 && strikes >= suspendAfter && !suspended) {
+                suspended = true;
+                LOGGER.error("Suspending listener {} of {} after {} consecutive failures or overruns, it will be skipped until resumed", listener, event.get(), strikes);
+            }
+        }
+        
+        private String createReport(long start, long elapsed) {
+            StringBuilder report = new StringBuilder();
+            report.append("Listener ").append(listener).append(" of ").append(event.get())
+                    .append(" exceeded its budget of ").append(TimeUnit.NANOSECONDS.toMillis(EventWatchdog.getBudgetNanos())).append(" ms ")
+                    .append(overruns).append(" times in a row, the last call took ").append(TimeUnit.NANOSECONDS.toMillis(elapsed)).append(" ms");
+            if (sample != null && sampleStart == start) {
+                report.append(", sampled while running:");
+                for (int i = 0; i < Math.min(sample.length, MAX_SAMPLED_FRAMES); i++) {
+                    report.append("\n\tat ").append(sample[i]);
+                }
+                if (sample.length > MAX_SAMPLED_FRAMES) {
+                    report.append("\n\t... ").append(sample.length - MAX_SAMPLED_FRAMES).append(" more");
+                }
+            }
+            return report.toString();
+        }
+        
+        private synchronized void sampled(long start, StackTraceElement[] sample) {
+            this.sampleStart = start;
+            this.sample = sample;
+        }
+        
+        public synchronized void resume() {
+            suspended = false;
+            strikes = 0;
+            overruns = 0;
+        }
+        
+        @Override
+        public String toString() {
+            return listener + " of " + event.get();
+        }
+    }
+    
+    /**
+     * The guarded listeners currently running on a thread, innermost last.
+     */
+    private static final class Dispatch {
+        private static final List<Dispatch> DISPATCHES = new CopyOnWriteArrayList<>();
+        private static final ThreadLocal<Dispatch> CURRENT = ThreadLocal.withInitial(Dispatch::new);
+        private final WeakReference<Thread> thread = new WeakReference<>(Thread.currentThread());
+        private ListenerGuard[] guards = new ListenerGuard[4];
+        private long[] starts = new long[4];
+        private int depth;
+        private volatile long currentStart;
+        private volatile ListenerGuard current;
+        private volatile boolean sampled;
+        
+        private Dispatch() {
+            DISPATCHES.add(this);
+        }
+        
+        private static Dispatch current() {
+            return CURRENT.get();
+        }
+        
+        private void push(ListenerGuard guard, long start) {
+            if (depth == guards.length) {
+                guards = Arrays.copyOf(guards, depth * 2);
+                starts = Arrays.copyOf(starts, depth * 2);
+            }
+            guards[depth] = guard;
+            starts[depth++] = start;
+            setCurrent(guard, start);
+        }
+        
+        private void pop() {
+            if (depth == 0) return;
+            guards[--depth] = null;
+            setCurrent(depth == 0 ? null : guards[depth - 1], depth == 0 ? 0 : starts[depth - 1]);
+        }
+        
+        private void setCurrent(@Nullable ListenerGuard guard, long start) {
+            sampled = false;
+            currentStart = start;
+            current = guard;
+        }
+    }
+    
+    /**
+     * Samples the stack of threads stuck in a listener for longer than the budget.
+     */
+    private static final class Sampler extends Thread {
+        private static volatile boolean started;
+        
+        private Sampler() {
+            super("Architectury Event Watchdog");
+            setDaemon(true);
+        }
+        
+        private static void ensureStarted() {
+            if (!started) {
+                synchronized (Sampler.class) {
+                    if (!started) {
+                        new Sampler().start();
+                        started = true;
+                    }
+                }
+            }
+        }
+        
+        @Override
+        public void run() {
+            while (true) {
+                long budget = EventWatchdog.getBudgetNanos();
+                try {
+                    TimeUnit.NANOSECONDS.sleep(Math.max(TimeUnit.MILLISECONDS.toNanos(1), budget / 2));
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!EventWatchdog.isEnabled()) continue;
+                long now = System.nanoTime();
+                for (Dispatch dispatch : Dispatch.DISPATCHES) {
+                    Thread thread = dispatch.thread.get();
+                    if (thread == null || !thread.isAlive()) {
+                        Dispatch.DISPATCHES.remove(dispatch);
+                        continue;
+                    }
+                    ListenerGuard guard = dispatch.current;
+                    long start = dispatch.currentStart;
+                    if (guard != null && !dispatch.sampled && now - start > budget) {
+                        StackTraceElement[] trace = thread.getStackTrace();
+                        // Only keep the sample if the listener was still running while it was taken
+                        if (dispatch.current == guard && dispatch.currentStart == start) {
+                            guard.sampled(start, trace);
+                            dispatch.sampled = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,593 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.event;
+
+import net.minecraft.world.InteractionResult;
+import net.minecraft.world.InteractionResultHolder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates an invoker class per event, looping over a listener array with direct interface calls.
+ * Events whose interface cannot be implemented this way fall back to the given function.
+ */
+@ApiStatus.Internal
+public final class EventInvokerGenerator {
+    private static final Logger LOGGER = LogManager.getLogger(EventInvokerGenerator.class);
+    private static final String BASE = Type.getInternalName(GeneratedEventInvoker.class);
+    private static final String PACKAGE = "me/shedaniel/architectury/impl/event/generated/";
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    
+    private EventInvokerGenerator() {}
+    
+    public enum Mode {
+        /**
+         * Invokes every listener, discarding any return value.
+         */
+        LOOP,
+        /**
+         * Invokes listeners until one returns something other than {@link InteractionResult#PASS}.
+         */
+        INTERACTION_RESULT,
+        /**
+         * Invokes listeners until one returns a {@link InteractionResultHolder} not holding {@link InteractionResult#PASS}.
+         */
+        INTERACTION_RESULT_HOLDER,
+    }
+    
+    public static <T> Function<List<T>, T> invokerFactory(Class<T> clazz, Mode mode, Function<List<T>, T> fallback) {
+        return new Factory<>(clazz, mode, fallback);
+    }
+    
+    private static final class Factory<T> implements Function<List<T>, T> {
+        private final Class<T> clazz;
+        private final Mode mode;
+        private final Function<List<T>, T> fallback;
+        private Constructor<?> constructor;
+        private boolean failed;
+        
+        private Factory(Class<T> clazz, Mode mode, Function<List<T>, T> fallback) {
+            this.clazz = clazz;
+            this.mode = mode;
+            this.fallback = fallback;
+        }
+        
+        @Override
+        public T apply(List<T> listeners) {
+            Constructor<?> constructor = getConstructor();
+            if (constructor == null) {
+                return fallback.apply(listeners);
+            }
+            try {
+                return clazz.cast(constructor.newInstance((Object) listeners.toArray()));
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        
+        private synchronized Constructor<?> getConstructor() {
+            if (constructor == null && !failed) {
+                try {
+                    constructor = generate(clazz, mode).getConstructor(Object[].class);
+                } catch (Throwable throwable) {
+                    failed = true;
+                    LOGGER.warn("Failed to generate event invoker for " + clazz.getName() + ", falling back to proxies", throwable);
+                }
+            }
+            return constructor;
+        }
+    }
+    
+    /**
+     * Creates a factory wrapping a listener so that every call to it is timed and recorded
+     * into the given statistics, or {@code null} if the interface can not be generated for.
+     */
+    @Nullable
+    public static <T> BiFunction<T, Object, T> timerFactory(Class<T> clazz, Mode mode) {
+        try {
+            return wrapperFactory(clazz, generateTimer(clazz, mode));
+        } catch (Throwable throwable) {
+            LOGGER.warn("Failed to generate event timer for " + clazz.getName() + ", its listeners will not be measured", throwable);
+            return null;
+        }
+    }
+    
+    /**
+     * Creates a factory wrapping a listener so that it is skipped while suspended, exceptions thrown by it are
+     * contained and its calls are reported to the given {@link EventGuard.ListenerGuard},
+     * or {@code null} if the interface can not be generated for.
+     */
+    @Nullable
+    public static <T> BiFunction<T, Object, T> guardFactory(Class<T> clazz, Mode mode) {
+        try {
+            return wrapperFactory(clazz, generateGuard(clazz, mode));
+        } catch (Throwable throwable) {
+            LOGGER.warn("Failed to generate event guard for " + clazz.getName() + ", its listeners will not be guarded", throwable);
+            return null;
+        }
+    }
+    
+    /**
+     * Creates an invoker that forwards every call to the invoker returned by the given call site target,
+     * which is held in a static final field so that the JIT can constant fold it and inline through it until
+     * the {@link MutableCallSite} changes, or {@code null} if the interface can not be generated for.
+     */
+    @Nullable
+    public static <T> T createFrozen(Class<T> clazz, MutableCallSite site) {
+        try {
+            return clazz.cast(generateFrozen(clazz, site.dynamicInvoker()).getConstructor().newInstance());
+        } catch (Throwable throwable) {
+            LOGGER.warn("Failed to generate frozen event invoker for " + clazz.getName(), throwable);
+            return null;
+        }
+    }
+    
+    private static void checkInterface(Class<?> clazz) {
+        if (!clazz.isInterface() || !Modifier.isPublic(clazz.getModifiers())) {
+            throw new IllegalArgumentException(clazz.getName() + " is not a public interface!");
+        }
+    }
+    
+    private static void checkReturnType(Method method, Mode mode) {
+        if (mode != Mode.LOOP && !method.getReturnType().isAssignableFrom(mode == Mode.INTERACTION_RESULT ? InteractionResult.class : InteractionResultHolder.class)) {
+            throw new IllegalArgumentException(method + " does not return " + (mode == Mode.INTERACTION_RESULT ? "InteractionResult" : "InteractionResultHolder") + "!");
+        }
+    }
+    
+    private static ClassWriter createWriter() {
+        return new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // Loading classes here could trigger class loading of game classes, the generated code never merges reference types anyway
+                return "java/lang/Object";
+            }
+        };
+    }
+    
+    /**
+     * Starts a class implementing the event interface that wraps a single listener,
+     * with a {@code delegate} field for the listener and a {@code data} field for the given data.
+     */
+    private static ClassWriter createWrapper(String name, String owner) {
+        ClassWriter writer = createWriter();
+        writer.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, name, null, "java/lang/Object", new String[]{owner});
+        writer.visitField(ACC_PRIVATE | ACC_FINAL, "delegate", "Ljava/lang/Object;", null, null).visitEnd();
+        writer.visitField(ACC_PRIVATE | ACC_FINAL, "data", "Ljava/lang/Object;", null, null).visitEnd();
+        
+        MethodVisitor constructor = writer.visitMethod(ACC_PUBLIC, "<init>", "(Ljava/lang/Object;Ljava/lang/Object;)V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitVarInsn(ALOAD, 1);
+        constructor.visitFieldInsn(PUTFIELD, name, "delegate", "Ljava/lang/Object;");
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitVarInsn(ALOAD, 2);
+        constructor.visitFieldInsn(PUTFIELD, name, "data", "Ljava/lang/Object;");
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+        return writer;
+    }
+    
+    private static <T> BiFunction<T, Object, T> wrapperFactory(Class<T> clazz, Class<?> wrapper) throws NoSuchMethodException {
+        Constructor<?> constructor = wrapper.getConstructor(Object.class, Object.class);
+        return (listener, data) -> {
+            try {
+                return clazz.cast(constructor.newInstance(listener, data));
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+    
+    private static void visitDelegateCall(MethodVisitor visitor, String name, String owner, Method method) {
+        visitor.visitVarInsn(ALOAD, 0);
+        visitor.visitFieldInsn(GETFIELD, name, "delegate", "Ljava/lang/Object;");
+        visitor.visitTypeInsn(CHECKCAST, owner);
+        int argumentIndex = 1;
+        for (Type argument : Type.getArgumentTypes(method)) {
+            visitor.visitVarInsn(argument.getOpcode(ILOAD), argumentIndex);
+            argumentIndex += argument.getSize();
+        }
+        visitor.visitMethodInsn(INVOKEINTERFACE, owner, method.getName(), Type.getMethodDescriptor(method), true);
+    }
+    
+    private static void visitData(MethodVisitor visitor, String name) {
+        visitor.visitVarInsn(ALOAD, 0);
+        visitor.visitFieldInsn(GETFIELD, name, "data", "Ljava/lang/Object;");
+    }
+    
+    private static int getLocalsStart(Method method) {
+        int index = 1;
+        for (Type argument : Type.getArgumentTypes(method)) {
+            index += argument.getSize();
+        }
+        return index;
+    }
+    
+    private static Class<?> generateTimer(Class<?> clazz, Mode mode) {
+        checkInterface(clazz);
+        String owner = Type.getInternalName(clazz);
+        String name = PACKAGE + clazz.getSimpleName() + "Timer$" + COUNTER.incrementAndGet();
+        ClassWriter writer = createWrapper(name, owner);
+        
+        for (Method method : collectMethods(clazz)) {
+            checkReturnType(method, mode);
+            Type returnType = Type.getReturnType(method);
+            MethodVisitor visitor = writer.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, null);
+            visitor.visitCode();
+            
+            int startIndex = getLocalsStart(method);
+            int resultIndex = startIndex + 2;
+            
+            // long start = System.nanoTime();
+            visitor.visitMethodInsn(INVOKESTATIC, "java/lang/System", "nanoTime", "()J", false);
+            visitor.visitVarInsn(LSTORE, startIndex);
+            
+            // result = ((T) this.delegate).method(args);
+            visitDelegateCall(visitor, name, owner, method);
+            if (returnType.getSort() != Type.VOID) {
+                visitor.visitVarInsn(returnType.getOpcode(ISTORE), resultIndex);
+            }
+            
+            // record(this.data, start[, !isPass(result)]);
+            visitData(visitor, name);
+            visitor.visitVarInsn(LLOAD, startIndex);
+            if (mode == Mode.LOOP) {
+                visitor.visitMethodInsn(INVOKESTATIC, BASE, "record", "(Ljava/lang/Object;J)V", false);
+            } else {
+                visitor.visitVarInsn(ALOAD, resultIndex);
+                visitor.visitMethodInsn(INVOKESTATIC, BASE, mode == Mode.INTERACTION_RESULT ? "isPass" : "isPassHolder", "(Ljava/lang/Object;)Z", false);
+                visitor.visitMethodInsn(INVOKESTATIC, BASE, "record", "(Ljava/lang/Object;JZ)V", false);
+            }
+            
+            if (returnType.getSort() == Type.VOID) {
+                visitor.visitInsn(RETURN);
+            } else {
+                visitor.visitVarInsn(returnType.getOpcode(ILOAD), resultIndex);
+                visitor.visitInsn(returnType.getOpcode(IRETURN));
+            }
+            visitor.visitMaxs(0, 0);
+            visitor.visitEnd();
+        }
+        
+        writer.visitEnd();
+        return new InvokerClassLoader(clazz.getClassLoader()).define(name.replace('/', '.'), writer.toByteArray());
+    }
+    
+    private static Class<?> generateGuard(Class<?> clazz, Mode mode) {
+        checkInterface(clazz);
+        String owner = Type.getInternalName(clazz);
+        String name = PACKAGE + clazz.getSimpleName() + "Guard$" + COUNTER.incrementAndGet();
+        ClassWriter writer = createWrapper(name, owner);
+        
+        for (Method method : collectMethods(clazz)) {
+            checkReturnType(method, mode);
+            Type returnType = Type.getReturnType(method);
+            MethodVisitor visitor = writer.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, null);
+            visitor.visitCode();
+            
+            int startIndex = getLocalsStart(method);
+            int resultIndex = startIndex + 2;
+            int throwableIndex = resultIndex + 2;
+            Label run = new Label();
+            Label tryStart = new Label();
+            Label tryEnd = new Label();
+            Label handler = new Label();
+            visitor.visitTryCatchBlock(tryStart, tryEnd, handler, "java/lang/Throwable");
+            
+            // if (isSuspended(this.data)) return PASS;
+            visitData(visitor, name);
+            visitor.visitMethodInsn(INVOKESTATIC, BASE, "isSuspended", "(Ljava/lang/Object;)Z", false);
+            visitor.visitJumpInsn(IFEQ, run);
+            visitPassReturn(visitor, mode, returnType);
+            visitor.visitLabel(run);
+            
+            // long start = guardStart(this.data);
+            visitData(visitor, name);
+            visitor.visitMethodInsn(INVOKESTATIC, BASE, "guardStart", "(Ljava/lang/Object;)J", false);
+            visitor.visitVarInsn(LSTORE, startIndex);
+            
+            // try { result = ((T) this.delegate).method(args); }
+            visitor.visitLabel(tryStart);
+            visitDelegateCall(visitor, name, owner, method);
+            if (returnType.getSort() != Type.VOID) {
+                visitor.visitVarInsn(returnType.getOpcode(ISTORE), resultIndex);
+            }
+            visitor.visitLabel(tryEnd);
+            
+            // guardEnd(this.data, start); return result;
+            visitData(visitor, name);
+            visitor.visitVarInsn(LLOAD, startIndex);
+            visitor.visitMethodInsn(INVOKESTATIC, BASE, "guardEnd", "(Ljava/lang/Object;J)V", false);
+            if (returnType.getSort() == Type.VOID) {
+                visitor.visitInsn(RETURN);
+            } else {
+                visitor.visitVarInsn(returnType.getOpcode(ILOAD), resultIndex);
+                visitor.visitInsn(returnType.getOpcode(IRETURN));
+            }
+            
+            // catch (Throwable throwable) { guardFailed(this.data, start, throwable); return PASS; }
+            visitor.visitLabel(handler);
+            visitor.visitVarInsn(ASTORE, throwableIndex);
+            visitData(visitor, name);
+            visitor.visitVarInsn(LLOAD, startIndex);
+            visitor.visitVarInsn(ALOAD, throwableIndex);
+            visitor.visitMethodInsn(INVOKESTATIC, BASE, "guardFailed", "(Ljava/lang/Object;JLjava/lang/Throwable;)V", false);
+            visitPassReturn(visitor, mode, returnType);
+            
+            visitor.visitMaxs(0, 0);
+            visitor.visitEnd();
+        }
+        
+        writer.visitEnd();
+        return new InvokerClassLoader(clazz.getClassLoader()).define(name.replace('/', '.'), writer.toByteArray());
+    }
+    
+    private static Class<?> generateFrozen(Class<?> clazz, MethodHandle target) throws ClassNotFoundException {
+        checkInterface(clazz);
+        String owner = Type.getInternalName(clazz);
+        String name = PACKAGE + clazz.getSimpleName() + "Frozen$" + COUNTER.incrementAndGet();
+        ClassWriter writer = createWriter();
+        writer.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, name, null, "java/lang/Object", new String[]{owner});
+        writer.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "TARGET", "Ljava/lang/invoke/MethodHandle;", null, null).visitEnd();
+        
+        // static { TARGET = takeFrozenTarget(name); }
+        MethodVisitor initializer = writer.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        initializer.visitCode();
+        initializer.visitLdcInsn(name);
+        initializer.visitMethodInsn(INVOKESTATIC, BASE, "takeFrozenTarget", "(Ljava/lang/String;)Ljava/lang/invoke/MethodHandle;", false);
+        initializer.visitFieldInsn(PUTSTATIC, name, "TARGET", "Ljava/lang/invoke/MethodHandle;");
+        initializer.visitInsn(RETURN);
+        initializer.visitMaxs(0, 0);
+        initializer.visitEnd();
+        
+        MethodVisitor constructor = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+        
+        for (Method method : collectMethods(clazz)) {
+            Type returnType = Type.getReturnType(method);
+            MethodVisitor visitor = writer.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, null);
+            visitor.visitCode();
+            
+            // return ((T) TARGET.invokeExact()).method(args);
+            visitor.visitFieldInsn(GETSTATIC, name, "TARGET", "Ljava/lang/invoke/MethodHandle;");
+            visitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", "()Ljava/lang/Object;", false);
+            visitor.visitTypeInsn(CHECKCAST, owner);
+            int argumentIndex = 1;
+            for (Type argument : Type.getArgumentTypes(method)) {
+                visitor.visitVarInsn(argument.getOpcode(ILOAD), argumentIndex);
+                argumentIndex += argument.getSize();
+            }
+            visitor.visitMethodInsn(INVOKEINTERFACE, owner, method.getName(), Type.getMethodDescriptor(method), true);
+            visitor.visitInsn(returnType.getOpcode(IRETURN));
+            visitor.visitMaxs(0, 0);
+            visitor.visitEnd();
+        }
+        
+        writer.visitEnd();
+        String className = name.replace('/', '.');
+        GeneratedEventInvoker.putFrozenTarget(name, target);
+        Class<?> frozen = new InvokerClassLoader(clazz.getClassLoader()).define(className, writer.toByteArray());
+        // Initialize right away, the target is only handed over once
+        return Class.forName(className, true, frozen.getClassLoader());
+    }
+    
+    private static Class<?> generate(Class<?> clazz, Mode mode) {
+        checkInterface(clazz);
+        String owner = Type.getInternalName(clazz);
+        String name = PACKAGE + clazz.getSimpleName() + "Invoker$" + COUNTER.incrementAndGet();
+        ClassWriter writer = createWriter();
+        writer.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, name, null, BASE, new String[]{owner});
+        
+        MethodVisitor constructor = writer.visitMethod(ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitVarInsn(ALOAD, 1);
+        constructor.visitMethodInsn(INVOKESPECIAL, BASE, "<init>", "([Ljava/lang/Object;)V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+        
+        for (Method method : collectMethods(clazz)) {
+            checkReturnType(method, mode);
+            generateMethod(writer, owner, method, mode);
+        }
+        
+        writer.visitEnd();
+        return new InvokerClassLoader(clazz.getClassLoader()).define(name.replace('/', '.'), writer.toByteArray());
+    }
+    
+    private static Iterable<Method> collectMethods(Class<?> clazz) {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        for (Method method : clazz.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers()) && !isObjectMethod(method)) {
+                methods.putIfAbsent(method.getName() + Type.getMethodDescriptor(method), method);
+            }
+        }
+        return methods.values();
+    }
+    
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+    
+    private static void generateMethod(ClassWriter writer, String owner, Method method, Mode mode) {
+        String descriptor = Type.getMethodDescriptor(method);
+        Type[] arguments = Type.getArgumentTypes(descriptor);
+        Type returnType = Type.getReturnType(descriptor);
+        MethodVisitor visitor = writer.visitMethod(ACC_PUBLIC, method.getName(), descriptor, null, null);
+        visitor.visitCode();
+        
+        int listenersIndex = 1;
+        for (Type argument : arguments) {
+            listenersIndex += argument.getSize();
+        }
+        int lengthIndex = listenersIndex + 1;
+        int iIndex = listenersIndex + 2;
+        
+        // Object[] listeners = this.listeners; int length = listeners.length;
+        visitor.visitVarInsn(ALOAD, 0);
+        visitor.visitFieldInsn(GETFIELD, BASE, "listeners", "[Ljava/lang/Object;");
+        visitor.visitInsn(DUP);
+        visitor.visitVarInsn(ASTORE, listenersIndex);
+        visitor.visitInsn(ARRAYLENGTH);
+        visitor.visitVarInsn(ISTORE, lengthIndex);
+        
+        // for (int i = 0; i < length; i++)
+        visitor.visitInsn(ICONST_0);
+        visitor.visitVarInsn(ISTORE, iIndex);
+        Label loop = new Label();
+        Label end = new Label();
+        visitor.visitLabel(loop);
+        visitor.visitVarInsn(ILOAD, iIndex);
+        visitor.visitVarInsn(ILOAD, lengthIndex);
+        visitor.visitJumpInsn(IF_ICMPGE, end);
+        
+        // ((T) listeners[i]).method(args)
+        visitor.visitVarInsn(ALOAD, listenersIndex);
+        visitor.visitVarInsn(ILOAD, iIndex);
+        visitor.visitInsn(AALOAD);
+        visitor.visitTypeInsn(CHECKCAST, owner);
+        int argumentIndex = 1;
+        for (Type argument : arguments) {
+            visitor.visitVarInsn(argument.getOpcode(ILOAD), argumentIndex);
+            argumentIndex += argument.getSize();
+        }
+        visitor.visitMethodInsn(INVOKEINTERFACE, owner, method.getName(), descriptor, true);
+        
+        if (mode == Mode.LOOP) {
+            if (returnType.getSize() == 1) {
+                visitor.visitInsn(POP);
+            } else if (returnType.getSize() == 2) {
+                visitor.visitInsn(POP2);
+            }
+        } else {
+            // if (!isPass(result)) return result;
+            Label next = new Label();
+            visitor.visitInsn(DUP);
+            visitor.visitMethodInsn(INVOKESTATIC, BASE, mode == Mode.INTERACTION_RESULT ? "isPass" : "isPassHolder", "(Ljava/lang/Object;)Z", false);
+            visitor.visitJumpInsn(IFNE, next);
+            visitor.visitInsn(ARETURN);
+            visitor.visitLabel(next);
+            visitor.visitInsn(POP);
+        }
+        
+        visitor.visitIincInsn(iIndex, 1);
+        visitor.visitJumpInsn(GOTO, loop);
+        visitor.visitLabel(end);
+        
+        visitPassReturn(visitor, mode, returnType);
+        
+        visitor.visitMaxs(0, 0);
+        visitor.visitEnd();
+    }
+    
+    /**
+     * Returns the result of an invocation where every listener passed.
+     */
+    private static void visitPassReturn(MethodVisitor visitor, Mode mode, Type returnType) {
+        if (mode == Mode.LOOP) {
+            visitDefaultReturn(visitor, returnType);
+        } else {
+            visitor.visitMethodInsn(INVOKESTATIC, BASE, mode == Mode.INTERACTION_RESULT ? "pass" : "passHolder", "()Ljava/lang/Object;", false);
+            visitor.visitTypeInsn(CHECKCAST, returnType.getInternalName());
+            visitor.visitInsn(ARETURN);
+        }
+    }
+    
+    private static void visitDefaultReturn(MethodVisitor visitor, Type returnType) {
+        switch (returnType.getSort()) {
+            case Type.VOID:
+                visitor.visitInsn(RETURN);
+                return;
+            case Type.LONG:
+                visitor.visitInsn(LCONST_0);
+                break;
+            case Type.FLOAT:
+                visitor.visitInsn(FCONST_0);
+                break;
+            case Type.DOUBLE:
+                visitor.visitInsn(DCONST_0);
+                break;
+            case Type.OBJECT:
+            case Type.ARRAY:
+                visitor.visitInsn(ACONST_NULL);
+                break;
+            default:
+                visitor.visitInsn(ICONST_0);
+                break;
+        }
+        visitor.visitInsn(returnType.getOpcode(IRETURN));
+    }
+    
+    private static final class InvokerClassLoader extends ClassLoader {
+        private final ClassLoader eventLoader;
+        
+        private InvokerClassLoader(ClassLoader eventLoader) {
+            super(EventInvokerGenerator.class.getClassLoader());
+            this.eventLoader = eventLoader;
+        }
+        
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            // The event interface may live in a mod class loader we cannot see from architectury
+            if (eventLoader != null && eventLoader != getParent()) {
+                return Class.forName(name, false, eventLoader);
+            }
+            return super.findClass(name);
+        }
+        
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.event;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import me.shedaniel.architectury.event.EventMetrics;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.TextComponent;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.List;
+
+/**
+ * {@code /architectury events [enable|disable|reset]}, prints the slowest events and their slowest listeners.
+ */
+@ApiStatus.Internal
+public final class EventMetricsCommand {
+    private static final int EVENTS = 10;
+    private static final int LISTENERS = 3;
+    
+    private EventMetricsCommand() {}
+    
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("architectury")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("events")
+                        .executes(EventMetricsCommand::print)
+                        .then(Commands.literal("enable").executes(context -> setEnabled(context, true)))
+                        .then(Commands.literal("disable").executes(context -> setEnabled(context, false)))
+                        .then(Commands.literal("reset").executes(context -> {
+                            EventMetrics.reset();
+                            context.getSource().sendSuccess(new TextComponent("Event metrics have been reset"), true);
+                            return 1;
+                        }))));
+    }
+    
+    private static int setEnabled(CommandContext<CommandSourceStack> context, boolean enabled) {
+        EventMetrics.setEnabled(enabled);
+        context.getSource().sendSuccess(new TextComponent("Event metrics are now " + (enabled ? "enabled" : "disabled")), true);
+        return 1;
+    }
+    
+    private static int print(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        if (!EventMetrics.isEnabled()) {
+            source.sendSuccess(new TextComponent("Event metrics are disabled, enable them with /architectury events enable"), false);
+            return 0;
+        }
+        List<EventMetrics.EventStatistics> statistics = EventMetrics.getStatistics();
+        if (statistics.isEmpty()) {
+            source.sendSuccess(new TextComponent("No events have been invoked yet"), false);
+            return 0;
+        }
+        for (EventMetrics.EventStatistics event : statistics.subList(0, Math.min(EVENTS, statistics.size()))) {
+            source.sendSuccess(new TextComponent(event.getName() + ": " + format(event.getStatistics())), false);
+            List<EventMetrics.ListenerStatistics> listeners = event.getListeners();
+            for (EventMetrics.ListenerStatistics listener : listeners.subList(0, Math.min(LISTENERS, listeners.size()))) {
+                String mod = listener.getModId().map(id -> " [" + id + "]").orElse("");
+                source.sendSuccess(new TextComponent("  " + listener.getListenerClass() + mod + ": " + format(listener.getStatistics())), false);
+            }
+        }
+        return statistics.size();
+    }
+    
+    private static String format(EventMetrics.Statistics statistics) {
+        long invocations = statistics.getInvocations();
+        String text = String.format("%d calls, %.3f ms total, %.1f us avg, %.1f us max", invocations,
+                statistics.getTotalNanos() / 1_000_000.0, invocations == 0 ? 0.0 : statistics.getTotalNanos() / 1000.0 / invocations,
+                statistics.getMaxNanos() / 1000.0);
+        if (statistics.getShortCircuits() > 0) {
+            text += ", " + statistics.getShortCircuits() + " cancelled";
+        }
+        return text;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.event;
+
+import me.shedaniel.architectury.event.Event;
+import me.shedaniel.architectury.event.EventMetrics;
+import me.shedaniel.architectury.platform.Mod;
+import me.shedaniel.architectury.platform.Platform;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Measures a single event and its listeners for {@link EventMetrics}.
+ */
+@ApiStatus.Internal
+public final class EventProfiler<T> {
+    private static final Map<Class<?>, Optional<String>> MOD_IDS = new ConcurrentHashMap<>();
+    private final Class<T> type;
+    private final EventInvokerGenerator.Mode mode;
+    private final Class<?> owner;
+    private final EventMetrics.Statistics statistics = new EventMetrics.Statistics();
+    private final Map<Object, EventMetrics.Statistics> listeners = Collections.synchronizedMap(new IdentityHashMap<>());
+    private BiFunction<T, Object, T> timer;
+    private boolean timerGenerated;
+    private String name;
+    
+    /**
+     * @param owner the class the event was created for, used to find the field holding the event
+     */
+    public EventProfiler(Class<T> type, EventInvokerGenerator.Mode mode, Class<?> owner) {
+        this.type = type;
+        this.mode = mode;
+        this.owner = owner;
+    }
+    
+    public Class<T> getType() {
+        return type;
+    }
+    
+    public EventInvokerGenerator.Mode getMode() {
+        return mode;
+    }
+    
+    @Nullable
+    private synchronized BiFunction<T, Object, T> getTimer() {
+        if (!timerGenerated) {
+            timerGenerated = true;
+            timer = EventInvokerGenerator.timerFactory(type, mode);
+        }
+        return timer;
+    }
+    
+    /**
+     * Wraps every listener so that its invocations are measured.
+     *
+     * @return the wrapped listeners, or {@code null} if the event can not be measured
+     */
+    @Nullable
+    public Object[] wrapListeners(Object[] listeners) {
+        BiFunction<T, Object, T> timer = getTimer();
+        if (timer == null) return null;
+        Object[] wrapped = new Object[listeners.length];
+        for (int i = 0; i < listeners.length; i++) {
+            wrapped[i] = timer.apply((T) listeners[i], this.listeners.computeIfAbsent(listeners[i], listener -> new EventMetrics.Statistics()));
+        }
+        return wrapped;
+    }
+    
+    /**
+     * Drops the statistics of listeners that are no longer registered.
+     */
+    public void retainListeners(Set<Object> current) {
+        listeners.keySet().retainAll(current);
+    }
+    
+    public T wrapInvoker(T invoker) {
+        return getTimer().apply(invoker, statistics);
+    }
+    
+    public EventMetrics.Statistics getStatistics() {
+        return statistics;
+    }
+    
+    public List<EventMetrics.ListenerStatistics> getListenerStatistics() {
+        List<EventMetrics.ListenerStatistics> statistics = new ArrayList<>();
+        synchronized (listeners) {
+            for (Map.Entry<Object, EventMetrics.Statistics> entry : listeners.entrySet()) {
+                Class<?> listenerClass = entry.getKey().getClass();
+                statistics.add(new EventMetrics.ListenerStatistics(getDeclaringClassName(listenerClass), getModId(listenerClass), entry.getValue()));
+            }
+        }
+        statistics.sort(Comparator.comparingLong((EventMetrics.ListenerStatistics stats) -> stats.getStatistics().getTotalNanos()).reversed());
+        return statistics;
+    }
+    
+    public void reset() {
+        statistics.reset();
+        synchronized (listeners) {
+            for (EventMetrics.Statistics listener : listeners.values()) {
+                listener.reset();
+            }
+        }
+    }
+    
+    public synchronized String getName(Event<?> event) {
+        if (name == null) {
+            name = findName(event);
+        }
+        return name;
+    }
+    
+    private String findName(Event<?> event) {
+        for (Class<?> holder : new Class<?>[]{owner, owner.getEnclosingClass()}) {
+            if (holder == null) continue;
+            for (Field field : holder.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) && Event.class.isAssignableFrom(field.getType())) {
+                    try {
+                        field.setAccessible(true);
+                        if (field.get(null) == event) {
+                            return holder.getSimpleName() + "." + field.getName();
+                        }
+                    } catch (ReflectiveOperationException | RuntimeException ignored) {
+                    }
+                }
+            }
+        }
+        return owner.getName() + "@" + Integer.toHexString(System.identityHashCode(event));
+    }
+    
+    private static String getDeclaringClassName(Class<?> listenerClass) {
+        String name = listenerClass.getName();
+        // Lambdas are reported under the class declaring them
+        int lambda = name.indexOf("$$Lambda");
+        return lambda == -1 ? name : name.substring(0, lambda);
+    }
+    
+    private static Optional<String> getModId(Class<?> listenerClass) {
+        return MOD_IDS.computeIfAbsent(listenerClass, EventProfiler::findModId);
+    }
+    
+    private static Optional<String> findModId(Class<?> listenerClass) {
+        String classFile = getDeclaringClassName(listenerClass).replace('.', '/') + ".class";
+        Path source = null;
+        try {
+            CodeSource codeSource = listenerClass.getProtectionDomain().getCodeSource();
+            URL location = codeSource == null ? null : codeSource.getLocation();
+            if (location != null) {
+                if ("modjar".equals(location.getProtocol())) {
+                    // Forge locates mod classes as modjar://<modid>/
+                    return Optional.of(location.getHost());
+                }
+                source = Paths.get(location.toURI());
+            }
+        } catch (Exception ignored) {
+        }
+        for (Mod mod : Platform.getMods()) {
+            try {
+                Path path = mod.getFilePath();
+                if (source != null && source.startsWith(path)) {
+                    return Optional.of(mod.getModId());
+                }
+                if (Files.isDirectory(path) && Files.exists(path.resolve(classFile))) {
+                    return Optional.of(mod.getModId());
+                }
+            } catch (Exception ignored) {
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.event;
+
+import me.shedaniel.architectury.event.EventMetrics;
+import net.minecraft.world.InteractionResult;
+import net.minecraft.world.InteractionResultHolder;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Base class of the invokers generated by {@link EventInvokerGenerator}.
+ * <p>
+ * Generated classes only ever reference this class and the event interface, every
+ * Minecraft type is reached through the static helpers below so that the generated
+ * bytecode stays valid under any runtime mappings.
+ */
+@ApiStatus.Internal
+public abstract class GeneratedEventInvoker {
+    private static final Map<String, MethodHandle> FROZEN_TARGETS = new ConcurrentHashMap<>();
+    protected final Object[] listeners;
+    
+    protected GeneratedEventInvoker(Object[] listeners) {
+        this.listeners = listeners;
+    }
+    
+    public static boolean isPass(Object result) {
+        return result == InteractionResult.PASS;
+    }
+    
+    public static Object pass() {
+        return InteractionResult.PASS;
+    }
+    
+    public static boolean isPassHolder(Object result) {
+        return ((InteractionResultHolder<?>) Objects.requireNonNull(result)).getResult() == InteractionResult.PASS;
+    }
+    
+    public static Object passHolder() {
+        return InteractionResultHolder.pass(null);
+    }
+    
+    public static void record(Object statistics, long start) {
+        ((EventMetrics.Statistics) statistics).record(System.nanoTime() - start, false);
+    }
+    
+    public static void record(Object statistics, long start, boolean pass) {
+        ((EventMetrics.Statistics) statistics).record(System.nanoTime() - start, !pass);
+    }
+    
+    public static boolean isSuspended(Object guard) {
+        return ((EventGuard.ListenerGuard) guard).isSuspended();
+    }
+    
+    public static long guardStart(Object guard) {
+        return ((EventGuard.ListenerGuard) guard).start();
+    }
+    
+    public static void guardEnd(Object guard, long start) {
+        ((EventGuard.ListenerGuard) guard).end(start, null);
+    }
+    
+    public static void guardFailed(Object guard, long start, Throwable throwable) {
+        ((EventGuard.ListenerGuard) guard).end(start, throwable);
+    }
+    
+    static void putFrozenTarget(String name, MethodHandle target) {
+        FROZEN_TARGETS.put(name, target);
+    }
+    
+    /**
+     * Hands the call site target over to the static initializer of a generated frozen invoker.
+     */
+    public static MethodHandle takeFrozenTarget(String name) {
+        return Objects.requireNonNull(FROZEN_TARGETS.remove(name), name);
+    }
+}
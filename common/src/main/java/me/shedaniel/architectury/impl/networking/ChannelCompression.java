@@ -0,0 +1,71 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package me.shedaniel.architectury.impl.networking;
+
+import me.shedaniel.architectury.networking.NetworkManager;
+import me.shedaniel.architectury.networking.NetworkMetrics;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Function;
+
+/**
+ * The compression settings of a channel, see {@link PayloadCompression}.
+ */
+@ApiStatus.Internal
+public final class ChannelCompression {
+    private final int threshold;
+    private final int level;
+    
+    public ChannelCompression(int threshold, int level) {
+        if (threshold < 0) throw new IllegalArgumentException("Threshold must not be negative!");
+        PayloadCompression.checkLevel(level);
+        this.threshold = threshold;
+        this.level = level;
+    }
+    
+    public FriendlyByteBuf compress(FriendlyByteBuf buf) {
+        return PayloadCompression.compress(buf, threshold, level);
+    }
+    
+    /**
+     * Decodes a payload sent to the side, decompressing it first if the channel is compressed.
+     */
+    public static <T> T decode(@Nullable ChannelCompression compression, NetworkManager.Side side, ResourceLocation id, Function<FriendlyByteBuf, T> decoder, FriendlyByteBuf buf) {
+        if (!NetworkMetrics.isEnabled()) return decode(compression, side, decoder, buf);
+        long start = System.nanoTime();
+        T message = decode(compression, side, decoder, buf);
+        NetworkMetrics.recordDecode(id, System.nanoTime() - start);
+        return message;
+    }
+    
+    private static <T> T decode(@Nullable ChannelCompression compression, NetworkManager.Side side, Function<FriendlyByteBuf, T> decoder, FriendlyByteBuf buf) {
+        if (compression == null) return decoder.apply(buf);
+        FriendlyByteBuf payload = PayloadCompression.decompress(buf, side);
+        try {
+            return decoder.apply(payload);
+        } finally {
+            if (payload != buf) {
+                payload.release();
+            }
+        }
+    }
+}
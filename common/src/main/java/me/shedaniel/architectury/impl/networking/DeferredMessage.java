@@ -0,0 +1,89 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package me.shedaniel.architectury.impl.networking;
+
+import me.shedaniel.architectury.networking.NetworkManager;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+
+/**
+ * A message held back for coalescing, encoded at most once, for the first player it is still pending for at the end
+ * of the tick, and shared by all of them.
+ */
+@ApiStatus.Internal
+public final class DeferredMessage<T> implements PacketBundler.Deferred {
+    private final MessageEncoder<T> encoder;
+    private final T message;
+    private int holders;
+    @Nullable
+    private FriendlyByteBuf buf;
+    private boolean failed;
+    
+    private DeferredMessage(MessageEncoder<T> encoder, T message, int holders) {
+        this.encoder = encoder;
+        this.message = message;
+        this.holders = holders;
+    }
+    
+    /**
+     * Holds the message back for each of the players, replacing the pending messages with the same id and key.
+     */
+    public static <T> void coalesce(MessageEncoder<T> encoder, Object key, T message, Iterable<ServerPlayer> players, int playerCount) {
+        DeferredMessage<T> deferred = new DeferredMessage<>(encoder, message, playerCount);
+        Object coalescingKey = new AbstractMap.SimpleImmutableEntry<>(encoder.id, key);
+        for (ServerPlayer player : players) {
+            PacketBundler.coalesce(player, coalescingKey, deferred);
+        }
+    }
+    
+    @Override
+    public void send(ServerPlayer player) {
+        try {
+            FriendlyByteBuf buf;
+            synchronized (this) {
+                // Failed to encode for another player already, the other players only let go of it
+                if (failed) return;
+                if (this.buf == null) {
+                    try {
+                        this.buf = encoder.encode(message);
+                    } catch (RuntimeException | Error e) {
+                        failed = true;
+                        throw e;
+                    }
+                }
+                buf = this.buf;
+            }
+            NetworkManager.sendToPlayer(player, encoder.id, buf);
+        } finally {
+            discard();
+        }
+    }
+    
+    @Override
+    public synchronized void discard() {
+        if (--holders == 0 && buf != null) {
+            buf.release();
+            buf = null;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package me.shedaniel.architectury.impl.networking;
+
+import me.shedaniel.architectury.networking.NetworkManager;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The message encoders of a channel by side and message type.
+ */
+@ApiStatus.Internal
+public final class EncoderRegistry {
+    /**
+     * Guarded by {@code this}, every change bumps {@link #version}.
+     */
+    private final Map<NetworkManager.Side, Map<Class<?>, MessageEncoder<?>>> encoders = new EnumMap<>(NetworkManager.Side.class);
+    private volatile int version;
+    /**
+     * Message classes resolved to their encoders, so that sending a message does not look up or allocate anything.
+     */
+    private final ClassValue<EncoderSlot> slots = new ClassValue<EncoderSlot>() {
+        @Override
+        protected EncoderSlot computeValue(Class<?> type) {
+            return new EncoderSlot();
+        }
+    };
+    
+    public EncoderRegistry() {
+        for (NetworkManager.Side side : NetworkManager.Side.values()) {
+            encoders.put(side, new LinkedHashMap<>());
+        }
+    }
+    
+    public synchronized void put(NetworkManager.Side side, Class<?> type, MessageEncoder<?> encoder) {
+        encoders.get(side).put(type, encoder);
+        version++;
+    }
+    
+    /**
+     * @return the encoder registered for exactly the type
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public synchronized <T> MessageEncoder<T> get(NetworkManager.Side side, Class<T> type) {
+        return (MessageEncoder<T>) encoders.get(side).get(type);
+    }
+    
+    public synchronized List<MessageEncoder<?>> getAll(NetworkManager.Side side) {
+        return new ArrayList<>(encoders.get(side).values());
+    }
+    
+    @SuppressWarnings("unchecked")
+    public <T> MessageEncoder<T> forMessage(NetworkManager.Side side, T message) {
+        MessageEncoder<T> encoder = (MessageEncoder<T>) resolve(side, message.getClass());
+        if (encoder == null) {
+            throw new IllegalArgumentException("Message type " + message.getClass().getName() + " is not registered for " + side + "!");
+        }
+        return encoder;
+    }
+    
+    /**
+     * @return the encoder of the type, see {@link #findEncoder(Map, Class)}
+     */
+    @Nullable
+    public MessageEncoder<?> resolve(NetworkManager.Side side, Class<?> type) {
+        EncoderSlot slot = slots.get(type);
+        ResolvedEncoders resolved = slot.resolved;
+        if (resolved == null || resolved.version != version) {
+            synchronized (this) {
+                Map<NetworkManager.Side, MessageEncoder<?>> bySide = new EnumMap<>(NetworkManager.Side.class);
+                for (Map.Entry<NetworkManager.Side, Map<Class<?>, MessageEncoder<?>>> entry : encoders.entrySet()) {
+                    bySide.put(entry.getKey(), findEncoder(entry.getValue(), type));
+                }
+                resolved = new ResolvedEncoders(version, bySide);
+                slot.resolved = resolved;
+            }
+        }
+        return resolved.bySide.get(side);
+    }
+    
+    /**
+     * Finds the encoder of the class, or else of its closest superclass, or else of the first interface found walking up
+     * the hierarchy, so that encoders can be registered for a base type of several messages.
+     */
+    @Nullable
+    private static MessageEncoder<?> findEncoder(Map<Class<?>, MessageEncoder<?>> encoders, Class<?> type) {
+        for (Class<?> superclass = type; superclass != null; superclass = superclass.getSuperclass()) {
+            MessageEncoder<?> encoder = encoders.get(superclass);
+            if (encoder != null) return encoder;
+        }
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        Set<Class<?>> visited = new HashSet<>();
+        for (Class<?> superclass = type; superclass != null; superclass = superclass.getSuperclass()) {
+            Collections.addAll(queue, superclass.getInterfaces());
+        }
+        while (!queue.isEmpty()) {
+            Class<?> anInterface = queue.poll();
+            if (!visited.add(anInterface)) continue;
+            MessageEncoder<?> encoder = encoders.get(anInterface);
+            if (encoder != null) return encoder;
+            Collections.addAll(queue, anInterface.getInterfaces());
+        }
+        return null;
+    }
+    
+    private static final class EncoderSlot {
+        @Nullable
+        private volatile ResolvedEncoders resolved;
+    }
+    
+    private static final class ResolvedEncoders {
+        private final int version;
+        private final Map<NetworkManager.Side, MessageEncoder<?>> bySide;
+        
+        private ResolvedEncoders(int version, Map<NetworkManager.Side, MessageEncoder<?>> bySide) {
+            this.version = version;
+            this.bySide = bySide;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.networking;
+
+import com.google.common.primitives.Primitives;
+import io.netty.handler.codec.DecoderException;
+import me.shedaniel.architectury.fluid.FluidStack;
+import me.shedaniel.architectury.networking.MessageCodec;
+import me.shedaniel.architectury.networking.NetworkField;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Static helpers called by generated message codecs.
+ * <p>
+ * Generated classes are not remapped, so they only ever refer to JDK types and to this class, game types are passed
+ * as {@link Object} and handled by the {@link ValueCodec}s here.
+ */
+@ApiStatus.Internal
+public final class GeneratedCodecs {
+    private static final Map<String, Object[]> HANDLES = new ConcurrentHashMap<>();
+    
+    private GeneratedCodecs() {}
+    
+    /**
+     * Writes and reads a reference value.
+     */
+    public interface ValueCodec {
+        void write(Object buf, Object value);
+        
+        Object read(Object buf);
+    }
+    
+    static void putHandles(String name, Object[] handles) {
+        HANDLES.put(name, handles);
+    }
+    
+    /**
+     * Hands the method handles and value codecs over to the static initializer of a generated codec.
+     */
+    public static Object[] takeHandles(String name) {
+        return Objects.requireNonNull(HANDLES.remove(name), name);
+    }
+    
+    static void discardHandles(String name) {
+        HANDLES.remove(name);
+    }
+    
+    public static void writeVarInt(Object buf, int value) {
+        ((FriendlyByteBuf) buf).writeVarInt(value);
+    }
+    
+    public static int readVarInt(Object buf) {
+        return ((FriendlyByteBuf) buf).readVarInt();
+    }
+    
+    public static void writeVarLong(Object buf, long value) {
+        ((FriendlyByteBuf) buf).writeVarLong(value);
+    }
+    
+    public static long readVarLong(Object buf) {
+        return ((FriendlyByteBuf) buf).readVarLong();
+    }
+    
+    public static void writeInt(Object buf, int value) {
+        ((FriendlyByteBuf) buf).writeInt(value);
+    }
+    
+    public static int readInt(Object buf) {
+        return ((FriendlyByteBuf) buf).readInt();
+    }
+    
+    public static void writeLong(Object buf, long value) {
+        ((FriendlyByteBuf) buf).writeLong(value);
+    }
+    
+    public static long readLong(Object buf) {
+        return ((FriendlyByteBuf) buf).readLong();
+    }
+    
+    public static void writeByte(Object buf, byte value) {
+        ((FriendlyByteBuf) buf).writeByte(value);
+    }
+    
+    public static byte readByte(Object buf) {
+        return ((FriendlyByteBuf) buf).readByte();
+    }
+    
+    public static void writeShort(Object buf, short value) {
+        ((FriendlyByteBuf) buf).writeShort(value);
+    }
+    
+    public static short readShort(Object buf) {
+        return ((FriendlyByteBuf) buf).readShort();
+    }
+    
+    public static void writeChar(Object buf, char value) {
+        ((FriendlyByteBuf) buf).writeChar(value);
+    }
+    
+    public static char readChar(Object buf) {
+        return ((FriendlyByteBuf) buf).readChar();
+    }
+    
+    public static void writeFloat(Object buf, float value) {
+        ((FriendlyByteBuf) buf).writeFloat(value);
+    }
+    
+    public static float readFloat(Object buf) {
+        return ((FriendlyByteBuf) buf).readFloat();
+    }
+    
+    public static void writeDouble(Object buf, double value) {
+        ((FriendlyByteBuf) buf).writeDouble(value);
+    }
+    
+    public static double readDouble(Object buf) {
+        return ((FriendlyByteBuf) buf).readDouble();
+    }
+    
+    /**
+     * @param type the generic type of a field or of an element of a list or optional
+     * @param field the field the type belongs to, for its {@link NetworkField#fixed()} and error messages
+     */
+    static ValueCodec forType(Type type, Field field) {
+        NetworkField annotation = field.getAnnotation(NetworkField.class);
+        boolean fixed = annotation != null && annotation.fixed();
+        if (type instanceof WildcardType) {
+            Type[] upperBounds = ((WildcardType) type).getUpperBounds();
+            return forType(upperBounds[0], field);
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Type raw = parameterized.getRawType();
+            if (raw == List.class) {
+                return new ListCodec(forType(parameterized.getActualTypeArguments()[0], field));
+            } else if (raw == Optional.class) {
+                return new OptionalCodec(forType(parameterized.getActualTypeArguments()[0], field));
+            }
+            return forType(raw, field);
+        }
+        if (!(type instanceof Class)) {
+            throw new IllegalArgumentException("Unsupported type " + type + " of " + field);
+        }
+        Class<?> clazz = (Class<?>) type;
+        if (clazz == List.class || clazz == Optional.class) {
+            throw new IllegalArgumentException("Missing element type of " + field);
+        }
+        if (Primitives.isWrapperType(clazz)) {
+            return forBoxed(Primitives.unwrap(clazz), fixed);
+        } else if (clazz == String.class) {
+            return new SimpleCodec((buf, value) -> buf.writeUtf((String) value), FriendlyByteBuf::readUtf);
+        } else if (clazz == ResourceLocation.class) {
+            return new SimpleCodec((buf, value) -> buf.writeResourceLocation((ResourceLocation) value), FriendlyByteBuf::readResourceLocation);
+        } else if (clazz == ItemStack.class) {
+            return new SimpleCodec((buf, value) -> buf.writeItem((ItemStack) value), FriendlyByteBuf::readItem);
+        } else if (clazz == FluidStack.class) {
+            return new SimpleCodec((buf, value) -> ((FluidStack) value).write(buf), FluidStack::read);
+        } else if (clazz == BlockPos.class) {
+            return new SimpleCodec((buf, value) -> buf.writeBlockPos((BlockPos) value), FriendlyByteBuf::readBlockPos);
+        } else if (clazz == CompoundTag.class) {
+            return new SimpleCodec((buf, value) -> buf.writeNbt((CompoundTag) value), FriendlyByteBuf::readNbt);
+        } else if (clazz == UUID.class) {
+            return new SimpleCodec((buf, value) -> buf.writeUUID((UUID) value), FriendlyByteBuf::readUUID);
+        } else if (clazz.isEnum()) {
+            return new EnumCodec(clazz);
+        } else if (MessageCodecGenerator.hasFields(clazz)) {
+            return new NestedCodec(clazz);
+        }
+        throw new IllegalArgumentException("Unsupported type " + clazz.getName() + " of " + field);
+    }
+    
+    private static ValueCodec forBoxed(Class<?> primitive, boolean fixed) {
+        if (primitive == int.class) {
+            return fixed ? new SimpleCodec((buf, value) -> buf.writeInt((Integer) value), FriendlyByteBuf::readInt)
+                    : new SimpleCodec((buf, value) -> buf.writeVarInt((Integer) value), FriendlyByteBuf::readVarInt);
+        } else if (primitive == long.class) {
+            return fixed ? new SimpleCodec((buf, value) -> buf.writeLong((Long) value), FriendlyByteBuf::readLong)
+                    : new SimpleCodec((buf, value) -> buf.writeVarLong((Long) value), FriendlyByteBuf::readVarLong);
+        } else if (primitive == boolean.class) {
+            return new SimpleCodec((buf, value) -> buf.writeBoolean((Boolean) value), FriendlyByteBuf::readBoolean);
+        } else if (primitive == byte.class) {
+            return new SimpleCodec((buf, value) -> buf.writeByte((Byte) value), FriendlyByteBuf::readByte);
+        } else if (primitive == short.class) {
+            return new SimpleCodec((buf, value) -> buf.writeShort((Short) value), FriendlyByteBuf::readShort);
+        } else if (primitive == char.class) {
+            return new SimpleCodec((buf, value) -> buf.writeChar((Character) value), FriendlyByteBuf::readChar);
+        } else if (primitive == float.class) {
+            return new SimpleCodec((buf, value) -> buf.writeFloat((Float) value), FriendlyByteBuf::readFloat);
+        }
+        return new SimpleCodec((buf, value) -> buf.writeDouble((Double) value), FriendlyByteBuf::readDouble);
+    }
+    
+    @FunctionalInterface
+    private interface Writer {
+        void write(FriendlyByteBuf buf, Object value);
+    }
+    
+    @FunctionalInterface
+    private interface Reader {
+        Object read(FriendlyByteBuf buf);
+    }
+    
+    private static final class SimpleCodec implements ValueCodec {
+        private final Writer writer;
+        private final Reader reader;
+        
+        private SimpleCodec(Writer writer, Reader reader) {
+            this.writer = writer;
+            this.reader = reader;
+        }
+        
+        @Override
+        public void write(Object buf, Object value) {
+            writer.write((FriendlyByteBuf) buf, value);
+        }
+        
+        @Override
+        public Object read(Object buf) {
+            return reader.read((FriendlyByteBuf) buf);
+        }
+    }
+    
+    private static final class EnumCodec implements ValueCodec {
+        private final Class<?> type;
+        private final Object[] constants;
+        
+        private EnumCodec(Class<?> type) {
+            this.type = type;
+            this.constants = type.getEnumConstants();
+        }
+        
+        @Override
+        public void write(Object buf, Object value) {
+            ((FriendlyByteBuf) buf).writeVarInt(((Enum<?>) value).ordinal());
+        }
+        
+        @Override
+        public Object read(Object buf) {
+            int ordinal = ((FriendlyByteBuf) buf).readVarInt();
+            if (ordinal < 0 || ordinal >= constants.length) {
+                throw new DecoderException("Unknown constant " + ordinal + " of " + type.getName());
+            }
+            return constants[ordinal];
+        }
+    }
+    
+    private static final class ListCodec implements ValueCodec {
+        private final ValueCodec element;
+        
+        private ListCodec(ValueCodec element) {
+            this.element = element;
+        }
+        
+        @Override
+        public void write(Object buf, Object value) {
+            List<?> list = (List<?>) value;
+            ((FriendlyByteBuf) buf).writeVarInt(list.size());
+            for (Object o : list) {
+                element.write(buf, o);
+            }
+        }
+        
+        @Override
+        public Object read(Object buf) {
+            int size = ((FriendlyByteBuf) buf).readVarInt();
+            // Every element takes at least a byte, which bounds the allocation by the size of the packet
+            List<Object> list = new ArrayList<>(Math.min(size, ((FriendlyByteBuf) buf).readableBytes()));
+            for (int i = 0; i < size; i++) {
+                list.add(element.read(buf));
+            }
+            return list;
+        }
+    }
+    
+    private static final class OptionalCodec implements ValueCodec {
+        private final ValueCodec element;
+        
+        private OptionalCodec(ValueCodec element) {
+            this.element = element;
+        }
+        
+        @Override
+        public void write(Object buf, Object value) {
+            Optional<?> optional = (Optional<?>) value;
+            ((FriendlyByteBuf) buf).writeBoolean(optional.isPresent());
+            if (optional.isPresent()) {
+                element.write(buf, optional.get());
+            }
+        }
+        
+        @Override
+        public Object read(Object buf) {
+            return ((FriendlyByteBuf) buf).readBoolean() ? Optional.of(element.read(buf)) : Optional.empty();
+        }
+    }
+    
+    /**
+     * Resolves the codec of the nested message lazily, so that messages can contain themselves.
+     */
+    private static final class NestedCodec implements ValueCodec {
+        /**
+         * Messages are only nested this deep, directly or through lists and optionals, so that a message cannot
+         * overflow the stack of the thread decoding it.
+         */
+        private static final int MAX_DEPTH = 64;
+        private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+        private final Class<?> type;
+        private MessageCodec<Object> codec;
+        
+        private NestedCodec(Class<?> type) {
+            this.type = type;
+        }
+        
+        private MessageCodec<Object> getCodec() {
+            MessageCodec<Object> codec = this.codec;
+            if (codec == null) {
+                this.codec = codec = (MessageCodec<Object>) MessageCodec.of(type);
+            }
+            return codec;
+        }
+        
+        @Override
+        public void write(Object buf, Object value) {
+            getCodec().encode(value, (FriendlyByteBuf) buf);
+        }
+        
+        @Override
+        public Object read(Object buf) {
+            int[] depth = DEPTH.get();
+            if (depth[0] >= MAX_DEPTH) {
+                throw new DecoderException(type.getName() + " is nested more than " + MAX_DEPTH + " messages deep");
+            }
+            depth[0]++;
+            try {
+                return getCodec().decode((FriendlyByteBuf) buf);
+            } finally {
+                depth[0]--;
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.networking;
+
+import me.shedaniel.architectury.networking.NetworkManager;
+import me.shedaniel.architectury.platform.Platform;
+import me.shedaniel.architectury.utils.Env;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientPacketListener;
+import net.minecraft.client.server.IntegratedServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.player.Player;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Contexts for messages handed over between the integrated server and the client of its host, which share the JVM.
+ */
+@ApiStatus.Internal
+public final class Loopback {
+    private Loopback() {}
+    
+    /**
+     * Hands a copy of the message to the consumer on the client of the host, if the player is the host.
+     *
+     * @return whether the message was handed over
+     */
+    public static <T> boolean sendToClient(MessageEncoder<T> encoder, ServerPlayer player, T message, @Nullable MainThreadHandoff handoff) {
+        if (encoder.consumer == null || encoder.copier == null || !isLocal(player)) return false;
+        NetworkManager.PacketContext context = createClientContext();
+        if (context == null) return false;
+        MainThreadHandoff.dispatch(handoff, encoder.consumer, encoder.copier.apply(message), context);
+        return true;
+    }
+    
+    /**
+     * @return the players the message still has to be sent to
+     */
+    public static <T> List<ServerPlayer> sendToClients(MessageEncoder<T> encoder, Iterable<ServerPlayer> players, T message, @Nullable MainThreadHandoff handoff) {
+        List<ServerPlayer> remaining = new ArrayList<>();
+        for (ServerPlayer player : players) {
+            if (!sendToClient(encoder, player, message, handoff)) {
+                remaining.add(player);
+            }
+        }
+        return remaining;
+    }
+    
+    /**
+     * Hands a copy of the message to the consumer on the integrated server, if the client is its host.
+     *
+     * @return whether the message was handed over
+     */
+    @Environment(EnvType.CLIENT)
+    public static <T> boolean sendToServer(MessageEncoder<T> encoder, T message, @Nullable MainThreadHandoff handoff) {
+        if (encoder.consumer == null || encoder.copier == null) return false;
+        NetworkManager.PacketContext context = createServerContext();
+        if (context == null) return false;
+        MainThreadHandoff.dispatch(handoff, encoder.consumer, encoder.copier.apply(message), context);
+        return true;
+    }
+    
+    /**
+     * @return whether the player is the host of the integrated server, connected through memory
+     */
+    public static boolean isLocal(ServerPlayer player) {
+        return Platform.getEnvironment() == Env.CLIENT && player.connection.getConnection().isMemoryConnection();
+    }
+    
+    /**
+     * @return the context of a message received by the client from the integrated server, or {@code null} if the client
+     * is not playing on it yet
+     */
+    @Environment(EnvType.CLIENT)
+    @Nullable
+    public static NetworkManager.PacketContext createClientContext() {
+        Minecraft minecraft = Minecraft.getInstance();
+        Player player = minecraft.player;
+        if (player == null) return null;
+        return new Context(player, Env.CLIENT, minecraft::execute);
+    }
+    
+    /**
+     * @return the context of a message received by the integrated server from the client, or {@code null} if the client
+     * is not connected to an integrated server
+     */
+    @Environment(EnvType.CLIENT)
+    @Nullable
+    public static NetworkManager.PacketContext createServerContext() {
+        Minecraft minecraft = Minecraft.getInstance();
+        IntegratedServer server = minecraft.getSingleplayerServer();
+        ClientPacketListener listener = minecraft.getConnection();
+        if (server == null || minecraft.player == null || listener == null || !listener.getConnection().isMemoryConnection()) {
+            return null;
+        }
+        ServerPlayer player = server.getPlayerList().getPlayer(minecraft.player.getUUID());
+        return player == null ? null : new Context(player, Env.SERVER, server::execute);
+    }
+    
+    private static final class Context implements NetworkManager.PacketContext {
+        private final Player player;
+        private final Env environment;
+        private final Executor executor;
+        
+        private Context(Player player, Env environment, Executor executor) {
+            this.player = player;
+            this.environment = environment;
+            this.executor = executor;
+        }
+        
+        @Override
+        public Player getPlayer() {
+            return player;
+        }
+        
+        @Override
+        public void queue(Runnable runnable) {
+            executor.execute(runnable);
+        }
+        
+        @Override
+        public Env getEnvironment() {
+            return environment;
+        }
+    }
+}
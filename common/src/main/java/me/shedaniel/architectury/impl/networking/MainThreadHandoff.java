@@ -0,0 +1,283 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.networking;
+
+import io.netty.channel.Channel;
+import me.shedaniel.architectury.annotations.ExpectPlatform;
+import me.shedaniel.architectury.event.events.PlayerEvent;
+import me.shedaniel.architectury.event.events.TickEvent;
+import me.shedaniel.architectury.event.events.client.ClientPlayerEvent;
+import me.shedaniel.architectury.event.events.client.ClientTickEvent;
+import me.shedaniel.architectury.networking.NetworkChannel;
+import me.shedaniel.architectury.networking.NetworkManager;
+import me.shedaniel.architectury.platform.Platform;
+import me.shedaniel.architectury.utils.Env;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientPacketListener;
+import net.minecraft.network.Connection;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.TextComponent;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Messages of a channel decoded on the network thread, queued per connection and handled on the main thread at the
+ * start of every tick, at most {@code drainPerTick} per connection.
+ */
+@ApiStatus.Internal
+public final class MainThreadHandoff {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final List<MainThreadHandoff> HANDOFFS = new CopyOnWriteArrayList<>();
+    private static boolean initialized = false;
+    private final ResourceLocation channel;
+    private final int capacity;
+    private final int drainPerTick;
+    private final NetworkChannel.OverflowPolicy policy;
+    private final Map<Object, Inbox> inboxes = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+    
+    public MainThreadHandoff(ResourceLocation channel, int capacity, int drainPerTick, NetworkChannel.OverflowPolicy policy) {
+        this.channel = channel;
+        this.capacity = capacity;
+        this.drainPerTick = drainPerTick;
+        this.policy = policy;
+        init();
+        HANDOFFS.add(this);
+    }
+    
+    private static synchronized void init() {
+        if (initialized) return;
+        initialized = true;
+        TickEvent.SERVER_PRE.register(server -> drainAll(Env.SERVER));
+        PlayerEvent.PLAYER_QUIT.register(player -> disconnect(player.getUUID()));
+        if (Platform.getEnvironment() == Env.CLIENT) {
+            initClient();
+        }
+    }
+    
+    @Environment(EnvType.CLIENT)
+    private static void initClient() {
+        ClientTickEvent.CLIENT_PRE.register(minecraft -> drainAll(Env.CLIENT));
+        ClientPlayerEvent.CLIENT_PLAYER_QUIT.register(player -> disconnect(RequestTracker.SERVER));
+    }
+    
+    /**
+     * @return the channel of the connection, or {@code null} if it was never opened
+     */
+    @ExpectPlatform
+    @Nullable
+    public static Channel getChannel(Connection connection) {
+        throw new AssertionError();
+    }
+    
+    /**
+     * Hands the message to the consumer, on the network thread if there is no handoff.
+     */
+    public static <T> void dispatch(@Nullable MainThreadHandoff handoff, BiConsumer<T, Supplier<NetworkManager.PacketContext>> consumer, T message, NetworkManager.PacketContext context) {
+        if (handoff == null) {
+            consumer.accept(message, () -> context);
+        } else {
+            handoff.offer(context, () -> consumer.accept(message, () -> context));
+        }
+    }
+    
+    /**
+     * Queues the handler of a message received from the context's remote, applying the overflow policy if its queue
+     * is full.
+     */
+    public void offer(NetworkManager.PacketContext context, Runnable handler) {
+        Env env = context.getEnvironment();
+        Inbox inbox = inboxes.computeIfAbsent(RequestTracker.getRemote(context), remote -> new Inbox(env));
+        synchronized (inbox) {
+            if (inbox.queue.size() < capacity) {
+                inbox.queue.add(handler);
+                if (policy == NetworkChannel.OverflowPolicy.BACKPRESSURE && inbox.queue.size() == capacity) {
+                    pause(inbox, context);
+                }
+                return;
+            }
+            switch (policy) {
+                case DROP:
+                    if (!inbox.overflowing) {
+                        inbox.overflowing = true;
+                        LOGGER.warn("Dropping messages of {} from {}, {} are already queued", channel, describe(context), capacity);
+                    }
+                    break;
+                case DISCONNECT:
+                    if (!inbox.overflowing) {
+                        inbox.overflowing = true;
+                        LOGGER.warn("Disconnecting {}, more than {} messages of {} are queued", describe(context), capacity, channel);
+                        context.queue(() -> disconnect(context, new TextComponent("Too many messages of " + channel)));
+                    }
+                    break;
+                case BACKPRESSURE:
+                    // Messages already read from the connection when it was paused are still accepted
+                    inbox.queue.add(handler);
+                    pause(inbox, context);
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * Stops accepting messages, the queued ones are still handled.
+     */
+    public void close() {
+        closed = true;
+    }
+    
+    public static int getQueuedMessages() {
+        int queued = 0;
+        for (MainThreadHandoff handoff : HANDOFFS) {
+            for (Inbox inbox : handoff.inboxes.values()) {
+                synchronized (inbox) {
+                    queued += inbox.queue.size();
+                }
+            }
+        }
+        return queued;
+    }
+    
+    private static void drainAll(Env env) {
+        for (MainThreadHandoff handoff : HANDOFFS) {
+            if (handoff.drain(env) && handoff.closed) {
+                HANDOFFS.remove(handoff);
+            }
+        }
+    }
+    
+    /**
+     * @return whether all queues are empty
+     */
+    private boolean drain(Env env) {
+        boolean empty = true;
+        for (Inbox inbox : inboxes.values()) {
+            if (inbox.env == env) {
+                empty &= drain(inbox);
+            }
+        }
+        return empty;
+    }
+    
+    /**
+     * @return whether the queue is empty
+     */
+    private boolean drain(Inbox inbox) {
+        for (int i = 0; i < drainPerTick; i++) {
+            Runnable handler;
+            synchronized (inbox) {
+                handler = inbox.queue.poll();
+            }
+            if (handler == null) break;
+            try {
+                handler.run();
+            } catch (Throwable throwable) {
+                LOGGER.error("Failed to handle a message of " + channel, throwable);
+            }
+        }
+        synchronized (inbox) {
+            if (inbox.queue.size() < capacity) {
+                inbox.overflowing = false;
+            }
+            // Resumed with room to spare, so that the connection is not paused again right away
+            if (inbox.paused != null && inbox.queue.size() <= capacity / 2) {
+                ReadPauses.resume(inbox.paused, inbox);
+                inbox.paused = null;
+            }
+            return inbox.queue.isEmpty();
+        }
+    }
+    
+    private static void disconnect(Object remote) {
+        for (MainThreadHandoff handoff : HANDOFFS) {
+            handoff.inboxes.remove(remote);
+        }
+    }
+    
+    private static void pause(Inbox inbox, NetworkManager.PacketContext context) {
+        if (inbox.paused != null) return;
+        Connection connection = getConnection(context);
+        Channel channel = connection == null ? null : getChannel(connection);
+        if (channel != null) {
+            inbox.paused = channel;
+            ReadPauses.pause(channel, inbox);
+        }
+    }
+    
+    @Nullable
+    private static Connection getConnection(NetworkManager.PacketContext context) {
+        if (context.getEnvironment() == Env.SERVER) {
+            return ((ServerPlayer) context.getPlayer()).connection.getConnection();
+        }
+        return getClientConnection();
+    }
+    
+    @Environment(EnvType.CLIENT)
+    @Nullable
+    private static Connection getClientConnection() {
+        ClientPacketListener listener = Minecraft.getInstance().getConnection();
+        return listener == null ? null : listener.getConnection();
+    }
+    
+    private static void disconnect(NetworkManager.PacketContext context, Component reason) {
+        if (context.getEnvironment() == Env.SERVER) {
+            ((ServerPlayer) context.getPlayer()).connection.disconnect(reason);
+        } else {
+            Connection connection = getClientConnection();
+            if (connection != null) {
+                connection.disconnect(reason);
+            }
+        }
+    }
+    
+    private static String describe(NetworkManager.PacketContext context) {
+        return context.getEnvironment() == Env.SERVER ? context.getPlayer().getScoreboardName() : "the server";
+    }
+    
+    private static final class Inbox {
+        private final Env env;
+        /**
+         * Guarded by the inbox, like the rest of its state.
+         */
+        private final Deque<Runnable> queue = new ArrayDeque<>();
+        @Nullable
+        private Channel paused;
+        private boolean overflowing;
+        
+        private Inbox(Env env) {
+            this.env = env;
+        }
+    }
+}
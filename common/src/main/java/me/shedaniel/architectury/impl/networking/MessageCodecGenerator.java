@@ -0,0 +1,369 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.networking;
+
+import me.shedaniel.architectury.networking.NetworkField;
+import org.jetbrains.annotations.ApiStatus;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates a codec class per message class, reading and writing its {@link NetworkField} annotated fields
+ * through method handles held in static final fields, which the JIT constant folds like direct field accesses.
+ * <p>
+ * Message and game classes are never referred to by name in the generated code, as they are remapped at runtime.
+ */
+@ApiStatus.Internal
+public final class MessageCodecGenerator {
+    private static final String HELPERS = Type.getInternalName(GeneratedCodecs.class);
+    private static final String VALUE_CODEC = Type.getInternalName(GeneratedCodecs.ValueCodec.class);
+    private static final String PACKAGE = "me/shedaniel/architectury/impl/networking/generated/";
+    private static final String HANDLE = "Ljava/lang/invoke/MethodHandle;";
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    
+    private MessageCodecGenerator() {}
+    
+    static boolean hasFields(Class<?> type) {
+        for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (field.isAnnotationPresent(NetworkField.class)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @return an instance of the generated codec, implementing both {@link java.util.function.BiConsumer} for encoding
+     * and {@link java.util.function.Function} for decoding
+     */
+    public static Object generate(Class<?> type) {
+        List<Field> fields = collectFields(type);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<Slot> slots = new ArrayList<>(fields.size());
+        int booleans = 0;
+        for (Field field : fields) {
+            Slot slot = new Slot(field, field.getType() == boolean.class ? booleans++ : -1);
+            if (booleans > 64) {
+                throw new IllegalArgumentException(type.getName() + " has more than 64 boolean fields!");
+            }
+            slots.add(slot);
+        }
+        
+        Object[] handles = new Object[1 + slots.size() * 3];
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            handles[0] = lookup.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+            for (int i = 0; i < slots.size(); i++) {
+                Slot slot = slots.get(i);
+                slot.field.setAccessible(true);
+                handles[1 + i * 3] = lookup.unreflectGetter(slot.field).asType(MethodType.methodType(slot.erased, Object.class));
+                handles[2 + i * 3] = lookup.unreflectSetter(slot.field).asType(MethodType.methodType(void.class, Object.class, slot.erased));
+                if (!slot.field.getType().isPrimitive()) {
+                    handles[3 + i * 3] = GeneratedCodecs.forType(slot.field.getGenericType(), slot.field);
+                }
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " has no no-argument constructor!", e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Failed to access the fields of " + type.getName(), e);
+        }
+        
+        String name = PACKAGE + type.getSimpleName() + "Codec$" + COUNTER.incrementAndGet();
+        byte[] bytes = generateClass(name, slots, booleans);
+        String className = name.replace('/', '.');
+        GeneratedCodecs.putHandles(name, handles);
+        try {
+            Class<?> codec = new CodecClassLoader().define(className, bytes);
+            // Initialize right away, the handles are only handed over once
+            return Class.forName(className, true, codec.getClassLoader()).getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to generate the codec of " + type.getName(), e);
+        } finally {
+            GeneratedCodecs.discardHandles(name);
+        }
+    }
+    
+    private static List<Field> collectFields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (!field.isAnnotationPresent(NetworkField.class)) continue;
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+                    throw new IllegalArgumentException(field + " must not be static or final!");
+                }
+                fields.add(field);
+            }
+        }
+        fields.sort(Comparator.comparingInt(field -> field.getAnnotation(NetworkField.class).value()));
+        for (int i = 1; i < fields.size(); i++) {
+            if (fields.get(i - 1).getAnnotation(NetworkField.class).value() == fields.get(i).getAnnotation(NetworkField.class).value()) {
+                throw new IllegalArgumentException(fields.get(i - 1) + " and " + fields.get(i) + " have the same position!");
+            }
+        }
+        return fields;
+    }
+    
+    private static byte[] generateClass(String name, List<Slot> slots, int booleans) {
+        ClassWriter writer = createWriter();
+        writer.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, name, null, "java/lang/Object",
+                new String[]{"java/util/function/BiConsumer", "java/util/function/Function"});
+        writer.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "NEW", HANDLE, null, null).visitEnd();
+        for (int i = 0; i < slots.size(); i++) {
+            writer.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "G" + i, HANDLE, null, null).visitEnd();
+            writer.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "S" + i, HANDLE, null, null).visitEnd();
+            if (slots.get(i).codec()) {
+                writer.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "C" + i, "L" + VALUE_CODEC + ";", null, null).visitEnd();
+            }
+        }
+        
+        // static { Object[] handles = takeHandles(name); NEW = handles[0]; G0 = handles[1]; ... }
+        MethodVisitor initializer = writer.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        initializer.visitCode();
+        initializer.visitLdcInsn(name);
+        initializer.visitMethodInsn(INVOKESTATIC, HELPERS, "takeHandles", "(Ljava/lang/String;)[Ljava/lang/Object;", false);
+        initializer.visitVarInsn(ASTORE, 0);
+        putStatic(initializer, name, 0, "NEW", HANDLE);
+        for (int i = 0; i < slots.size(); i++) {
+            putStatic(initializer, name, 1 + i * 3, "G" + i, HANDLE);
+            putStatic(initializer, name, 2 + i * 3, "S" + i, HANDLE);
+            if (slots.get(i).codec()) {
+                putStatic(initializer, name, 3 + i * 3, "C" + i, "L" + VALUE_CODEC + ";");
+            }
+        }
+        initializer.visitInsn(RETURN);
+        initializer.visitMaxs(0, 0);
+        initializer.visitEnd();
+        
+        MethodVisitor constructor = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+        
+        generateEncode(writer, name, slots, booleans);
+        generateDecode(writer, name, slots, booleans);
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+    
+    /**
+     * {@code accept(message, buf)}, locals: 1 the message, 2 the buffer, 3 the boolean bitset.
+     */
+    private static void generateEncode(ClassWriter writer, String name, List<Slot> slots, int booleans) {
+        MethodVisitor visitor = writer.visitMethod(ACC_PUBLIC, "accept", "(" + OBJECT + OBJECT + ")V", null, null);
+        visitor.visitCode();
+        if (booleans > 0) {
+            // bits |= (long) G.invokeExact(message) << index; ... writeVarLong(buf, bits);
+            visitor.visitInsn(LCONST_0);
+            visitor.visitVarInsn(LSTORE, 3);
+            for (int i = 0; i < slots.size(); i++) {
+                Slot slot = slots.get(i);
+                if (slot.bit == -1) continue;
+                visitor.visitFieldInsn(GETSTATIC, name, "G" + i, HANDLE);
+                visitor.visitVarInsn(ALOAD, 1);
+                visitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", "(" + OBJECT + ")Z", false);
+                visitor.visitInsn(I2L);
+                visitor.visitIntInsn(BIPUSH, slot.bit);
+                visitor.visitInsn(LSHL);
+                visitor.visitVarInsn(LLOAD, 3);
+                visitor.visitInsn(LOR);
+                visitor.visitVarInsn(LSTORE, 3);
+            }
+            visitor.visitVarInsn(ALOAD, 2);
+            visitor.visitVarInsn(LLOAD, 3);
+            visitor.visitMethodInsn(INVOKESTATIC, HELPERS, "writeVarLong", "(" + OBJECT + "J)V", false);
+        }
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            if (slot.bit != -1) continue;
+            String descriptor = Type.getDescriptor(slot.erased);
+            if (slot.codec()) {
+                // C.write(buf, G.invokeExact(message));
+                visitor.visitFieldInsn(GETSTATIC, name, "C" + i, "L" + VALUE_CODEC + ";");
+                visitor.visitVarInsn(ALOAD, 2);
+                visitor.visitFieldInsn(GETSTATIC, name, "G" + i, HANDLE);
+                visitor.visitVarInsn(ALOAD, 1);
+                visitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", "(" + OBJECT + ")" + descriptor, false);
+                visitor.visitMethodInsn(INVOKEINTERFACE, VALUE_CODEC, "write", "(" + OBJECT + OBJECT + ")V", true);
+            } else {
+                // writeX(buf, G.invokeExact(message));
+                visitor.visitVarInsn(ALOAD, 2);
+                visitor.visitFieldInsn(GETSTATIC, name, "G" + i, HANDLE);
+                visitor.visitVarInsn(ALOAD, 1);
+                visitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", "(" + OBJECT + ")" + descriptor, false);
+                visitor.visitMethodInsn(INVOKESTATIC, HELPERS, "write" + slot.primitiveName(), "(" + OBJECT + descriptor + ")V", false);
+            }
+        }
+        visitor.visitInsn(RETURN);
+        visitor.visitMaxs(0, 0);
+        visitor.visitEnd();
+    }
+    
+    /**
+     * {@code apply(buf)}, locals: 1 the buffer, 2 the message, 3 the boolean bitset.
+     */
+    private static void generateDecode(ClassWriter writer, String name, List<Slot> slots, int booleans) {
+        MethodVisitor visitor = writer.visitMethod(ACC_PUBLIC, "apply", "(" + OBJECT + ")" + OBJECT, null, null);
+        visitor.visitCode();
+        visitor.visitFieldInsn(GETSTATIC, name, "NEW", HANDLE);
+        visitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", "()" + OBJECT, false);
+        visitor.visitVarInsn(ASTORE, 2);
+        if (booleans > 0) {
+            // bits = readVarLong(buf); S.invokeExact(message, (int) (bits >>> index) & 1); ...
+            visitor.visitVarInsn(ALOAD, 1);
+            visitor.visitMethodInsn(INVOKESTATIC, HELPERS, "readVarLong", "(" + OBJECT + ")J", false);
+            visitor.visitVarInsn(LSTORE, 3);
+            for (int i = 0; i < slots.size(); i++) {
+                Slot slot = slots.get(i);
+                if (slot.bit == -1) continue;
+                visitor.visitFieldInsn(GETSTATIC, name, "S" + i, HANDLE);
+                visitor.visitVarInsn(ALOAD, 2);
+                visitor.visitVarInsn(LLOAD, 3);
+                visitor.visitIntInsn(BIPUSH, slot.bit);
+                visitor.visitInsn(LUSHR);
+                visitor.visitInsn(L2I);
+                visitor.visitInsn(ICONST_1);
+                visitor.visitInsn(IAND);
+                visitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", "(" + OBJECT + "Z)V", false);
+            }
+        }
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            if (slot.bit != -1) continue;
+            String descriptor = Type.getDescriptor(slot.erased);
+            visitor.visitFieldInsn(GETSTATIC, name, "S" + i, HANDLE);
+            visitor.visitVarInsn(ALOAD, 2);
+            if (slot.codec()) {
+                // S.invokeExact(message, C.read(buf));
+                visitor.visitFieldInsn(GETSTATIC, name, "C" + i, "L" + VALUE_CODEC + ";");
+                visitor.visitVarInsn(ALOAD, 1);
+                visitor.visitMethodInsn(INVOKEINTERFACE, VALUE_CODEC, "read", "(" + OBJECT + ")" + OBJECT, true);
+            } else {
+                // S.invokeExact(message, readX(buf));
+                visitor.visitVarInsn(ALOAD, 1);
+                visitor.visitMethodInsn(INVOKESTATIC, HELPERS, "read" + slot.primitiveName(), "(" + OBJECT + ")" + descriptor, false);
+            }
+            visitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", "(" + OBJECT + descriptor + ")V", false);
+        }
+        visitor.visitVarInsn(ALOAD, 2);
+        visitor.visitInsn(ARETURN);
+        visitor.visitMaxs(0, 0);
+        visitor.visitEnd();
+    }
+    
+    private static void putStatic(MethodVisitor visitor, String name, int index, String field, String descriptor) {
+        visitor.visitVarInsn(ALOAD, 0);
+        visitor.visitLdcInsn(index);
+        visitor.visitInsn(AALOAD);
+        visitor.visitTypeInsn(CHECKCAST, Type.getType(descriptor).getInternalName());
+        visitor.visitFieldInsn(PUTSTATIC, name, field, descriptor);
+    }
+    
+    private static ClassWriter createWriter() {
+        return new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // The generated code never merges reference types, and loading classes here could load game classes
+                return "java/lang/Object";
+            }
+        };
+    }
+    
+    private static final class Slot {
+        private final Field field;
+        /**
+         * The index of a boolean field in the bitset, or {@code -1}.
+         */
+        private final int bit;
+        /**
+         * The type of the field in the descriptors of the generated code, its primitive type or {@link Object}.
+         */
+        private final Class<?> erased;
+        
+        private Slot(Field field, int bit) {
+            this.field = field;
+            this.bit = bit;
+            this.erased = field.getType().isPrimitive() ? field.getType() : Object.class;
+        }
+        
+        private boolean codec() {
+            return erased == Object.class;
+        }
+        
+        /**
+         * The suffix of the {@link GeneratedCodecs} methods reading and writing the primitive.
+         */
+        private String primitiveName() {
+            if (erased == int.class) {
+                return field.getAnnotation(NetworkField.class).fixed() ? "Int" : "VarInt";
+            } else if (erased == long.class) {
+                return field.getAnnotation(NetworkField.class).fixed() ? "Long" : "VarLong";
+            }
+            String name = erased.getName();
+            return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+    }
+    
+    /**
+     * Only loads JDK classes and the helpers for the generated code, so that a generated codec referring to a message or
+     * game class fails right away, instead of only once classes are remapped.
+     */
+    private static final class CodecClassLoader extends ClassLoader {
+        private static final String HELPERS_NAME = GeneratedCodecs.class.getName();
+        
+        private CodecClassLoader() {
+            super(MessageCodecGenerator.class.getClassLoader());
+        }
+        
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+        
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            Class<?> loaded = findLoadedClass(name);
+            if (loaded != null) return loaded;
+            if (!name.startsWith("java.") && !name.equals(HELPERS_NAME) && !name.startsWith(HELPERS_NAME + "$")) {
+                throw new ClassNotFoundException("Generated codecs must not refer to " + name);
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+}
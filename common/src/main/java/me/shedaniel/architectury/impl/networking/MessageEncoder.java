@@ -0,0 +1,126 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package me.shedaniel.architectury.impl.networking;
+
+import me.shedaniel.architectury.networking.NetworkManager;
+import me.shedaniel.architectury.networking.NetworkManager.PacketContext;
+import me.shedaniel.architectury.networking.NetworkMetrics;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Encoder of a message type registered to a channel, replaced instead of modified when the registration changes.
+ */
+@ApiStatus.Internal
+public final class MessageEncoder<T> {
+    private static final int DEFAULT_SIZE = 64;
+    public final ResourceLocation id;
+    private final BiConsumer<T, FriendlyByteBuf> encoder;
+    /**
+     * The current compression of the channel, {@code null} if it is not compressed.
+     */
+    private final Supplier<ChannelCompression> compression;
+    @Nullable
+    private final ToIntFunction<T> sizeEstimator;
+    @Nullable
+    public final Function<T, ?> coalescingKey;
+    /**
+     * The consumer of the messages on the receiving side, for loopback.
+     */
+    @Nullable
+    public final BiConsumer<T, Supplier<PacketContext>> consumer;
+    @Nullable
+    public final UnaryOperator<T> copier;
+    /**
+     * The only mutable state, a size hint adapting to the messages encoded so far.
+     */
+    private volatile int lastSize = DEFAULT_SIZE;
+    
+    public MessageEncoder(ResourceLocation id, BiConsumer<T, FriendlyByteBuf> encoder, Supplier<ChannelCompression> compression,
+            @Nullable BiConsumer<T, Supplier<PacketContext>> consumer) {
+        this(id, encoder, compression, null, null, consumer, null);
+    }
+    
+    private MessageEncoder(ResourceLocation id, BiConsumer<T, FriendlyByteBuf> encoder, Supplier<ChannelCompression> compression, @Nullable ToIntFunction<T> sizeEstimator,
+            @Nullable Function<T, ?> coalescingKey, @Nullable BiConsumer<T, Supplier<PacketContext>> consumer, @Nullable UnaryOperator<T> copier) {
+        this.id = id;
+        this.encoder = encoder;
+        this.compression = compression;
+        this.sizeEstimator = sizeEstimator;
+        this.coalescingKey = coalescingKey;
+        this.consumer = consumer;
+        this.copier = copier;
+    }
+    
+    public MessageEncoder<T> withSizeEstimator(@Nullable ToIntFunction<T> sizeEstimator) {
+        return new MessageEncoder<>(id, encoder, compression, sizeEstimator, coalescingKey, consumer, copier);
+    }
+    
+    public MessageEncoder<T> withCoalescingKey(@Nullable Function<T, ?> coalescingKey) {
+        return new MessageEncoder<>(id, encoder, compression, sizeEstimator, coalescingKey, consumer, copier);
+    }
+    
+    public MessageEncoder<T> withCopier(@Nullable UnaryOperator<T> copier) {
+        return new MessageEncoder<>(id, encoder, compression, sizeEstimator, coalescingKey, consumer, copier);
+    }
+    
+    /**
+     * Encodes the message into a buffer of the {@link NetworkManager#getPayloadAllocator() payload allocator}, which has to be released by the caller.
+     */
+    public FriendlyByteBuf encode(T message) {
+        ChannelCompression compression = this.compression.get();
+        FriendlyByteBuf buf = encode(message, compression != null);
+        return compression != null ? compression.compress(buf) : buf;
+    }
+    
+    /**
+     * Encodes the message without compressing it, but still flagged as raw if the channel is compressed.
+     */
+    public FriendlyByteBuf encode(T message, boolean flagged) {
+        ToIntFunction<T> sizeEstimator = this.sizeEstimator;
+        int size = sizeEstimator != null ? sizeEstimator.applyAsInt(message) : lastSize;
+        FriendlyByteBuf buf = new FriendlyByteBuf(NetworkManager.getPayloadAllocator().heapBuffer(Math.max(size + (flagged ? 1 : 0), 1)));
+        long start = NetworkMetrics.isEnabled() ? System.nanoTime() : 0;
+        try {
+            if (flagged) {
+                buf.writeByte(0);
+            }
+            encoder.accept(message, buf);
+        } catch (Throwable throwable) {
+            buf.release();
+            throw throwable;
+        }
+        if (start != 0) {
+            NetworkMetrics.recordEncode(id, System.nanoTime() - start);
+        }
+        int written = buf.writerIndex() - (flagged ? 1 : 0);
+        if (sizeEstimator == null && written != lastSize) {
+            lastSize = written;
+        }
+        return buf;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.networking;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import me.shedaniel.architectury.networking.NetworkMetrics;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.TextComponent;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code /architectury network [enable|disable|reset|<seconds>]}, prints the message ids and players with the most
+ * traffic over the last seconds, 10 by default, and the depths of the networking queues.
+ */
+@ApiStatus.Internal
+public final class NetworkMetricsCommand {
+    private static final int MESSAGES = 10;
+    private static final int PLAYERS = 5;
+    private static final int DEFAULT_WINDOW = 10;
+    
+    private NetworkMetricsCommand() {}
+    
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("architectury")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("network")
+                        .executes(context -> print(context, DEFAULT_WINDOW))
+                        .then(Commands.argument("seconds", IntegerArgumentType.integer(1, 60))
+                                .executes(context -> print(context, IntegerArgumentType.getInteger(context, "seconds"))))
+                        .then(Commands.literal("enable").executes(context -> setEnabled(context, true)))
+                        .then(Commands.literal("disable").executes(context -> setEnabled(context, false)))
+                        .then(Commands.literal("reset").executes(context -> {
+                            NetworkMetrics.reset();
+                            context.getSource().sendSuccess(new TextComponent("Network metrics have been reset"), true);
+                            return 1;
+                        }))));
+    }
+    
+    private static int setEnabled(CommandContext<CommandSourceStack> context, boolean enabled) {
+        NetworkMetrics.setEnabled(enabled);
+        context.getSource().sendSuccess(new TextComponent("Network metrics are now " + (enabled ? "enabled" : "disabled")), true);
+        return 1;
+    }
+    
+    private static int print(CommandContext<CommandSourceStack> context, int seconds) {
+        CommandSourceStack source = context.getSource();
+        if (!NetworkMetrics.isEnabled()) {
+            source.sendSuccess(new TextComponent("Network metrics are disabled, enable them with /architectury network enable"), false);
+            return 0;
+        }
+        List<NetworkMetrics.Talker> messages = NetworkMetrics.getTopMessages(seconds, TimeUnit.SECONDS, MESSAGES);
+        if (messages.isEmpty()) {
+            source.sendSuccess(new TextComponent("No messages in the last " + seconds + "s"), false);
+        } else {
+            source.sendSuccess(new TextComponent("Messages in the last " + seconds + "s:"), false);
+            for (NetworkMetrics.Talker talker : messages) {
+                String text = "  " + format(talker);
+                ResourceLocation id = ResourceLocation.tryParse(talker.getTraffic().getName());
+                NetworkMetrics.Histogram latency = id == null ? null
+                        : talker.getTraffic().isSent() ? NetworkMetrics.getEncodeLatency(id) : NetworkMetrics.getDecodeLatency(id);
+                if (latency != null) {
+                    text += String.format(", %s p50 %.1f us, p99 %.1f us", talker.getTraffic().isSent() ? "encode" : "decode",
+                            latency.getPercentileNanos(0.5) / 1000.0, latency.getPercentileNanos(0.99) / 1000.0);
+                }
+                source.sendSuccess(new TextComponent(text), false);
+            }
+        }
+        List<NetworkMetrics.Talker> players = NetworkMetrics.getTopPlayers(seconds, TimeUnit.SECONDS, PLAYERS);
+        if (!players.isEmpty()) {
+            source.sendSuccess(new TextComponent("Players in the last " + seconds + "s:"), false);
+            for (NetworkMetrics.Talker talker : players) {
+                source.sendSuccess(new TextComponent("  " + format(talker)), false);
+            }
+        }
+        StringBuilder queues = new StringBuilder("Queued:");
+        for (Map.Entry<String, Integer> entry : NetworkMetrics.getQueueDepths().entrySet()) {
+            queues.append(' ').append(entry.getValue()).append(' ').append(entry.getKey()).append(',');
+        }
+        queues.setLength(queues.length() - 1);
+        source.sendSuccess(new TextComponent(queues.toString()), false);
+        return messages.size();
+    }
+    
+    private static String format(NetworkMetrics.Talker talker) {
+        NetworkMetrics.Traffic traffic = talker.getTraffic();
+        double seconds = Math.max(1, talker.getNanos()) / 1e9;
+        return String.format("%s (%s %s): %d messages, %.1f KiB, %.1f KiB/s", traffic.getName(), traffic.getSide(),
+                traffic.isSent() ? "sent" : "received", talker.getMessages(), talker.getBytes() / 1024.0, talker.getBytes() / 1024.0 / seconds);
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.networking;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import me.shedaniel.architectury.event.events.TickEvent;
+import me.shedaniel.architectury.networking.NetworkBatching;
+import me.shedaniel.architectury.networking.NetworkManager;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Queues batched messages per player and sends them as bundles of {@code [varint id, varint length, bytes]} entries,
+ * where the id is either the 1-based index of an id written earlier in the bundle, or {@code 0} followed by the id.
+ * <p>
+ * Coalesced messages are held per player and key until the end of the tick, a newer message replaces the pending one
+ * in place, and they are sent ahead of the bundles so that batched ones still make it into the bundle of that tick.
+ */
+@ApiStatus.Internal
+public final class PacketBundler {
+    public static final ResourceLocation BUNDLE = new ResourceLocation("architectury:bundle");
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final Map<ServerPlayer, Bundle> BUNDLES = new WeakHashMap<>();
+    private static final Map<ServerPlayer, Map<Object, Deferred>> PENDING = new WeakHashMap<>();
+    private static boolean initialized = false;
+    
+    private PacketBundler() {}
+    
+    public static synchronized void init() {
+        if (initialized) return;
+        initialized = true;
+        TickEvent.SERVER_POST.register(PacketBundler::tick);
+    }
+    
+    public static void queue(ServerPlayer player, ResourceLocation id, FriendlyByteBuf buf) {
+        if (!NetworkManager.canPlayerReceive(player, BUNDLE)) {
+            player.connection.send(NetworkManager.toPacket(NetworkManager.s2c(), id, buf));
+            return;
+        }
+        Bundle bundle;
+        synchronized (BUNDLES) {
+            bundle = BUNDLES.computeIfAbsent(player, Bundle::new);
+        }
+        bundle.add(id, buf);
+    }
+    
+    /**
+     * Holds the message until the end of the tick, replacing the pending message with the same key.
+     */
+    public static void coalesce(ServerPlayer player, Object key, Deferred message) {
+        Deferred replaced;
+        synchronized (PENDING) {
+            replaced = PENDING.computeIfAbsent(player, p -> new LinkedHashMap<>()).put(key, message);
+        }
+        if (replaced != null) {
+            replaced.discard();
+        }
+    }
+    
+    public static void flush(ServerPlayer player) {
+        Map<Object, Deferred> pending;
+        synchronized (PENDING) {
+            pending = PENDING.remove(player);
+        }
+        if (pending != null) {
+            send(player, pending);
+        }
+        Bundle bundle;
+        synchronized (BUNDLES) {
+            bundle = BUNDLES.get(player);
+        }
+        if (bundle != null) {
+            bundle.flush();
+        }
+    }
+    
+    public static void flushAll() {
+        flushPending();
+        for (Bundle bundle : collect(0, true)) {
+            bundle.flush();
+        }
+    }
+    
+    private static void tick(MinecraftServer server) {
+        flushPending();
+        for (Bundle bundle : collect(NetworkBatching.getMaxDelayNanos(), false)) {
+            bundle.flush();
+        }
+    }
+    
+    private static void flushPending() {
+        Map<ServerPlayer, Map<Object, Deferred>> pending;
+        synchronized (PENDING) {
+            if (PENDING.isEmpty()) return;
+            pending = new HashMap<>(PENDING);
+            PENDING.clear();
+        }
+        for (Map.Entry<ServerPlayer, Map<Object, Deferred>> entry : pending.entrySet()) {
+            send(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    private static void send(ServerPlayer player, Map<Object, Deferred> pending) {
+        boolean disconnected = player.hasDisconnected();
+        for (Deferred message : pending.values()) {
+            if (disconnected) {
+                message.discard();
+            } else {
+                try {
+                    message.send(player);
+                } catch (Throwable throwable) {
+                    LOGGER.error("Failed to send coalesced message to {}", player.getScoreboardName(), throwable);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Removes the bundles of disconnected players and collects the bundles that are due.
+     */
+    private static List<Bundle> collect(long maxDelayNanos, boolean all) {
+        List<Bundle> due = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (BUNDLES) {
+            Iterator<Bundle> iterator = BUNDLES.values().iterator();
+            while (iterator.hasNext()) {
+                Bundle bundle = iterator.next();
+                if (bundle.player.hasDisconnected()) {
+                    iterator.remove();
+                    bundle.discard();
+                } else if (all || bundle.isDue(now, maxDelayNanos)) {
+                    due.add(bundle);
+                }
+            }
+        }
+        return due;
+    }
+    
+    public static void receive(FriendlyByteBuf buf, NetworkManager.PacketContext context) {
+        List<ResourceLocation> ids = new ArrayList<>();
+        while (buf.isReadable()) {
+            int index = buf.readVarInt() - 1;
+            ResourceLocation id;
+            if (index == -1) {
+                id = buf.readResourceLocation();
+                ids.add(id);
+            } else {
+                id = ids.get(index);
+            }
+            FriendlyByteBuf message = new FriendlyByteBuf(buf.readSlice(buf.readVarInt()));
+            NetworkManager.NetworkReceiver receiver = NetworkManager.getReceiver(NetworkManager.s2c(), id);
+            if (receiver != null) {
+                receiver.receive(message, context);
+            } else {
+                LOGGER.debug("Received bundled message {} without a receiver", id);
+            }
+        }
+    }
+    
+    /**
+     * A message whose encoding is deferred until it is sent, it is either sent or discarded exactly once per player it was queued for.
+     */
+    public interface Deferred {
+        void send(ServerPlayer player);
+        
+        void discard();
+    }
+    
+    private static final class Bundle {
+        private final ServerPlayer player;
+        private final Object2IntMap<ResourceLocation> ids = new Object2IntOpenHashMap<>();
+        @Nullable
+        private FriendlyByteBuf buf;
+        private long firstQueued;
+        
+        private Bundle(ServerPlayer player) {
+            this.player = player;
+            this.ids.defaultReturnValue(-1);
+        }
+        
+        private synchronized void add(ResourceLocation id, FriendlyByteBuf message) {
+            int length = message.readableBytes();
+            int maxSize = NetworkBatching.getMaxBundleSize();
+            if (buf != null && buf.writerIndex() + getEntrySize(id, length) > maxSize) {
+                flush();
+            }
+            if (getEntrySize(id, length) > maxSize) {
+                // Sent on its own, everything queued before it has just been flushed
+                player.connection.send(NetworkManager.toPacket(NetworkManager.s2c(), id, message));
+                return;
+            }
+            if (buf == null) {
+                buf = new FriendlyByteBuf(PooledByteBufAllocator.DEFAULT.heapBuffer(Math.min(maxSize, 256), maxSize));
+                firstQueued = System.nanoTime();
+            }
+            int index = ids.getInt(id);
+            if (index == -1) {
+                ids.put(id, ids.size());
+                buf.writeVarInt(0);
+                buf.writeResourceLocation(id);
+            } else {
+                buf.writeVarInt(index + 1);
+            }
+            buf.writeVarInt(length);
+            buf.writeBytes(message, message.readerIndex(), length);
+        }
+        
+        private int getEntrySize(ResourceLocation id, int length) {
+            // Identifiers are ascii, varints take up to 5 bytes
+            int idSize = ids.containsKey(id) ? 5 : 1 + 5 + id.toString().length();
+            return idSize + 5 + length;
+        }
+        
+        private synchronized boolean isDue(long now, long maxDelayNanos) {
+            return buf != null && now - firstQueued >= maxDelayNanos;
+        }
+        
+        private synchronized void flush() {
+            FriendlyByteBuf buf = this.buf;
+            if (buf == null) return;
+            this.buf = null;
+            ids.clear();
+            try {
+                if (!player.hasDisconnected()) {
+                    player.connection.send(NetworkManager.toPacket(NetworkManager.s2c(), BUNDLE, buf));
+                }
+            } finally {
+                buf.release();
+            }
+        }
+        
+        private synchronized void discard() {
+            if (buf != null) {
+                buf.release();
+                buf = null;
+                ids.clear();
+            }
+        }
+    }
+}
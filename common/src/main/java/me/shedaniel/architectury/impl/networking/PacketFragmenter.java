@@ -0,0 +1,372 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.networking;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import me.shedaniel.architectury.event.events.TickEvent;
+import me.shedaniel.architectury.event.events.client.ClientTickEvent;
+import me.shedaniel.architectury.networking.NetworkManager;
+import me.shedaniel.architectury.utils.Env;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.resources.ResourceLocation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits messages larger than a custom payload packet may be into fragments of
+ * {@code [varint transfer, varint index, (index 0: id, varint length), bytes]}, which are reassembled on the other side.
+ * <p>
+ * A few fragments of every transfer are sent right away, the rest are sent a few per tick and per connection, taking
+ * turns between transfers, so that other messages are sent in between. Fragmented messages may therefore arrive
+ * after messages sent later.
+ * <p>
+ * Messages from clients are limited to {@code architectury.network.maxFragmentedBytesC2S}, and the messages being
+ * received at once to {@code architectury.network.maxIncomingFragmentedBytes} in total, by their announced lengths.
+ */
+@ApiStatus.Internal
+public final class PacketFragmenter {
+    public static final ResourceLocation FRAGMENT = new ResourceLocation("architectury:fragment");
+    private static final Logger LOGGER = LogManager.getLogger();
+    /**
+     * Custom payloads are limited to 1 MiB from the server and 32 KiB from the client, minus room for the platform's framing.
+     */
+    private static final int S2C_LIMIT = 1000000;
+    private static final int C2S_LIMIT = 32000;
+    private static final int S2C_FRAGMENT_SIZE = 1 << 18;
+    private static final int C2S_FRAGMENT_SIZE = 1 << 14;
+    private static final int S2C_FRAGMENTS_PER_TICK = 8;
+    private static final int C2S_FRAGMENTS_PER_TICK = 4;
+    private static final int MAX_TRANSFERS = 4;
+    private static final int MAX_SIZE = Integer.getInteger("architectury.network.maxFragmentedBytes", 1 << 24);
+    private static final int MAX_SIZE_C2S = Integer.getInteger("architectury.network.maxFragmentedBytesC2S", 1 << 20);
+    private static final long MAX_INCOMING_BYTES = Long.getLong("architectury.network.maxIncomingFragmentedBytes", 1 << 26);
+    /**
+     * The most bytes of fragmented messages received from a single player at once, so that a few players cannot use up
+     * {@link #MAX_INCOMING_BYTES} for everyone else.
+     */
+    private static final long MAX_INCOMING_BYTES_C2S = Long.getLong("architectury.network.maxIncomingFragmentedBytesC2S", 2L * MAX_SIZE_C2S);
+    private static final long TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("architectury.network.fragmentTimeoutMs", 30000));
+    private static final AtomicInteger NEXT_TRANSFER = new AtomicInteger();
+    private static final Map<Connection, Outgoing> OUTGOING = new WeakHashMap<>();
+    private static final Map<Object, Map<Integer, Incoming>> INCOMING = new HashMap<>();
+    private static final Object CLIENT = new Object();
+    /**
+     * The announced lengths of the messages being received, guarded by {@link #INCOMING}.
+     */
+    private static long incomingBytes = 0;
+    private static boolean serverInitialized = false;
+    private static boolean clientInitialized = false;
+    
+    private PacketFragmenter() {}
+    
+    public static boolean needsFragmenting(NetworkManager.Side side, FriendlyByteBuf buf) {
+        return buf.readableBytes() > (side == NetworkManager.Side.S2C ? S2C_LIMIT : C2S_LIMIT);
+    }
+    
+    /**
+     * Copies the readable bytes of the buffer, so that they can be shared by the transfers to several connections.
+     */
+    public static ByteBuf copy(NetworkManager.Side side, FriendlyByteBuf buf) {
+        int maxSize = getMaxSize(side);
+        if (buf.readableBytes() > maxSize) {
+            throw new IllegalArgumentException("Message of " + buf.readableBytes() + " bytes exceeds the maximum of " + maxSize + " bytes!");
+        }
+        return Unpooled.copiedBuffer(buf);
+    }
+    
+    private static int getMaxSize(NetworkManager.Side side) {
+        return side == NetworkManager.Side.S2C ? MAX_SIZE : MAX_SIZE_C2S;
+    }
+    
+    public static void send(NetworkManager.Side side, Connection connection, ResourceLocation id, ByteBuf data) {
+        init(side == NetworkManager.Side.S2C ? Env.SERVER : Env.CLIENT);
+        Outgoing outgoing;
+        synchronized (OUTGOING) {
+            outgoing = OUTGOING.computeIfAbsent(connection, c -> new Outgoing(side, c));
+        }
+        outgoing.add(new Transfer(NEXT_TRANSFER.getAndIncrement(), id, data));
+    }
+    
+    /**
+     * @return the number of transfers with fragments left to send
+     */
+    public static int getQueuedTransfers() {
+        List<Outgoing> outgoings;
+        synchronized (OUTGOING) {
+            outgoings = new ArrayList<>(OUTGOING.values());
+        }
+        int queued = 0;
+        for (Outgoing outgoing : outgoings) {
+            synchronized (outgoing) {
+                queued += outgoing.transfers.size();
+            }
+        }
+        return queued;
+    }
+    
+    private static synchronized void init(Env env) {
+        if (env == Env.SERVER && !serverInitialized) {
+            serverInitialized = true;
+            TickEvent.SERVER_POST.register(server -> tick(NetworkManager.Side.S2C));
+        } else if (env == Env.CLIENT && !clientInitialized) {
+            clientInitialized = true;
+            initClient();
+        }
+    }
+    
+    @Environment(EnvType.CLIENT)
+    private static void initClient() {
+        ClientTickEvent.CLIENT_POST.register(minecraft -> tick(NetworkManager.Side.C2S));
+    }
+    
+    private static void tick(NetworkManager.Side side) {
+        List<Outgoing> outgoings;
+        synchronized (OUTGOING) {
+            outgoings = new ArrayList<>(OUTGOING.values());
+        }
+        for (Outgoing outgoing : outgoings) {
+            if (outgoing.side != side) continue;
+            if (!outgoing.connection.isConnected()) {
+                synchronized (OUTGOING) {
+                    OUTGOING.remove(outgoing.connection);
+                }
+            } else {
+                outgoing.pump();
+            }
+        }
+        expire(System.nanoTime());
+    }
+    
+    public static void receive(FriendlyByteBuf buf, NetworkManager.PacketContext context) {
+        NetworkManager.Side side = context.getEnvironment() == Env.SERVER ? NetworkManager.Side.C2S : NetworkManager.Side.S2C;
+        init(context.getEnvironment());
+        Object key = side == NetworkManager.Side.C2S ? context.getPlayer().getUUID() : CLIENT;
+        long now = System.nanoTime();
+        int transferId = buf.readVarInt();
+        int index = buf.readVarInt();
+        Incoming completed = null;
+        synchronized (INCOMING) {
+            Map<Integer, Incoming> transfers = INCOMING.computeIfAbsent(key, k -> new LinkedHashMap<>());
+            if (index == 0) {
+                ResourceLocation id = buf.readResourceLocation();
+                int length = buf.readVarInt();
+                int maxSize = getMaxSize(side);
+                if (length <= 0 || length > maxSize) {
+                    LOGGER.warn("Dropping fragmented message {} of {} bytes, the maximum is {} bytes", id, length, maxSize);
+                    removeIfEmpty(key, transfers);
+                    return;
+                }
+                Incoming duplicate = transfers.remove(transferId);
+                if (duplicate != null) {
+                    // Transfer ids are never reused by a sender, so neither message can be trusted
+                    LOGGER.warn("Dropping fragmented message {}, its transfer was started again", duplicate.id);
+                    incomingBytes -= duplicate.length;
+                    removeIfEmpty(key, transfers);
+                    return;
+                }
+                if (transfers.size() >= MAX_TRANSFERS) {
+                    Iterator<Incoming> iterator = transfers.values().iterator();
+                    Incoming dropped = iterator.next();
+                    LOGGER.warn("Dropping fragmented message {}, too many messages are being received at once", dropped.id);
+                    iterator.remove();
+                    incomingBytes -= dropped.length;
+                }
+                long remoteBytes = getIncomingBytes(transfers);
+                if (side == NetworkManager.Side.C2S && remoteBytes + length > MAX_INCOMING_BYTES_C2S) {
+                    LOGGER.warn("Dropping fragmented message {} of {} bytes, {} bytes of fragmented messages are already being received from {}", id, length, remoteBytes, key);
+                    removeIfEmpty(key, transfers);
+                    return;
+                }
+                if (incomingBytes + length > MAX_INCOMING_BYTES) {
+                    LOGGER.warn("Dropping fragmented message {} of {} bytes, {} bytes of fragmented messages are already being received", id, length, incomingBytes);
+                    removeIfEmpty(key, transfers);
+                    return;
+                }
+                incomingBytes += length;
+                transfers.put(transferId, new Incoming(id, length));
+            }
+            Incoming incoming = transfers.get(transferId);
+            if (incoming == null) {
+                removeIfEmpty(key, transfers);
+                return;
+            }
+            if (index != incoming.nextIndex || incoming.data.maxWritableBytes() < buf.readableBytes()) {
+                LOGGER.warn("Dropping fragmented message {}, received fragment {} out of order", incoming.id, index);
+                transfers.remove(transferId);
+                incomingBytes -= incoming.length;
+                removeIfEmpty(key, transfers);
+                return;
+            }
+            incoming.nextIndex++;
+            incoming.lastReceived = now;
+            incoming.data.writeBytes(buf);
+            if (incoming.data.writerIndex() == incoming.length) {
+                transfers.remove(transferId);
+                incomingBytes -= incoming.length;
+                completed = incoming;
+            }
+            removeIfEmpty(key, transfers);
+        }
+        if (completed != null) {
+            NetworkManager.NetworkReceiver receiver = NetworkManager.getReceiver(side, completed.id);
+            if (receiver != null) {
+                receiver.receive(new FriendlyByteBuf(completed.data), context);
+            } else {
+                LOGGER.debug("Received fragmented message {} without a receiver", completed.id);
+            }
+        }
+    }
+    
+    private static long getIncomingBytes(Map<Integer, Incoming> transfers) {
+        long bytes = 0;
+        for (Incoming incoming : transfers.values()) {
+            bytes += incoming.length;
+        }
+        return bytes;
+    }
+    
+    private static void removeIfEmpty(Object key, Map<Integer, Incoming> transfers) {
+        if (transfers.isEmpty()) {
+            INCOMING.remove(key);
+        }
+    }
+    
+    private static void expire(long now) {
+        synchronized (INCOMING) {
+            Iterator<Map<Integer, Incoming>> connections = INCOMING.values().iterator();
+            while (connections.hasNext()) {
+                Map<Integer, Incoming> transfers = connections.next();
+                Iterator<Incoming> iterator = transfers.values().iterator();
+                while (iterator.hasNext()) {
+                    Incoming incoming = iterator.next();
+                    if (now - incoming.lastReceived > TIMEOUT_NANOS) {
+                        LOGGER.warn("Dropping fragmented message {}, timed out after {} of {} bytes", incoming.id, incoming.data.writerIndex(), incoming.length);
+                        iterator.remove();
+                        incomingBytes -= incoming.length;
+                    }
+                }
+                if (transfers.isEmpty()) {
+                    connections.remove();
+                }
+            }
+        }
+    }
+    
+    private static final class Outgoing {
+        private final NetworkManager.Side side;
+        private final Connection connection;
+        private final Deque<Transfer> transfers = new ArrayDeque<>();
+        
+        private Outgoing(NetworkManager.Side side, Connection connection) {
+            this.side = side;
+            this.connection = connection;
+        }
+        
+        private synchronized void add(Transfer transfer) {
+            // The first fragments go out right away, to not add a tick of latency to messages that barely exceed the limit
+            for (int i = 0; i < getFragmentsPerTick() && transfer.hasNext(); i++) {
+                connection.send(transfer.next(side));
+            }
+            if (transfer.hasNext()) {
+                transfers.addLast(transfer);
+            }
+        }
+        
+        private synchronized void pump() {
+            for (int i = 0; i < getFragmentsPerTick() && !transfers.isEmpty(); i++) {
+                Transfer transfer = transfers.pollFirst();
+                connection.send(transfer.next(side));
+                if (transfer.hasNext()) {
+                    transfers.addLast(transfer);
+                }
+            }
+        }
+        
+        private int getFragmentsPerTick() {
+            return side == NetworkManager.Side.S2C ? S2C_FRAGMENTS_PER_TICK : C2S_FRAGMENTS_PER_TICK;
+        }
+    }
+    
+    private static final class Transfer {
+        private final int transferId;
+        private final ResourceLocation id;
+        private final ByteBuf data;
+        private int nextIndex;
+        private int offset;
+        
+        private Transfer(int transferId, ResourceLocation id, ByteBuf data) {
+            this.transferId = transferId;
+            this.id = id;
+            this.data = data;
+        }
+        
+        private boolean hasNext() {
+            return offset < data.readableBytes();
+        }
+        
+        private Packet<?> next(NetworkManager.Side side) {
+            int length = Math.min(data.readableBytes() - offset, side == NetworkManager.Side.S2C ? S2C_FRAGMENT_SIZE : C2S_FRAGMENT_SIZE);
+            FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer(length + 16 + (nextIndex == 0 ? id.toString().length() + 5 : 0)));
+            buf.writeVarInt(transferId);
+            buf.writeVarInt(nextIndex);
+            if (nextIndex == 0) {
+                buf.writeResourceLocation(id);
+                buf.writeVarInt(data.readableBytes());
+            }
+            buf.writeBytes(data, data.readerIndex() + offset, length);
+            nextIndex++;
+            offset += length;
+            return NetworkManager.toPacket(side, FRAGMENT, buf);
+        }
+    }
+    
+    private static final class Incoming {
+        private final ResourceLocation id;
+        private final int length;
+        private final ByteBuf data;
+        private int nextIndex;
+        private long lastReceived = System.nanoTime();
+        
+        private Incoming(ResourceLocation id, int length) {
+            this.id = id;
+            this.length = length;
+            // Grows with the received fragments up to the announced length
+            this.data = Unpooled.buffer(Math.min(length, S2C_FRAGMENT_SIZE), length);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.networking;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.DecoderException;
+import me.shedaniel.architectury.networking.NetworkManager;
+import net.minecraft.network.FriendlyByteBuf;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of channel payloads, which start with a flag: {@code 0} followed by the raw payload, or {@code 1} followed
+ * by the varint length of the raw payload and the deflated payload.
+ * <p>
+ * Deflaters and inflaters hold native memory, so a few of them are pooled instead of being created per message.
+ * <p>
+ * The claimed length of a compressed payload is only trusted as an upper bound, the inflated payload grows as it is
+ * inflated. Clients are trusted with less than servers, see {@code architectury.network.maxDecompressedBytesC2S}.
+ */
+@ApiStatus.Internal
+public final class PayloadCompression {
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+    private static final int MAX_DECOMPRESSED_SIZE = Integer.getInteger("architectury.network.maxDecompressedBytes", 1 << 24);
+    private static final int MAX_DECOMPRESSED_SIZE_C2S = Integer.getInteger("architectury.network.maxDecompressedBytesC2S", 1 << 20);
+    private static final int MIN_INFLATE_CAPACITY = 1024;
+    private static final int POOL_SIZE = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    /**
+     * Indexed by compression level + 1, so that {@link Deflater#DEFAULT_COMPRESSION} has its own pool.
+     */
+    private static final List<BlockingQueue<Deflater>> DEFLATERS = new ArrayList<>();
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    
+    static {
+        for (int level = Deflater.DEFAULT_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++) {
+            DEFLATERS.add(new ArrayBlockingQueue<>(POOL_SIZE));
+        }
+    }
+    
+    private PayloadCompression() {}
+    
+    public static void checkLevel(int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+    }
+    
+    /**
+     * Compresses a flagged payload if it is at least {@code threshold} bytes long and deflating makes it smaller.
+     *
+     * @param buf a payload starting with the raw flag, released if a compressed payload is returned
+     * @return the compressed payload, or {@code buf} if it was left as is
+     */
+    public static FriendlyByteBuf compress(FriendlyByteBuf buf, int threshold, int level) {
+        int length = buf.readableBytes() - 1;
+        if (length < threshold || length == 0) return buf;
+        Deflater deflater = acquireDeflater(level);
+        // No larger than the raw payload, if the deflated payload does not fit it is not worth sending
+        // From the allocator of the raw payload, which may be kept by the packet
+        FriendlyByteBuf out = new FriendlyByteBuf(buf.alloc().heapBuffer(buf.readableBytes(), buf.readableBytes()));
+        try {
+            setInput(deflater, buf, buf.readerIndex() + 1, length);
+            deflater.finish();
+            out.writeByte(DEFLATED);
+            out.writeVarInt(length);
+            while (!deflater.finished() && out.isWritable()) {
+                int written = deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(), out.writableBytes());
+                out.writerIndex(out.writerIndex() + written);
+            }
+            if (!deflater.finished()) {
+                out.release();
+                return buf;
+            }
+            buf.release();
+            return out;
+        } catch (Throwable throwable) {
+            out.release();
+            buf.release();
+            throw throwable;
+        } finally {
+            releaseDeflater(level, deflater);
+        }
+    }
+    
+    /**
+     * Reads the flag of a payload and inflates it straight from the received buffer if it is compressed.
+     *
+     * @param side the side the payload was sent to, which decides how large it may be once inflated
+     * @return the raw payload, which has to be released by the caller if it is not {@code buf}
+     */
+    public static FriendlyByteBuf decompress(FriendlyByteBuf buf, NetworkManager.Side side) {
+        byte flag = buf.readByte();
+        if (flag == RAW) return buf;
+        if (flag != DEFLATED) throw new DecoderException("Unknown payload compression " + flag);
+        int length = buf.readVarInt();
+        int maxSize = side == NetworkManager.Side.C2S ? MAX_DECOMPRESSED_SIZE_C2S : MAX_DECOMPRESSED_SIZE;
+        if (length <= 0 || length > maxSize) {
+            throw new DecoderException("Badly compressed payload of " + length + " bytes, the maximum is " + maxSize);
+        }
+        Inflater inflater = acquireInflater();
+        // Grown up to the claimed length as the payload is inflated, instead of allocating whatever the sender claims
+        int capacity = Math.min(length, Math.max(MIN_INFLATE_CAPACITY, buf.readableBytes() * 4));
+        FriendlyByteBuf out = new FriendlyByteBuf(PooledByteBufAllocator.DEFAULT.heapBuffer(capacity, length));
+        try {
+            setInput(inflater, buf);
+            while (out.writerIndex() < length) {
+                out.ensureWritable(1);
+                int read = inflater.inflate(out.array(), out.arrayOffset() + out.writerIndex(), out.writableBytes());
+                if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                out.writerIndex(out.writerIndex() + read);
+            }
+            if (out.writerIndex() < length) {
+                throw new DecoderException("Badly compressed payload, expected " + length + " bytes but got " + out.writerIndex());
+            }
+            buf.skipBytes(buf.readableBytes());
+            return out;
+        } catch (DataFormatException exception) {
+            out.release();
+            throw new DecoderException("Badly compressed payload", exception);
+        } catch (Throwable throwable) {
+            out.release();
+            throw throwable;
+        } finally {
+            releaseInflater(inflater);
+        }
+    }
+    
+    private static void setInput(Deflater deflater, FriendlyByteBuf buf, int index, int length) {
+        if (buf.hasArray()) {
+            deflater.setInput(buf.array(), buf.arrayOffset() + index, length);
+        } else {
+            byte[] bytes = new byte[length];
+            buf.getBytes(index, bytes);
+            deflater.setInput(bytes);
+        }
+    }
+    
+    private static void setInput(Inflater inflater, FriendlyByteBuf buf) {
+        if (buf.hasArray()) {
+            inflater.setInput(buf.array(), buf.arrayOffset() + buf.readerIndex(), buf.readableBytes());
+        } else {
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.getBytes(buf.readerIndex(), bytes);
+            inflater.setInput(bytes);
+        }
+    }
+    
+    private static Deflater acquireDeflater(int level) {
+        Deflater deflater = DEFLATERS.get(level + 1).poll();
+        return deflater != null ? deflater : new Deflater(level);
+    }
+    
+    private static void releaseDeflater(int level, Deflater deflater) {
+        deflater.reset();
+        if (!DEFLATERS.get(level + 1).offer(deflater)) {
+            deflater.end();
+        }
+    }
+    
+    private static Inflater acquireInflater() {
+        Inflater inflater = INFLATERS.poll();
+        return inflater != null ? inflater : new Inflater();
+    }
+    
+    private static void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        if (!INFLATERS.offer(inflater)) {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.networking;
+
+import io.netty.channel.Channel;
+import me.shedaniel.architectury.event.events.PlayerEvent;
+import me.shedaniel.architectury.networking.NetworkManager;
+import me.shedaniel.architectury.networking.RateLimit;
+import net.minecraft.network.chat.TextComponent;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces {@link RateLimit}s on client to server receivers, keeping a token bucket per player and limit.
+ */
+@ApiStatus.Internal
+public final class RateLimiter {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final Map<ResourceLocation, RateLimit> LIMITS = new ConcurrentHashMap<>();
+    private static final Map<UUID, Buckets> BUCKETS = new ConcurrentHashMap<>();
+    private static boolean initialized = false;
+    
+    private RateLimiter() {}
+    
+    @Nullable
+    public static RateLimit getLimit(ResourceLocation id) {
+        return LIMITS.get(id);
+    }
+    
+    public static void setLimit(ResourceLocation id, @Nullable RateLimit limit) {
+        if (limit == null) {
+            LIMITS.remove(id);
+        } else {
+            init();
+            LIMITS.put(id, limit);
+        }
+    }
+    
+    private static synchronized void init() {
+        if (initialized) return;
+        initialized = true;
+        PlayerEvent.PLAYER_QUIT.register(player -> BUCKETS.remove(player.getUUID()));
+    }
+    
+    /**
+     * Wraps the receiver of client to server messages with the id, so that its limit is checked before it decodes anything.
+     */
+    public static NetworkManager.NetworkReceiver wrap(ResourceLocation id, NetworkManager.NetworkReceiver receiver) {
+        return (buf, context) -> {
+            RateLimit limit = LIMITS.isEmpty() ? null : LIMITS.get(id);
+            if (limit == null || tryAcquire(id, limit, context)) {
+                receiver.receive(buf, context);
+            }
+        };
+    }
+    
+    /**
+     * @return whether the message should be handled
+     */
+    private static boolean tryAcquire(ResourceLocation id, RateLimit limit, NetworkManager.PacketContext context) {
+        ServerPlayer player = (ServerPlayer) context.getPlayer();
+        Buckets buckets = BUCKETS.computeIfAbsent(player.getUUID(), uuid -> new Buckets());
+        Bucket bucket;
+        boolean firstViolation;
+        // Messages of a player are received on a single network thread, so this is hardly ever contended
+        synchronized (buckets) {
+            bucket = buckets.byLimit.computeIfAbsent(limit, Bucket::new);
+            if (bucket.tryTake(limit, System.nanoTime())) return true;
+            firstViolation = !bucket.violated;
+            bucket.violated = true;
+        }
+        limit.recordViolation();
+        if (firstViolation) {
+            LOGGER.warn("{} exceeded the rate limit of {} ({}/s, burst {}), policy {}", player.getScoreboardName(), id,
+                    limit.getPermitsPerSecond(), limit.getBurst(), limit.getPolicy());
+        }
+        switch (limit.getPolicy()) {
+            case THROTTLE:
+                Channel channel = MainThreadHandoff.getChannel(player.connection.getConnection());
+                // Connections that were never opened, like those of fake players, have nothing to pause
+                if (channel == null) return false;
+                long waitNanos;
+                synchronized (buckets) {
+                    // Read before the connection was paused
+                    if (bucket.throttled) return false;
+                    // Handled, but paid for by the next refill
+                    bucket.tokens--;
+                    bucket.throttled = true;
+                    waitNanos = bucket.getWaitNanos(limit);
+                }
+                ReadPauses.pause(channel, bucket);
+                channel.eventLoop().schedule(() -> {
+                    synchronized (buckets) {
+                        bucket.throttled = false;
+                    }
+                    ReadPauses.resume(channel, bucket);
+                }, waitNanos, TimeUnit.NANOSECONDS);
+                return true;
+            case DISCONNECT:
+                if (firstViolation) {
+                    context.queue(() -> player.connection.disconnect(new TextComponent("Too many messages of " + id)));
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+    
+    private static final class Buckets {
+        private final Map<RateLimit, Bucket> byLimit = new IdentityHashMap<>();
+    }
+    
+    private static final class Bucket {
+        private double tokens;
+        private long lastRefill;
+        private boolean violated;
+        private boolean throttled;
+        
+        private Bucket(RateLimit limit) {
+            this.tokens = limit.getBurst();
+            this.lastRefill = System.nanoTime();
+        }
+        
+        /**
+         * Takes a token.
+         *
+         * @return whether a token was taken
+         */
+        private boolean tryTake(RateLimit limit, long now) {
+            tokens = Math.min(limit.getBurst(), tokens + (now - lastRefill) * limit.getPermitsPerSecond() / 1e9);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens--;
+                return true;
+            }
+            return false;
+        }
+        
+        /**
+         * @return how long it takes until a token is refilled
+         */
+        private long getWaitNanos(RateLimit limit) {
+            return Math.max(1, (long) ((1 - tokens) * 1e9 / limit.getPermitsPerSecond()));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package me.shedaniel.architectury.impl.networking;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Stops reading from connections for several reasons at once, such as rate limits and full queues, reading is only
+ * resumed once every reason it was paused for has resumed it.
+ */
+@ApiStatus.Internal
+public final class ReadPauses {
+    private static final AttributeKey<Set<Object>> REASONS = AttributeKey.valueOf("architectury:read_pauses");
+    
+    private ReadPauses() {}
+    
+    /**
+     * Stops reading from the channel until {@link #resume(Channel, Object)} is called with the same reason, pausing
+     * again for a reason it is already paused for does nothing.
+     */
+    public static void pause(Channel channel, Object reason) {
+        Set<Object> reasons = getReasons(channel);
+        synchronized (reasons) {
+            if (reasons.add(reason) && reasons.size() == 1) {
+                channel.config().setAutoRead(false);
+            }
+        }
+    }
+    
+    public static void resume(Channel channel, Object reason) {
+        Set<Object> reasons = getReasons(channel);
+        synchronized (reasons) {
+            if (reasons.remove(reason) && reasons.isEmpty()) {
+                channel.config().setAutoRead(true);
+            }
+        }
+    }
+    
+    private static Set<Object> getReasons(Channel channel) {
+        Set<Object> reasons = channel.attr(REASONS).get();
+        if (reasons == null) {
+            Set<Object> created = Collections.newSetFromMap(new IdentityHashMap<>());
+            reasons = channel.attr(REASONS).setIfAbsent(created);
+            if (reasons == null) {
+                reasons = created;
+            }
+        }
+        return reasons;
+    }
+}
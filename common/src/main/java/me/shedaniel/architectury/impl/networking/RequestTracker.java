@@ -0,0 +1,210 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.impl.networking;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import me.shedaniel.architectury.event.events.PlayerEvent;
+import me.shedaniel.architectury.event.events.client.ClientPlayerEvent;
+import me.shedaniel.architectury.networking.NetworkManager;
+import me.shedaniel.architectury.platform.Platform;
+import me.shedaniel.architectury.utils.Env;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.server.level.ServerPlayer;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pending requests and requests being handled, by remote: the player's uuid on the server, {@link #SERVER} on the client.
+ * <p>
+ * Requests time out on a shared timer thread, and are cancelled when their remote disconnects.
+ */
+@ApiStatus.Internal
+public final class RequestTracker {
+    public static final Object SERVER = new Object();
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+            .setNameFormat("Architectury Request Timeouts").setDaemon(true).build());
+    private static final Map<Object, Remote> REMOTES = new ConcurrentHashMap<>();
+    private static boolean initialized = false;
+    
+    static {
+        // Requests are mostly answered in time, their timeouts should not pile up in the queue
+        TIMEOUTS.setRemoveOnCancelPolicy(true);
+    }
+    
+    private RequestTracker() {}
+    
+    public static synchronized void init() {
+        if (initialized) return;
+        initialized = true;
+        PlayerEvent.PLAYER_QUIT.register(player -> disconnect(player.getUUID()));
+        if (Platform.getEnvironment() == Env.CLIENT) {
+            initClient();
+        }
+    }
+    
+    @Environment(EnvType.CLIENT)
+    private static void initClient() {
+        ClientPlayerEvent.CLIENT_PLAYER_QUIT.register(player -> disconnect(SERVER));
+    }
+    
+    public static Object getRemote(NetworkManager.PacketContext context) {
+        return context.getEnvironment() == Env.SERVER ? context.getPlayer().getUUID() : SERVER;
+    }
+    
+    /**
+     * Starts tracking a request to the remote, answered through {@link #take(Object, int, Object)} with the same owner.
+     *
+     * @return the pending request, or {@code null} if the remote already has {@code maxPending} requests pending
+     */
+    @Nullable
+    public static <R> Pending<R> start(Object remote, Object owner, int maxPending, long timeoutMillis) {
+        Remote tracked = REMOTES.computeIfAbsent(remote, r -> new Remote());
+        CompletableFuture<R> future = new CompletableFuture<>();
+        int id;
+        synchronized (tracked) {
+            if (tracked.pending.size() >= maxPending) return null;
+            do {
+                id = tracked.nextId++;
+            } while (tracked.pending.containsKey(id));
+            tracked.pending.put(id, null);
+        }
+        int requestId = id;
+        ScheduledFuture<?> timeout = TIMEOUTS.schedule(() -> {
+            future.completeExceptionally(new TimeoutException("Request " + requestId + " timed out after " + timeoutMillis + "ms"));
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        Pending<R> pending = new Pending<>(id, owner, future);
+        synchronized (tracked) {
+            tracked.pending.put(id, pending);
+        }
+        // Also when the caller cancels the future, or the remote disconnected
+        future.whenComplete((response, throwable) -> {
+            timeout.cancel(false);
+            synchronized (tracked) {
+                tracked.pending.remove(requestId, pending);
+            }
+        });
+        return pending;
+    }
+    
+    /**
+     * Stops tracking a request that is answered, if it is still pending and was started by the owner.
+     */
+    @Nullable
+    public static <R> Pending<R> take(Object remote, int id, Object owner) {
+        Remote tracked = REMOTES.get(remote);
+        if (tracked == null) return null;
+        synchronized (tracked) {
+            Pending<?> pending = tracked.pending.get(id);
+            if (pending == null || pending.owner != owner) return null;
+            tracked.pending.remove(id);
+            return (Pending<R>) pending;
+        }
+    }
+    
+    /**
+     * @return the remote of the context, whose {@link #endHandling(Remote)} has to be called once the request is answered,
+     * or {@code null} if the remote already has {@code maxHandling} requests being handled or has disconnected
+     */
+    @Nullable
+    public static Remote tryBeginHandling(NetworkManager.PacketContext context, int maxHandling) {
+        Object remote = getRemote(context);
+        Remote tracked = REMOTES.computeIfAbsent(remote, r -> new Remote());
+        int count;
+        do {
+            count = tracked.handling.get();
+            if (count >= maxHandling) return null;
+        } while (!tracked.handling.compareAndSet(count, count + 1));
+        // Players are marked as disconnected before they quit, so either the remote is removed again here or when they quit
+        if (context.getEnvironment() == Env.SERVER && ((ServerPlayer) context.getPlayer()).hasDisconnected()) {
+            tracked.handling.decrementAndGet();
+            REMOTES.remove(remote, tracked);
+            return null;
+        }
+        return tracked;
+    }
+    
+    /**
+     * Ends handling a request of the remote, which counts against the session the request was received in even if
+     * the remote has reconnected since.
+     */
+    public static void endHandling(Remote tracked) {
+        tracked.handling.decrementAndGet();
+    }
+    
+    public static int getPendingRequests() {
+        int pending = 0;
+        for (Remote remote : REMOTES.values()) {
+            synchronized (remote) {
+                pending += remote.pending.size();
+            }
+        }
+        return pending;
+    }
+    
+    private static void disconnect(Object remote) {
+        Remote tracked = REMOTES.remove(remote);
+        if (tracked == null) return;
+        List<Pending<?>> pending;
+        synchronized (tracked) {
+            pending = new ArrayList<>(tracked.pending.values());
+            tracked.pending.clear();
+        }
+        for (Pending<?> request : pending) {
+            if (request != null) {
+                request.future.cancel(false);
+            }
+        }
+    }
+    
+    public static final class Pending<R> {
+        public final int id;
+        private final Object owner;
+        public final CompletableFuture<R> future;
+        
+        private Pending(int id, Object owner, CompletableFuture<R> future) {
+            this.id = id;
+            this.owner = owner;
+            this.future = future;
+        }
+    }
+    
+    public static final class Remote {
+        /**
+         * Pending requests by id, guarded by the remote, {@code null} while a request is being started.
+         */
+        private final Int2ObjectMap<Pending<?>> pending = new Int2ObjectOpenHashMap<>();
+        private int nextId;
+        private final AtomicInteger handling = new AtomicInteger();
+    }
+}
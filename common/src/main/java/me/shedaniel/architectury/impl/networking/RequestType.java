@@ -0,0 +1,182 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package me.shedaniel.architectury.impl.networking;
+
+import me.shedaniel.architectury.networking.NetworkChannel;
+import me.shedaniel.architectury.networking.NetworkManager;
+import me.shedaniel.architectury.networking.NetworkManager.PacketContext;
+import me.shedaniel.architectury.utils.Env;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A request type registered to a channel, sent with a correlation id and answered by a response with the same id.
+ */
+@ApiStatus.Internal
+public final class RequestType<Q, R> {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private final ResourceLocation channel;
+    public final MessageEncoder<Call<Q>> requestEncoder;
+    public final MessageEncoder<Call<R>> responseEncoder;
+    private final Function<FriendlyByteBuf, Q> requestDecoder;
+    private final Function<FriendlyByteBuf, R> responseDecoder;
+    private final Supplier<ChannelCompression> compression;
+    private final IntSupplier maxPendingRequests;
+    
+    public RequestType(ResourceLocation channel, ResourceLocation requestId, ResourceLocation responseId, BiConsumer<Q, FriendlyByteBuf> requestEncoder, Function<FriendlyByteBuf, Q> requestDecoder,
+            BiConsumer<R, FriendlyByteBuf> responseEncoder, Function<FriendlyByteBuf, R> responseDecoder, Supplier<ChannelCompression> compression, IntSupplier maxPendingRequests) {
+        this.channel = channel;
+        this.requestEncoder = new MessageEncoder<>(requestId, (call, buf) -> {
+            buf.writeVarInt(call.id);
+            requestEncoder.accept(call.message, buf);
+        }, compression, null);
+        this.responseEncoder = new MessageEncoder<>(responseId, (reply, buf) -> {
+            buf.writeVarInt(reply.id);
+            buf.writeBoolean(reply.error == null);
+            if (reply.error == null) {
+                responseEncoder.accept(reply.message, buf);
+            } else {
+                buf.writeUtf(reply.error);
+            }
+        }, compression, null);
+        this.requestDecoder = requestDecoder;
+        this.responseDecoder = responseDecoder;
+        this.compression = compression;
+        this.maxPendingRequests = maxPendingRequests;
+    }
+    
+    public CompletableFuture<R> send(Object remote, Q message, Duration timeout, Consumer<FriendlyByteBuf> sender) {
+        RequestTracker.Pending<R> pending = RequestTracker.start(remote, this, maxPendingRequests.getAsInt(), timeout.toMillis());
+        if (pending == null) {
+            CompletableFuture<R> future = new CompletableFuture<>();
+            future.completeExceptionally(new RejectedExecutionException("Too many pending requests to " + channel + "!"));
+            return future;
+        }
+        try {
+            FriendlyByteBuf buf = requestEncoder.encode(new Call<>(pending.id, message, null));
+            try {
+                sender.accept(buf);
+            } finally {
+                buf.release();
+            }
+        } catch (Throwable throwable) {
+            pending.future.completeExceptionally(throwable);
+        }
+        return pending.future;
+    }
+    
+    /**
+     * Decodes a request sent to the side and answers it with the handler.
+     */
+    public void receiveRequest(NetworkManager.Side side, FriendlyByteBuf buf, PacketContext context, NetworkChannel.RequestHandler<Q, R> handler) {
+        Call<Q> call = ChannelCompression.decode(compression.get(), side, requestEncoder.id, b -> new Call<>(b.readVarInt(), requestDecoder.apply(b), null), buf);
+        RequestTracker.Remote remote = RequestTracker.tryBeginHandling(context, maxPendingRequests.getAsInt());
+        if (remote == null) {
+            respond(context, new Call<>(call.id, null, "Too many pending requests"));
+            return;
+        }
+        CompletableFuture<R> future;
+        try {
+            future = handler.handle(call.message, () -> context);
+        } catch (Throwable throwable) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(throwable);
+        }
+        future.whenComplete((response, throwable) -> {
+            RequestTracker.endHandling(remote);
+            if (throwable == null) {
+                respond(context, new Call<>(call.id, response, null));
+            } else {
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                // Remotes can make handlers fail at will, and are not told why as the cause may hold anything
+                LOGGER.debug("Failed to answer request " + call.id + " of " + requestEncoder.id, cause);
+                respond(context, new Call<>(call.id, null, "Request failed"));
+            }
+        });
+    }
+    
+    private void respond(PacketContext context, Call<R> response) {
+        try {
+            FriendlyByteBuf buf = responseEncoder.encode(response);
+            try {
+                if (context.getEnvironment() == Env.SERVER) {
+                    NetworkManager.sendToPlayer((ServerPlayer) context.getPlayer(), responseEncoder.id, buf);
+                } else {
+                    NetworkManager.sendToServer(responseEncoder.id, buf);
+                }
+            } finally {
+                buf.release();
+            }
+        } catch (Throwable throwable) {
+            LOGGER.error("Failed to send the response to request " + response.id + " of " + requestEncoder.id, throwable);
+        }
+    }
+    
+    public void receiveResponse(FriendlyByteBuf buf, PacketContext context) {
+        Object remote = RequestTracker.getRemote(context);
+        NetworkManager.Side side = context.getEnvironment() == Env.SERVER ? NetworkManager.c2s() : NetworkManager.s2c();
+        ChannelCompression.decode(compression.get(), side, responseEncoder.id, payload -> {
+            RequestTracker.Pending<R> pending = RequestTracker.take(remote, payload.readVarInt(), this);
+            // Timed out, cancelled, or not ours
+            if (pending == null) return null;
+            try {
+                if (payload.readBoolean()) {
+                    pending.future.complete(responseDecoder.apply(payload));
+                } else {
+                    pending.future.completeExceptionally(new NetworkChannel.RequestFailedException(payload.readUtf()));
+                }
+            } catch (Throwable throwable) {
+                pending.future.completeExceptionally(throwable);
+            }
+            return null;
+        }, buf);
+    }
+    
+    /**
+     * A request or a response with its correlation id, a response carries either a message or an error.
+     */
+    public static final class Call<T> {
+        private final int id;
+        @Nullable
+        private final T message;
+        @Nullable
+        private final String error;
+        
+        private Call(int id, @Nullable T message, @Nullable String error) {
+            this.id = id;
+            this.message = message;
+            this.error = error;
+        }
+    }
+}
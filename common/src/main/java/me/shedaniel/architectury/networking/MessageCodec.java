@@ -0,0 +1,74 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.networking;
+
+import me.shedaniel.architectury.impl.networking.MessageCodecGenerator;
+import net.minecraft.network.FriendlyByteBuf;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Encoder and decoder of a message class derived from its {@link NetworkField} annotated fields.
+ * <p>
+ * The codec is a class generated once per message class, reading and writing the fields through constant method handles,
+ * so that no reflection is involved per message. Booleans are packed into a single bitset, {@code int} and {@code long}
+ * fields are written as varints unless marked {@link NetworkField#fixed()}. Decoding creates messages with their
+ * no-argument constructor, which may be private.
+ */
+public final class MessageCodec<T> {
+    private static final ClassValue<MessageCodec<?>> CODECS = new ClassValue<MessageCodec<?>>() {
+        @Override
+        protected MessageCodec<?> computeValue(Class<?> type) {
+            return new MessageCodec<>(type);
+        }
+    };
+    private final BiConsumer<T, FriendlyByteBuf> encoder;
+    private final Function<FriendlyByteBuf, T> decoder;
+    
+    private MessageCodec(Class<T> type) {
+        Object codec = MessageCodecGenerator.generate(type);
+        this.encoder = (BiConsumer<T, FriendlyByteBuf>) codec;
+        this.decoder = (Function<FriendlyByteBuf, T>) codec;
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the class has unsupported annotated fields, or no no-argument constructor
+     */
+    public static <T> MessageCodec<T> of(Class<T> type) {
+        return (MessageCodec<T>) CODECS.get(type);
+    }
+    
+    public BiConsumer<T, FriendlyByteBuf> encoder() {
+        return encoder;
+    }
+    
+    public Function<FriendlyByteBuf, T> decoder() {
+        return decoder;
+    }
+    
+    public void encode(T message, FriendlyByteBuf buf) {
+        encoder.accept(message, buf);
+    }
+    
+    public T decode(FriendlyByteBuf buf) {
+        return decoder.apply(buf);
+    }
+}
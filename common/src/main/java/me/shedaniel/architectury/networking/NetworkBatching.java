@@ -0,0 +1,109 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.networking;
+
+import me.shedaniel.architectury.impl.networking.PacketBundler;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in batching of server to client messages, enabled per message id with {@link #setBatched(ResourceLocation, boolean)}
+ * or per channel with {@link NetworkChannel#setBatched(boolean)}.
+ * <p>
+ * Batched messages sent to a player are queued and packed into a single bundle packet, which is sent at the end of the
+ * server tick and unpacked on the client, dispatching the messages in the order they were sent. A bundle is sent early
+ * once it reaches the maximum bundle size, and can be held back for several ticks with {@link #setMaxDelay(long, TimeUnit)}.
+ * Batched messages may arrive after vanilla packets sent during the same tick; players that cannot receive bundles
+ * are sent every message directly.
+ * <p>
+ * The defaults can be changed with {@code architectury.networkBatching.maxBundleBytes} (32768)
+ * and {@code architectury.networkBatching.maxDelayMs} (0, flush every tick).
+ */
+public final class NetworkBatching {
+    private static final int MAX_PAYLOAD_SIZE = 1000000;
+    private static final Set<ResourceLocation> BATCHED = ConcurrentHashMap.newKeySet();
+    private static volatile int maxBundleSize = clampBundleSize(Integer.getInteger("architectury.networkBatching.maxBundleBytes", 32768));
+    private static volatile long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, Long.getLong("architectury.networkBatching.maxDelayMs", 0)));
+    
+    private NetworkBatching() {}
+    
+    public static boolean isBatched(ResourceLocation id) {
+        return !BATCHED.isEmpty() && BATCHED.contains(id);
+    }
+    
+    /**
+     * Sets whether messages with the id are batched when sent to players, messages already queued are still sent.
+     */
+    public static void setBatched(ResourceLocation id, boolean batched) {
+        if (batched) {
+            BATCHED.add(id);
+            PacketBundler.init();
+        } else {
+            BATCHED.remove(id);
+        }
+    }
+    
+    public static int getMaxBundleSize() {
+        return maxBundleSize;
+    }
+    
+    /**
+     * Sets the size in bytes a bundle may reach before it is sent early, larger messages are sent on their own.
+     */
+    public static void setMaxBundleSize(int bytes) {
+        if (bytes <= 0) throw new IllegalArgumentException("Bundle size must be positive!");
+        maxBundleSize = clampBundleSize(bytes);
+    }
+    
+    public static long getMaxDelayNanos() {
+        return maxDelayNanos;
+    }
+    
+    /**
+     * Sets how long queued messages may be held back, bundles are only sent at the end of a server tick or when full,
+     * so {@code 0} sends them at the end of every tick.
+     */
+    public static void setMaxDelay(long delay, TimeUnit unit) {
+        if (delay < 0) throw new IllegalArgumentException("Delay must not be negative!");
+        maxDelayNanos = unit.toNanos(delay);
+    }
+    
+    /**
+     * Sends the messages queued for every player right away.
+     */
+    public static void flush() {
+        PacketBundler.flushAll();
+    }
+    
+    /**
+     * Sends the messages queued for the player right away.
+     */
+    public static void flush(ServerPlayer player) {
+        PacketBundler.flush(player);
+    }
+    
+    private static int clampBundleSize(int bytes) {
+        return Math.max(64, Math.min(MAX_PAYLOAD_SIZE, bytes));
+    }
+}
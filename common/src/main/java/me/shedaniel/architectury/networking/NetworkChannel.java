@@ -19,28 +19,51 @@
 
 package me.shedaniel.architectury.networking;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-import io.netty.buffer.Unpooled;
+import com.google.common.collect.Lists;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
+import me.shedaniel.architectury.impl.networking.ChannelCompression;
+import me.shedaniel.architectury.impl.networking.DeferredMessage;
+import me.shedaniel.architectury.impl.networking.EncoderRegistry;
+import me.shedaniel.architectury.impl.networking.Loopback;
+import me.shedaniel.architectury.impl.networking.MainThreadHandoff;
+import me.shedaniel.architectury.impl.networking.MessageEncoder;
+import me.shedaniel.architectury.impl.networking.PacketBundler;
+import me.shedaniel.architectury.impl.networking.RequestTracker;
+import me.shedaniel.architectury.impl.networking.RequestType;
 import me.shedaniel.architectury.networking.NetworkManager.PacketContext;
 import me.shedaniel.architectury.platform.Platform;
 import me.shedaniel.architectury.utils.Env;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
-import net.minecraft.client.Minecraft;
+import net.minecraft.Util;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.protocol.Packet;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
-import org.apache.commons.lang3.tuple.Pair;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.ChunkPos;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Objects;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+import java.util.zip.Deflater;
 
 /**
  * Forge {@code SimpleChannel} like network wrapper of {@link NetworkManager}.
@@ -48,25 +71,55 @@ import java.util.function.Supplier;
 public final class NetworkChannel {
     private final ResourceLocation id;
     private final IntSet takenIds = new IntOpenHashSet();
-    private final Table<NetworkManager.Side, Class<?>, Pair<ResourceLocation, BiConsumer<?, FriendlyByteBuf>>> encoders = HashBasedTable.create();
+    private final EncoderRegistry encoders = new EncoderRegistry();
+    /**
+     * Registered request types by the side of the requests.
+     */
+    private final Map<NetworkManager.Side, Map<Class<?>, RequestType<?, ?>>> requestTypes = new EnumMap<>(NetworkManager.Side.class);
+    private volatile Duration requestTimeout = Duration.ofSeconds(10);
+    private volatile int maxPendingRequests = 64;
+    private boolean batched = false;
+    @Nullable
+    private RateLimit rateLimit;
+    @Nullable
+    private volatile ChannelCompression compression;
+    private final Supplier<ChannelCompression> compressionSupplier = () -> compression;
+    @Nullable
+    private volatile MainThreadHandoff handoff;
     
     private NetworkChannel(ResourceLocation id) {
         this.id = id;
+        for (NetworkManager.Side side : NetworkManager.Side.values()) {
+            requestTypes.put(side, new ConcurrentHashMap<>());
+        }
     }
     
     public static NetworkChannel create(ResourceLocation id) {
         return new NetworkChannel(id);
     }
     
+    /**
+     * Registers a message whose encoder and decoder are generated from its {@link NetworkField} annotated fields.
+     *
+     * @see MessageCodec
+     */
+    public <T> void register(NetworkManager.Side side, Class<T> type, BiConsumer<T, Supplier<PacketContext>> messageConsumer) {
+        MessageCodec<T> codec = MessageCodec.of(type);
+        register(Optional.ofNullable(side), type, codec.encoder(), codec.decoder(), messageConsumer);
+    }
+    
     public <T> void register(NetworkManager.Side side, Class<T> type, BiConsumer<T, FriendlyByteBuf> encoder, Function<FriendlyByteBuf, T> decoder, BiConsumer<T, Supplier<PacketContext>> messageConsumer) {
         register(Optional.ofNullable(side), type, encoder, decoder, messageConsumer);
     }
     
     public <T> void register(Optional<NetworkManager.Side> side, Class<T> type, BiConsumer<T, FriendlyByteBuf> encoder, Function<FriendlyByteBuf, T> decoder, BiConsumer<T, Supplier<PacketContext>> messageConsumer) {
+        register(side, nextFreeId(), type, encoder, decoder, messageConsumer);
+    }
+    
+    private int nextFreeId() {
         for (int i = 0; true; i++) {
             if (!takenIds.contains(i)) {
-                register(side, i, type, encoder, decoder, messageConsumer);
-                break;
+                return i;
             }
         }
     }
@@ -81,54 +134,436 @@ public final class NetworkChannel {
         if (!side.isPresent() || side.get() == NetworkManager.s2c()) {
             if (Platform.getEnvironment() == Env.CLIENT) {
                 NetworkManager.registerReceiver(NetworkManager.s2c(), messageId, (buf, context) -> {
-                    messageConsumer.accept(decoder.apply(buf), () -> context);
+                    dispatch(messageConsumer, ChannelCompression.decode(compression, NetworkManager.s2c(), messageId, decoder, buf), context);
                 });
             }
-            encoders.put(NetworkManager.s2c(), type, Pair.of(messageId, encoder));
+            encoders.put(NetworkManager.s2c(), type, new MessageEncoder<>(messageId, encoder, compressionSupplier, messageConsumer));
+            if (batched) {
+                NetworkBatching.setBatched(messageId, true);
+            }
         }
         if (!side.isPresent() || side.get() == NetworkManager.c2s()) {
             NetworkManager.registerReceiver(NetworkManager.c2s(), messageId, (buf, context) -> {
-                messageConsumer.accept(decoder.apply(buf), () -> context);
+                dispatch(messageConsumer, ChannelCompression.decode(compression, NetworkManager.c2s(), messageId, decoder, buf), context);
             });
-            encoders.put(NetworkManager.c2s(), type, Pair.of(messageId, encoder));
+            encoders.put(NetworkManager.c2s(), type, new MessageEncoder<>(messageId, encoder, compressionSupplier, messageConsumer));
+            if (rateLimit != null) {
+                NetworkRateLimits.setLimit(messageId, rateLimit);
+            }
+        }
+    }
+    
+    /**
+     * Registers a request whose request and response are generated from their {@link NetworkField} annotated fields.
+     *
+     * @see #registerRequest(NetworkManager.Side, Class, BiConsumer, Function, BiConsumer, Function, RequestHandler)
+     */
+    public <Q, R> void registerRequest(NetworkManager.Side side, Class<Q> requestType, Class<R> responseType, RequestHandler<Q, R> handler) {
+        MessageCodec<Q> requestCodec = MessageCodec.of(requestType);
+        MessageCodec<R> responseCodec = MessageCodec.of(responseType);
+        registerRequest(side, requestType, requestCodec.encoder(), requestCodec.decoder(), responseCodec.encoder(), responseCodec.decoder(), handler);
+    }
+    
+    /**
+     * Registers a request sent to the given side, answered by the handler there, see {@link #request(Object)} and
+     * {@link #request(ServerPlayer, Object)}.
+     * <p>
+     * Requests and responses are sent with a correlation id, the response to a request that has timed out or was
+     * cancelled is dropped. Both sides have to register the request, like messages.
+     */
+    public synchronized <Q, R> void registerRequest(NetworkManager.Side side, Class<Q> requestType, BiConsumer<Q, FriendlyByteBuf> requestEncoder, Function<FriendlyByteBuf, Q> requestDecoder,
+            BiConsumer<R, FriendlyByteBuf> responseEncoder, Function<FriendlyByteBuf, R> responseDecoder, RequestHandler<Q, R> handler) {
+        int id = nextFreeId();
+        takenIds.add(id);
+        ResourceLocation requestId = new ResourceLocation(this.id.getNamespace(), this.id.getPath() + "_" + id);
+        ResourceLocation responseId = new ResourceLocation(this.id.getNamespace(), this.id.getPath() + "_" + id + "_response");
+        RequestType<Q, R> type = new RequestType<>(this.id, requestId, responseId, requestEncoder, requestDecoder, responseEncoder, responseDecoder,
+                compressionSupplier, () -> maxPendingRequests);
+        requestTypes.get(side).put(requestType, type);
+        if (rateLimit != null) {
+            NetworkRateLimits.setLimit(side == NetworkManager.c2s() ? requestId : responseId, rateLimit);
+        }
+        RequestTracker.init();
+        NetworkManager.Side responseSide = side == NetworkManager.s2c() ? NetworkManager.c2s() : NetworkManager.s2c();
+        if (side == NetworkManager.c2s() || Platform.getEnvironment() == Env.CLIENT) {
+            NetworkManager.registerReceiver(side, requestId, (buf, context) -> type.receiveRequest(side, buf, context, handler));
+        }
+        if (responseSide == NetworkManager.c2s() || Platform.getEnvironment() == Env.CLIENT) {
+            NetworkManager.registerReceiver(responseSide, responseId, type::receiveResponse);
+        }
+    }
+    
+    /**
+     * Sets how long requests sent through this channel are waited for by default, before their futures complete
+     * exceptionally with a {@link java.util.concurrent.TimeoutException}.
+     */
+    public void setRequestTimeout(Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) throw new IllegalArgumentException("Timeout must be positive!");
+        this.requestTimeout = timeout;
+    }
+    
+    /**
+     * Sets how many requests may be pending per player, both for requests sent to them and for requests handled from
+     * them. Further requests to a player fail with a {@link RejectedExecutionException}, further requests from a player
+     * are answered with a {@link RequestFailedException}.
+     */
+    public void setMaxPendingRequests(int maxPendingRequests) {
+        if (maxPendingRequests <= 0) throw new IllegalArgumentException("Maximum must be positive!");
+        this.maxPendingRequests = maxPendingRequests;
+    }
+    
+    /**
+     * Sends a request to the server, the returned future completes with its response on the network thread, or
+     * exceptionally if the request timed out or failed, and is cancelled when disconnecting.
+     */
+    @Environment(EnvType.CLIENT)
+    public <Q, R> CompletableFuture<R> request(Q message) {
+        return request(message, requestTimeout);
+    }
+    
+    @Environment(EnvType.CLIENT)
+    public <Q, R> CompletableFuture<R> request(Q message, Duration timeout) {
+        RequestType<Q, R> type = getRequestType(NetworkManager.c2s(), message);
+        return type.send(RequestTracker.SERVER, message, timeout, buf -> NetworkManager.sendToServer(type.requestEncoder.id, buf));
+    }
+    
+    /**
+     * Sends a request to the player, the returned future completes with its response on the network thread, or
+     * exceptionally if the request timed out or failed, and is cancelled when the player disconnects.
+     */
+    public <Q, R> CompletableFuture<R> request(ServerPlayer player, Q message) {
+        return request(player, message, requestTimeout);
+    }
+    
+    public <Q, R> CompletableFuture<R> request(ServerPlayer player, Q message, Duration timeout) {
+        RequestType<Q, R> type = getRequestType(NetworkManager.s2c(), message);
+        return type.send(player.getUUID(), message, timeout, buf -> NetworkManager.sendToPlayer(player, type.requestEncoder.id, buf));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <Q, R> RequestType<Q, R> getRequestType(NetworkManager.Side side, Q message) {
+        RequestType<Q, R> type = (RequestType<Q, R>) requestTypes.get(side).get(message.getClass());
+        if (type == null) {
+            throw new IllegalArgumentException("Request type " + message.getClass().getName() + " is not registered for " + side + "!");
+        }
+        return type;
+    }
+    
+    /**
+     * Compresses the messages of this channel that are at least {@code threshold} bytes long with the {@link Deflater}
+     * compression level, for channels sending large messages such as structure or config snapshots.
+     * <p>
+     * Compressed payloads start with a flag telling whether they were compressed, so compression has to be enabled on
+     * both sides, before any message is sent, like the messages themselves are registered.
+     */
+    public void enableCompression(int threshold, int level) {
+        this.compression = new ChannelCompression(threshold, level);
+    }
+    
+    public void disableCompression() {
+        this.compression = null;
+    }
+    
+    /**
+     * Hands the messages of this channel to the main thread once decoded, instead of calling their consumers on the
+     * network thread, so that decoding does not take tick time.
+     * <p>
+     * Messages are queued per connection and handled at the start of every tick, at most {@code drainPerTick} of them
+     * per connection. Messages received while {@code capacity} of them are queued are handled by the overflow policy.
+     */
+    public synchronized void enableMainThreadHandoff(int capacity, int drainPerTick, OverflowPolicy policy) {
+        if (capacity <= 0 || drainPerTick <= 0) throw new IllegalArgumentException("Capacity and drain per tick must be positive!");
+        disableMainThreadHandoff();
+        this.handoff = new MainThreadHandoff(id, capacity, drainPerTick, policy);
+    }
+    
+    /**
+     * Calls the consumers of messages received from now on on the network thread again, queued messages are still handled.
+     */
+    public synchronized void disableMainThreadHandoff() {
+        MainThreadHandoff handoff = this.handoff;
+        if (handoff != null) {
+            this.handoff = null;
+            handoff.close();
+        }
+    }
+    
+    private <T> void dispatch(BiConsumer<T, Supplier<PacketContext>> messageConsumer, T message, PacketContext context) {
+        MainThreadHandoff.dispatch(handoff, messageConsumer, message, context);
+    }
+    
+    /**
+     * Registers an estimate of the encoded size of a message type, so that its buffer is allocated with the right size
+     * on the first try. Without an estimator the size of the previously encoded message of that type is used.
+     */
+    public synchronized <T> void registerSizeEstimator(Class<T> type, ToIntFunction<T> estimator) {
+        boolean registered = false;
+        for (NetworkManager.Side side : NetworkManager.Side.values()) {
+            MessageEncoder<T> encoder = encoders.get(side, type);
+            if (encoder != null) {
+                encoders.put(side, type, encoder.withSizeEstimator(estimator));
+                registered = true;
+            }
+        }
+        if (!registered) {
+            throw new IllegalArgumentException("Message type " + type.getName() + " is not registered!");
+        }
+    }
+    
+    /**
+     * Makes messages of the type sent to players coalesce by the key, for messages that are snapshots of a state.
+     * <p>
+     * Such messages are held until the end of the server tick, a message sent while another with an equal key is still
+     * pending for the player replaces it, so that only the latest one is encoded and sent. Pending messages keep the
+     * position of the first message with their key, and are sent after the messages not held back during that tick.
+     */
+    public synchronized <T> void registerCoalescingKey(Class<T> type, Function<T, ?> keyFunction) {
+        MessageEncoder<T> encoder = encoders.get(NetworkManager.s2c(), type);
+        if (encoder == null) {
+            throw new IllegalArgumentException("Message type " + type.getName() + " is not registered for " + NetworkManager.s2c() + "!");
+        }
+        encoders.put(NetworkManager.s2c(), type, encoder.withCoalescingKey(keyFunction));
+        PacketBundler.init();
+    }
+    
+    /**
+     * Hands messages of the type sent between the integrated server and the client of its host directly to the consumer
+     * on the other side, copied with the copier, instead of encoding and decoding them. The copier may return the
+     * message itself if it is immutable, {@code null} turns loopback off again.
+     * <p>
+     * Looped back messages are handed over on the sending thread, so they may arrive before packets sent earlier, and
+     * skip coalescing, batching, compression, rate limits and metrics. Messages sent to the host before its client
+     * has joined the level are still encoded.
+     */
+    public synchronized <T> void setLoopback(Class<T> type, @Nullable UnaryOperator<T> copier) {
+        boolean registered = false;
+        for (NetworkManager.Side side : NetworkManager.Side.values()) {
+            MessageEncoder<T> encoder = encoders.get(side, type);
+            if (encoder != null) {
+                encoders.put(side, type, encoder.withCopier(copier));
+                registered = true;
+            }
+        }
+        if (!registered) {
+            throw new IllegalArgumentException("Message type " + type.getName() + " is not registered!");
         }
     }
     
-    private <T> Pair<ResourceLocation, FriendlyByteBuf> encode(NetworkManager.Side side, T message) {
-        Pair<ResourceLocation, BiConsumer<?, FriendlyByteBuf>> pair = Objects.requireNonNull(encoders.get(side, message.getClass()));
-        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
-        ((BiConsumer<T, FriendlyByteBuf>) pair.getRight()).accept(message, buf);
-        return Pair.of(pair.getLeft(), buf);
+    /**
+     * Sets whether the messages of this channel sent to players are batched, see {@link NetworkBatching}.
+     */
+    public synchronized void setBatched(boolean batched) {
+        this.batched = batched;
+        for (MessageEncoder<?> encoder : encoders.getAll(NetworkManager.s2c())) {
+            NetworkBatching.setBatched(encoder.id, batched);
+        }
+    }
+    
+    /**
+     * Sets the rate limit shared by all client to server messages of this channel, including those registered later,
+     * or removes it if {@code null}. See {@link NetworkRateLimits}.
+     */
+    public synchronized void setRateLimit(@Nullable RateLimit limit) {
+        this.rateLimit = limit;
+        for (MessageEncoder<?> encoder : encoders.getAll(NetworkManager.c2s())) {
+            NetworkRateLimits.setLimit(encoder.id, limit);
+        }
+        for (RequestType<?, ?> type : requestTypes.get(NetworkManager.c2s()).values()) {
+            NetworkRateLimits.setLimit(type.requestEncoder.id, limit);
+        }
+        for (RequestType<?, ?> type : requestTypes.get(NetworkManager.s2c()).values()) {
+            NetworkRateLimits.setLimit(type.responseEncoder.id, limit);
+        }
+    }
+    
+    /**
+     * Sets the rate limit of client to server messages or requests of the type, replacing the limit of the channel for them,
+     * or removes it if {@code null}.
+     */
+    public synchronized void setRateLimit(Class<?> type, @Nullable RateLimit limit) {
+        MessageEncoder<?> encoder = encoders.get(NetworkManager.c2s(), type);
+        RequestType<?, ?> requestType = requestTypes.get(NetworkManager.c2s()).get(type);
+        if (encoder == null && requestType == null) {
+            throw new IllegalArgumentException("Message type " + type.getName() + " is not registered for " + NetworkManager.c2s() + "!");
+        }
+        if (encoder != null) {
+            NetworkRateLimits.setLimit(encoder.id, limit);
+        }
+        if (requestType != null) {
+            NetworkRateLimits.setLimit(requestType.requestEncoder.id, limit);
+        }
     }
     
     public <T> Packet<?> toPacket(NetworkManager.Side side, T message) {
-        Pair<ResourceLocation, FriendlyByteBuf> encoded = encode(side, message);
-        return NetworkManager.toPacket(side, encoded.getLeft(), encoded.getRight());
+        MessageEncoder<T> encoder = encoders.forMessage(side, message);
+        FriendlyByteBuf buf = encoder.encode(message);
+        try {
+            // The packet copies the payload or holds its own reference to it, so the buffer can be released right away
+            return NetworkManager.toPacket(side, encoder.id, buf);
+        } finally {
+            buf.release();
+        }
+    }
+    
+    /**
+     * Encodes the message as it would be sent, without sending it. The buffer has to be released by the caller.
+     */
+    @ApiStatus.Internal
+    public <T> Map.Entry<ResourceLocation, FriendlyByteBuf> encode(NetworkManager.Side side, T message) {
+        MessageEncoder<T> encoder = encoders.forMessage(side, message);
+        return new AbstractMap.SimpleImmutableEntry<>(encoder.id, encoder.encode(message));
     }
     
     public <T> void sendToPlayer(ServerPlayer player, T message) {
-        Pair<ResourceLocation, FriendlyByteBuf> encoded = encode(NetworkManager.s2c(), message);
-        NetworkManager.sendToPlayer(player, encoded.getLeft(), encoded.getRight());
+        MessageEncoder<T> encoder = encoders.forMessage(NetworkManager.s2c(), message);
+        if (encoder.copier != null && Loopback.sendToClient(encoder, player, message, handoff)) return;
+        Function<T, ?> coalescingKey = encoder.coalescingKey;
+        if (coalescingKey != null) {
+            DeferredMessage.coalesce(encoder, coalescingKey.apply(message), message, Collections.singletonList(player), 1);
+            return;
+        }
+        FriendlyByteBuf buf = encoder.encode(message);
+        try {
+            NetworkManager.sendToPlayer(player, encoder.id, buf);
+        } finally {
+            buf.release();
+        }
     }
     
     public <T> void sendToPlayers(Iterable<ServerPlayer> players, T message) {
-        Packet<?> packet = toPacket(NetworkManager.s2c(), message);
-        for (ServerPlayer player : players) {
-            player.connection.send(packet);
+        MessageEncoder<T> encoder = encoders.forMessage(NetworkManager.s2c(), message);
+        if (encoder.copier != null) {
+            List<ServerPlayer> remaining = Loopback.sendToClients(encoder, players, message, handoff);
+            if (remaining.isEmpty()) return;
+            players = remaining;
+        }
+        Function<T, ?> coalescingKey = encoder.coalescingKey;
+        if (coalescingKey != null) {
+            List<ServerPlayer> playerList = Lists.newArrayList(players);
+            if (playerList.isEmpty()) return;
+            DeferredMessage.coalesce(encoder, coalescingKey.apply(message), message, playerList, playerList.size());
+            return;
+        }
+        FriendlyByteBuf buf = encoder.encode(message);
+        try {
+            NetworkManager.sendToPlayers(players, encoder.id, buf);
+        } finally {
+            buf.release();
+        }
+    }
+    
+    public <T> void sendToTracking(Entity entity, T message) {
+        sendToTargets(NetworkManager.getTrackingPlayers(entity), message);
+    }
+    
+    public <T> void sendToTrackingAndSelf(Entity entity, T message) {
+        sendToTargets(NetworkManager.getTrackingPlayersAndSelf(entity), message);
+    }
+    
+    public <T> void sendToChunk(ServerLevel level, ChunkPos pos, T message) {
+        sendToTargets(NetworkManager.getPlayersWatching(level, pos), message);
+    }
+    
+    public <T> void sendToNear(ServerLevel level, double x, double y, double z, double radius, T message) {
+        sendToTargets(NetworkManager.getPlayersNear(level, x, y, z, radius), message);
+    }
+    
+    public <T> void sendToLevel(ServerLevel level, T message) {
+        sendToTargets(level.players(), message);
+    }
+    
+    private <T> void sendToTargets(Collection<ServerPlayer> players, T message) {
+        // Encoded once for all of them
+        if (!players.isEmpty()) {
+            sendToPlayers(players, message);
+        }
+    }
+    
+    /**
+     * Encodes the message on the calling thread, then compresses and sends it on a background thread, for large messages
+     * of channels with compression enabled. The message may arrive after messages sent later on the calling thread.
+     */
+    public <T> CompletableFuture<Void> sendToPlayersAsync(Iterable<ServerPlayer> players, T message) {
+        MessageEncoder<T> encoder = encoders.forMessage(NetworkManager.s2c(), message);
+        List<ServerPlayer> playerList = encoder.copier != null ? Loopback.sendToClients(encoder, players, message, handoff) : Lists.newArrayList(players);
+        if (playerList.isEmpty()) return CompletableFuture.completedFuture(null);
+        ChannelCompression compression = this.compression;
+        FriendlyByteBuf raw = encoder.encode(message, compression != null);
+        try {
+            return CompletableFuture.runAsync(() -> {
+                FriendlyByteBuf buf = compression != null ? compression.compress(raw) : raw;
+                try {
+                    NetworkManager.sendToPlayers(playerList, encoder.id, buf);
+                } finally {
+                    buf.release();
+                }
+            }, Util.backgroundExecutor());
+        } catch (RejectedExecutionException e) {
+            // The task never runs to release it, as when the executor is shutting down
+            raw.release();
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
         }
     }
     
     @Environment(EnvType.CLIENT)
     public <T> void sendToServer(T message) {
-        Minecraft.getInstance().getConnection().send(toPacket(NetworkManager.c2s(), message));
+        MessageEncoder<T> encoder = encoders.forMessage(NetworkManager.c2s(), message);
+        if (encoder.copier != null && Loopback.sendToServer(encoder, message, handoff)) return;
+        FriendlyByteBuf buf = encoder.encode(message);
+        try {
+            NetworkManager.sendToServer(encoder.id, buf);
+        } finally {
+            buf.release();
+        }
     }
     
     @Environment(EnvType.CLIENT)
     public <T> boolean canServerReceive(Class<T> type) {
-        return NetworkManager.canServerReceive(encoders.get(NetworkManager.c2s(), type).getLeft());
+        MessageEncoder<?> encoder = encoders.resolve(NetworkManager.c2s(), type);
+        return encoder != null && NetworkManager.canServerReceive(encoder.id);
     }
     
     public <T> boolean canPlayerReceive(ServerPlayer player, Class<T> type) {
-        return NetworkManager.canPlayerReceive(player, encoders.get(NetworkManager.s2c(), type).getLeft());
+        MessageEncoder<?> encoder = encoders.resolve(NetworkManager.s2c(), type);
+        return encoder != null && NetworkManager.canPlayerReceive(player, encoder.id);
+    }
+    
+    /**
+     * What to do with messages received from a connection while its main thread queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drops the messages.
+         */
+        DROP,
+        /**
+         * Disconnects the connection.
+         */
+        DISCONNECT,
+        /**
+         * Stops reading from the connection until half of its queue has been handled, messages it has already read
+         * are still queued.
+         */
+        BACKPRESSURE,
+    }
+    
+    /**
+     * Answers requests, possibly asynchronously from another thread. It is called on the network thread, work that has
+     * to be done on the main thread can be queued through the context.
+     */
+    @FunctionalInterface
+    public interface RequestHandler<Q, R> {
+        CompletableFuture<R> handle(Q request, Supplier<PacketContext> context);
+    }
+    
+    /**
+     * Thrown when the other side failed to answer a request, or refused to because too many were pending.
+     */
+    public static class RequestFailedException extends RuntimeException {
+        public RequestFailedException(String message) {
+            super(message);
+        }
     }
 }
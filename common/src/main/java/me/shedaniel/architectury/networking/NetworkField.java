@@ -0,0 +1,49 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.networking;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field of a message class to be written by its {@link MessageCodec}, fields are written in the order of {@link #value()}.
+ * <p>
+ * Supported are primitives, boxed primitives, {@link String}, {@link net.minecraft.resources.ResourceLocation},
+ * {@link net.minecraft.world.item.ItemStack}, {@link me.shedaniel.architectury.fluid.FluidStack},
+ * {@link net.minecraft.core.BlockPos}, {@link net.minecraft.nbt.CompoundTag}, {@link java.util.UUID}, enums,
+ * {@link java.util.List} and {@link java.util.Optional} of those, and other classes with annotated fields.
+ * Reference fields other than optionals must not be {@code null}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface NetworkField {
+    /**
+     * @return the position of the field in the encoded message
+     */
+    int value();
+    
+    /**
+     * @return whether an {@code int} or {@code long} is written with a fixed width instead of as a varint,
+     * for values that are often large or negative, like hashes or packed positions
+     */
+    boolean fixed() default false;
+}
@@ -19,7 +19,13 @@
 
 package me.shedaniel.architectury.networking;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import me.shedaniel.architectury.annotations.ExpectPlatform;
+import me.shedaniel.architectury.impl.networking.PacketBundler;
+import me.shedaniel.architectury.impl.networking.PacketFragmenter;
+import me.shedaniel.architectury.impl.networking.RateLimiter;
+import me.shedaniel.architectury.platform.Platform;
 import me.shedaniel.architectury.utils.Env;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
@@ -27,34 +33,225 @@ import net.minecraft.client.Minecraft;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.protocol.Packet;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.Mth;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.ChunkPos;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public final class NetworkManager {
-    @ExpectPlatform
+    private static final Map<Side, Map<ResourceLocation, NetworkReceiver>> RECEIVERS = new EnumMap<>(Side.class);
+    
+    static {
+        for (Side side : Side.values()) {
+            RECEIVERS.put(side, new ConcurrentHashMap<>());
+        }
+        registerReceiver(Side.C2S, PacketFragmenter.FRAGMENT, PacketFragmenter::receive);
+        if (Platform.getEnvironment() == Env.CLIENT) {
+            registerReceiver(Side.S2C, PacketBundler.BUNDLE, PacketBundler::receive);
+            registerReceiver(Side.S2C, PacketFragmenter.FRAGMENT, PacketFragmenter::receive);
+        }
+    }
+    
     public static void registerReceiver(Side side, ResourceLocation id, NetworkReceiver receiver) {
+        if (side == Side.C2S) {
+            // Checked before the receiver decodes anything, also for messages reassembled from fragments
+            receiver = RateLimiter.wrap(id, receiver);
+        }
+        // Bundles and fragments are measured as the messages they carry
+        if (!id.equals(PacketBundler.BUNDLE) && !id.equals(PacketFragmenter.FRAGMENT)) {
+            receiver = measure(side, id, receiver);
+        }
+        RECEIVERS.get(side).put(id, receiver);
+        registerPlatformReceiver(side, id, receiver);
+    }
+    
+    private static NetworkReceiver measure(Side side, ResourceLocation id, NetworkReceiver receiver) {
+        return (buf, context) -> {
+            if (NetworkMetrics.isEnabled()) {
+                NetworkMetrics.record(side, false, id, side == Side.C2S ? context.getPlayer() : null, buf.readableBytes());
+            }
+            receiver.receive(buf, context);
+        };
+    }
+    
+    @ExpectPlatform
+    private static void registerPlatformReceiver(Side side, ResourceLocation id, NetworkReceiver receiver) {
         throw new AssertionError();
     }
     
+    /**
+     * @return the receiver registered with {@link #registerReceiver(Side, ResourceLocation, NetworkReceiver)}, for messages
+     * that are not dispatched by the platform
+     */
+    @ApiStatus.Internal
+    @Nullable
+    public static NetworkReceiver getReceiver(Side side, ResourceLocation id) {
+        return RECEIVERS.get(side).get(id);
+    }
+    
+    /**
+     * Creates a packet of the readable bytes of the buffer, the buffer may be released afterwards but not modified,
+     * as platforms that keep the payload in the packet share unpooled heap buffers with it instead of copying them.
+     */
     @ExpectPlatform
     public static Packet<?> toPacket(Side side, ResourceLocation id, FriendlyByteBuf buf) {
         throw new AssertionError();
     }
     
+    /**
+     * @return the allocator for payloads that are likely to be turned into packets, which is unpooled on platforms
+     * that keep the payload in the packet, so that it can be shared with the packet without a copy
+     */
+    @ApiStatus.Internal
+    @ExpectPlatform
+    public static ByteBufAllocator getPayloadAllocator() {
+        throw new AssertionError();
+    }
+    
+    /**
+     * Sends the message to the player, or queues it if its id is batched with {@link NetworkBatching}.
+     * Messages too large for a single packet are split into fragments, which are sent over the following ticks.
+     */
     public static void sendToPlayer(ServerPlayer player, ResourceLocation id, FriendlyByteBuf buf) {
-        player.connection.send(toPacket(serverToClient(), id, buf));
+        if (NetworkMetrics.isEnabled()) {
+            NetworkMetrics.record(serverToClient(), true, id, player, buf.readableBytes());
+        }
+        if (PacketFragmenter.needsFragmenting(serverToClient(), buf)) {
+            PacketFragmenter.send(serverToClient(), player.connection.getConnection(), id, PacketFragmenter.copy(serverToClient(), buf));
+        } else if (NetworkBatching.isBatched(id)) {
+            PacketBundler.queue(player, id, buf);
+        } else {
+            player.connection.send(toPacket(serverToClient(), id, buf));
+        }
     }
     
     public static void sendToPlayers(Iterable<ServerPlayer> players, ResourceLocation id, FriendlyByteBuf buf) {
+        if (NetworkMetrics.isEnabled()) {
+            for (ServerPlayer player : players) {
+                NetworkMetrics.record(serverToClient(), true, id, player, buf.readableBytes());
+            }
+        }
+        if (PacketFragmenter.needsFragmenting(serverToClient(), buf)) {
+            ByteBuf data = PacketFragmenter.copy(serverToClient(), buf);
+            for (ServerPlayer player : players) {
+                PacketFragmenter.send(serverToClient(), player.connection.getConnection(), id, data);
+            }
+            return;
+        }
+        if (NetworkBatching.isBatched(id)) {
+            for (ServerPlayer player : players) {
+                PacketBundler.queue(player, id, buf);
+            }
+            return;
+        }
         Packet<?> packet = toPacket(serverToClient(), id, buf);
         for (ServerPlayer player : players) {
             player.connection.send(packet);
         }
     }
     
+    /**
+     * Sends the message to the players the entity is sent to, not including the entity itself.
+     */
+    public static void sendToTracking(Entity entity, ResourceLocation id, FriendlyByteBuf buf) {
+        sendToTargets(getTrackingPlayers(entity), id, buf);
+    }
+    
+    /**
+     * Sends the message to the players the entity is sent to, and to the entity itself if it is a player.
+     */
+    public static void sendToTrackingAndSelf(Entity entity, ResourceLocation id, FriendlyByteBuf buf) {
+        sendToTargets(getTrackingPlayersAndSelf(entity), id, buf);
+    }
+    
+    /**
+     * Sends the message to the players that have the chunk loaded on their client.
+     */
+    public static void sendToChunk(ServerLevel level, ChunkPos pos, ResourceLocation id, FriendlyByteBuf buf) {
+        sendToTargets(getPlayersWatching(level, pos), id, buf);
+    }
+    
+    /**
+     * Sends the message to the players of the level within the radius of the position.
+     */
+    public static void sendToNear(ServerLevel level, double x, double y, double z, double radius, ResourceLocation id, FriendlyByteBuf buf) {
+        sendToTargets(getPlayersNear(level, x, y, z, radius), id, buf);
+    }
+    
+    public static void sendToLevel(ServerLevel level, ResourceLocation id, FriendlyByteBuf buf) {
+        sendToTargets(level.players(), id, buf);
+    }
+    
+    private static void sendToTargets(Collection<ServerPlayer> players, ResourceLocation id, FriendlyByteBuf buf) {
+        if (!players.isEmpty()) {
+            sendToPlayers(players, id, buf);
+        }
+    }
+    
+    /**
+     * @return the players the entity is sent to, not including the entity itself, as an unmodifiable view of the
+     * tracking data of the level, which should only be used on the server thread
+     */
+    @ExpectPlatform
+    public static Collection<ServerPlayer> getTrackingPlayers(Entity entity) {
+        throw new AssertionError();
+    }
+    
+    public static Collection<ServerPlayer> getTrackingPlayersAndSelf(Entity entity) {
+        Collection<ServerPlayer> tracking = getTrackingPlayers(entity);
+        if (!(entity instanceof ServerPlayer)) return tracking;
+        List<ServerPlayer> players = new ArrayList<>(tracking.size() + 1);
+        players.add((ServerPlayer) entity);
+        players.addAll(tracking);
+        return players;
+    }
+    
+    /**
+     * @return the players that have the chunk loaded on their client, from the chunk tracking of the level
+     */
+    public static List<ServerPlayer> getPlayersWatching(ServerLevel level, ChunkPos pos) {
+        return level.getChunkSource().chunkMap.getPlayers(pos, false).collect(Collectors.toList());
+    }
+    
+    /**
+     * @return the players of the level within the radius of the position
+     */
+    public static List<ServerPlayer> getPlayersNear(ServerLevel level, double x, double y, double z, double radius) {
+        double radiusSqr = radius * radius;
+        Stream<ServerPlayer> candidates;
+        int viewDistance = level.getServer().getPlayerList().getViewDistance();
+        if (radius <= (viewDistance - 1) * 16) {
+            // Every player within the radius has the chunk at the position loaded
+            candidates = level.getChunkSource().chunkMap.getPlayers(new ChunkPos(Mth.floor(x) >> 4, Mth.floor(z) >> 4), false);
+        } else {
+            candidates = level.players().stream();
+        }
+        return candidates.filter(player -> player.distanceToSqr(x, y, z) <= radiusSqr).collect(Collectors.toList());
+    }
+    
     @Environment(EnvType.CLIENT)
     public static void sendToServer(ResourceLocation id, FriendlyByteBuf buf) {
-        Minecraft.getInstance().getConnection().send(toPacket(clientToServer(), id, buf));
+        if (NetworkMetrics.isEnabled()) {
+            NetworkMetrics.record(clientToServer(), true, id, null, buf.readableBytes());
+        }
+        if (PacketFragmenter.needsFragmenting(clientToServer(), buf)) {
+            PacketFragmenter.send(clientToServer(), Minecraft.getInstance().getConnection().getConnection(), id, PacketFragmenter.copy(clientToServer(), buf));
+        } else {
+            Minecraft.getInstance().getConnection().send(toPacket(clientToServer(), id, buf));
+        }
     }
     
     @Environment(EnvType.CLIENT)
@@ -0,0 +1,423 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.networking;
+
+import me.shedaniel.architectury.event.events.PlayerEvent;
+import me.shedaniel.architectury.event.events.TickEvent;
+import me.shedaniel.architectury.event.events.client.ClientTickEvent;
+import me.shedaniel.architectury.impl.networking.MainThreadHandoff;
+import me.shedaniel.architectury.impl.networking.PacketFragmenter;
+import me.shedaniel.architectury.impl.networking.RequestTracker;
+import me.shedaniel.architectury.platform.Platform;
+import me.shedaniel.architectury.utils.Env;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.entity.player.Player;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in traffic metrics of architectury messages, enabled with {@code -Darchitectury.networkMetrics=true}
+ * or {@link #setEnabled(boolean)}.
+ * <p>
+ * Messages and bytes are counted per message id and per player, by side and by whether they were sent or received,
+ * the bytes being the size of the payloads. {@link NetworkChannel}s also record how long their messages take to
+ * encode and decode. Counters are {@link LongAdder}s, so that network threads recording at once do not contend.
+ */
+public final class NetworkMetrics {
+    private static final int MAX_WINDOW_SECONDS = 60;
+    private static volatile boolean enabled = Boolean.getBoolean("architectury.networkMetrics");
+    /**
+     * Traffic by message id, indexed by {@link #index(NetworkManager.Side, boolean)}.
+     */
+    private static final List<Map<ResourceLocation, Traffic>> MESSAGES = createTrafficMaps();
+    /**
+     * Traffic by player uuid, indexed by {@link #index(NetworkManager.Side, boolean)}.
+     */
+    private static final List<Map<Object, Traffic>> PLAYERS = createTrafficMaps();
+    private static final Map<ResourceLocation, Histogram> ENCODE_LATENCY = new ConcurrentHashMap<>();
+    private static final Map<ResourceLocation, Histogram> DECODE_LATENCY = new ConcurrentHashMap<>();
+    /**
+     * Counters of every traffic taken once a second, newest last, guarded by itself.
+     */
+    private static final Deque<Snapshot> SNAPSHOTS = new ArrayDeque<>();
+    private static boolean initialized = false;
+    
+    static {
+        if (enabled) {
+            init();
+        }
+    }
+    
+    private NetworkMetrics() {}
+    
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    public static void setEnabled(boolean enabled) {
+        if (enabled) {
+            init();
+        }
+        NetworkMetrics.enabled = enabled;
+    }
+    
+    private static synchronized void init() {
+        if (initialized) return;
+        initialized = true;
+        TickEvent.SERVER_POST.register(server -> snapshot(System.nanoTime()));
+        PlayerEvent.PLAYER_QUIT.register(player -> {
+            for (Map<Object, Traffic> traffic : PLAYERS) {
+                traffic.remove(player.getUUID());
+            }
+        });
+        if (Platform.getEnvironment() == Env.CLIENT) {
+            initClient();
+        }
+    }
+    
+    @Environment(EnvType.CLIENT)
+    private static void initClient() {
+        // Snapshots are taken at most once a second, so they are also taken on a client connected to a remote server
+        ClientTickEvent.CLIENT_POST.register(minecraft -> snapshot(System.nanoTime()));
+    }
+    
+    public static void reset() {
+        for (int i = 0; i < MESSAGES.size(); i++) {
+            MESSAGES.get(i).clear();
+            PLAYERS.get(i).clear();
+        }
+        ENCODE_LATENCY.clear();
+        DECODE_LATENCY.clear();
+        synchronized (SNAPSHOTS) {
+            SNAPSHOTS.clear();
+        }
+    }
+    
+    @ApiStatus.Internal
+    public static void record(NetworkManager.Side side, boolean sent, ResourceLocation id, @Nullable Player player, int bytes) {
+        int index = index(side, sent);
+        getOrCreate(MESSAGES.get(index), id, id.toString(), side, sent).add(bytes);
+        if (player != null) {
+            getOrCreate(PLAYERS.get(index), player.getUUID(), player.getScoreboardName(), side, sent).add(bytes);
+        }
+    }
+    
+    @ApiStatus.Internal
+    public static void recordEncode(ResourceLocation id, long nanos) {
+        getHistogram(ENCODE_LATENCY, id).record(nanos);
+    }
+    
+    @ApiStatus.Internal
+    public static void recordDecode(ResourceLocation id, long nanos) {
+        getHistogram(DECODE_LATENCY, id).record(nanos);
+    }
+    
+    /**
+     * @return the traffic of messages with the id since the metrics were reset, or {@code null} if there was none
+     */
+    @Nullable
+    public static Traffic getTraffic(ResourceLocation id, NetworkManager.Side side, boolean sent) {
+        return MESSAGES.get(index(side, sent)).get(id);
+    }
+    
+    @Nullable
+    public static Histogram getEncodeLatency(ResourceLocation id) {
+        return ENCODE_LATENCY.get(id);
+    }
+    
+    @Nullable
+    public static Histogram getDecodeLatency(ResourceLocation id) {
+        return DECODE_LATENCY.get(id);
+    }
+    
+    /**
+     * @return the message ids with the most bytes sent or received during the window, of at most a minute
+     */
+    @NotNull
+    public static List<Talker> getTopMessages(long window, TimeUnit unit, int limit) {
+        return getTop(MESSAGES, window, unit, limit);
+    }
+    
+    /**
+     * @return the players with the most bytes sent to or received from during the window, of at most a minute
+     */
+    @NotNull
+    public static List<Talker> getTopPlayers(long window, TimeUnit unit, int limit) {
+        return getTop(PLAYERS, window, unit, limit);
+    }
+    
+    /**
+     * @return the number of messages, requests or transfers waiting in each of the queues of the networking
+     */
+    @NotNull
+    public static Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        depths.put("main thread handoff", MainThreadHandoff.getQueuedMessages());
+        depths.put("pending requests", RequestTracker.getPendingRequests());
+        depths.put("fragmented transfers", PacketFragmenter.getQueuedTransfers());
+        return depths;
+    }
+    
+    private static <K> Traffic getOrCreate(Map<K, Traffic> traffic, K key, String name, NetworkManager.Side side, boolean sent) {
+        // Looked up first, as computeIfAbsent locks even when the key is present
+        Traffic existing = traffic.get(key);
+        if (existing != null) return existing;
+        return traffic.computeIfAbsent(key, k -> new Traffic(name, side, sent));
+    }
+    
+    private static Histogram getHistogram(Map<ResourceLocation, Histogram> histograms, ResourceLocation id) {
+        Histogram existing = histograms.get(id);
+        if (existing != null) return existing;
+        return histograms.computeIfAbsent(id, k -> new Histogram());
+    }
+    
+    private static int index(NetworkManager.Side side, boolean sent) {
+        return side.ordinal() * 2 + (sent ? 1 : 0);
+    }
+    
+    private static <K> List<Map<K, Traffic>> createTrafficMaps() {
+        List<Map<K, Traffic>> maps = new ArrayList<>();
+        for (int i = 0; i < NetworkManager.Side.values().length * 2; i++) {
+            maps.add(new ConcurrentHashMap<>());
+        }
+        return maps;
+    }
+    
+    private static void snapshot(long now) {
+        synchronized (SNAPSHOTS) {
+            Snapshot last = SNAPSHOTS.peekLast();
+            if (last != null && now - last.time < TimeUnit.SECONDS.toNanos(1)) return;
+            Snapshot snapshot = new Snapshot(now);
+            for (int i = 0; i < MESSAGES.size(); i++) {
+                snapshot.add(MESSAGES.get(i));
+                snapshot.add(PLAYERS.get(i));
+            }
+            SNAPSHOTS.addLast(snapshot);
+            while (SNAPSHOTS.size() > MAX_WINDOW_SECONDS + 1) {
+                SNAPSHOTS.pollFirst();
+            }
+        }
+    }
+    
+    private static List<Talker> getTop(List<? extends Map<?, Traffic>> traffic, long window, TimeUnit unit, int limit) {
+        long now = System.nanoTime();
+        long start = now - unit.toNanos(window);
+        Snapshot baseline = null;
+        synchronized (SNAPSHOTS) {
+            // The newest snapshot taken before the window started, or else the oldest one
+            Iterator<Snapshot> iterator = SNAPSHOTS.descendingIterator();
+            while (iterator.hasNext()) {
+                baseline = iterator.next();
+                if (baseline.time <= start) break;
+            }
+        }
+        long since = baseline == null ? now : baseline.time;
+        List<Talker> talkers = new ArrayList<>();
+        for (Map<?, Traffic> map : traffic) {
+            for (Traffic current : map.values()) {
+                long[] before = baseline == null ? null : baseline.counters.get(current);
+                long messages = current.getMessages() - (before == null ? 0 : before[0]);
+                long bytes = current.getBytes() - (before == null ? 0 : before[1]);
+                if (messages > 0) {
+                    talkers.add(new Talker(current, messages, bytes, now - since));
+                }
+            }
+        }
+        talkers.sort(Comparator.comparingLong(Talker::getBytes).reversed());
+        return talkers.subList(0, Math.min(limit, talkers.size()));
+    }
+    
+    private static final class Snapshot {
+        private final long time;
+        private final Map<Traffic, long[]> counters = new IdentityHashMap<>();
+        
+        private Snapshot(long time) {
+            this.time = time;
+        }
+        
+        private void add(Map<?, Traffic> traffic) {
+            for (Traffic value : traffic.values()) {
+                counters.put(value, new long[]{value.getMessages(), value.getBytes()});
+            }
+        }
+    }
+    
+    public static final class Traffic {
+        private final String name;
+        private final NetworkManager.Side side;
+        private final boolean sent;
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        
+        private Traffic(String name, NetworkManager.Side side, boolean sent) {
+            this.name = name;
+            this.side = side;
+            this.sent = sent;
+        }
+        
+        private void add(int bytes) {
+            this.messages.increment();
+            this.bytes.add(bytes);
+        }
+        
+        /**
+         * @return the message id, or the name of the player
+         */
+        @NotNull
+        public String getName() {
+            return name;
+        }
+        
+        @NotNull
+        public NetworkManager.Side getSide() {
+            return side;
+        }
+        
+        /**
+         * @return whether the messages were sent from this side, rather than received
+         */
+        public boolean isSent() {
+            return sent;
+        }
+        
+        public long getMessages() {
+            return messages.sum();
+        }
+        
+        public long getBytes() {
+            return bytes.sum();
+        }
+    }
+    
+    public static final class Talker {
+        private final Traffic traffic;
+        private final long messages;
+        private final long bytes;
+        private final long nanos;
+        
+        private Talker(Traffic traffic, long messages, long bytes, long nanos) {
+            this.traffic = traffic;
+            this.messages = messages;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+        
+        /**
+         * @return the traffic since the metrics were reset
+         */
+        @NotNull
+        public Traffic getTraffic() {
+            return traffic;
+        }
+        
+        public long getMessages() {
+            return messages;
+        }
+        
+        public long getBytes() {
+            return bytes;
+        }
+        
+        /**
+         * @return the length of the window actually covered, shorter than requested if the metrics are more recent
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+    
+    /**
+     * Latencies in power of two buckets.
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = 40;
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        
+        private Histogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+        
+        private void record(long nanos) {
+            // Bucket i holds values below 2^i
+            buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)))].increment();
+            count.increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+        }
+        
+        public long getCount() {
+            return count.sum();
+        }
+        
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+        
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+        
+        /**
+         * @param percentile between {@code 0} and {@code 1}
+         * @return an upper bound of the percentile, at most twice as high as the actual value
+         */
+        public long getPercentileNanos(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            long target = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= target && seen > 0) {
+                    return Math.min(1L << i, getMaxNanos());
+                }
+            }
+            return getMaxNanos();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.networking;
+
+import me.shedaniel.architectury.impl.networking.RateLimiter;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Per player rate limits of client to server messages, set per message id with {@link #setLimit(ResourceLocation, RateLimit)}
+ * or per channel with {@link NetworkChannel#setRateLimit(RateLimit)}.
+ * <p>
+ * Limits are checked on the network thread before a message is decoded, a message received without a token is
+ * counted as a violation and handled by the limit's {@link RateLimit.Policy}.
+ */
+public final class NetworkRateLimits {
+    private NetworkRateLimits() {}
+    
+    @Nullable
+    public static RateLimit getLimit(ResourceLocation id) {
+        return RateLimiter.getLimit(id);
+    }
+    
+    /**
+     * Sets the limit of client to server messages with the id, or removes it if {@code null}.
+     */
+    public static void setLimit(ResourceLocation id, @Nullable RateLimit limit) {
+        RateLimiter.setLimit(id, limit);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.networking;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A token bucket limiting how many messages each player may send, see {@link NetworkRateLimits}.
+ * <p>
+ * Every player starts with {@code burst} tokens, receiving a message takes one, and tokens are refilled at
+ * {@code permitsPerSecond}. A limit set for several message ids shares its bucket between them.
+ */
+public final class RateLimit {
+    private final double permitsPerSecond;
+    private final int burst;
+    private final Policy policy;
+    private final LongAdder violations = new LongAdder();
+    
+    public RateLimit(double permitsPerSecond, int burst, Policy policy) {
+        if (!(permitsPerSecond > 0) || burst <= 0) throw new IllegalArgumentException("Rate and burst must be positive!");
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.policy = policy;
+    }
+    
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+    
+    public int getBurst() {
+        return burst;
+    }
+    
+    public Policy getPolicy() {
+        return policy;
+    }
+    
+    /**
+     * @return how many messages were received without a token, by all players
+     */
+    public long getViolations() {
+        return violations.sum();
+    }
+    
+    @ApiStatus.Internal
+    public void recordViolation() {
+        violations.increment();
+    }
+    
+    /**
+     * What to do with a message received without a token.
+     */
+    public enum Policy {
+        /**
+         * Drops the message.
+         */
+        DROP,
+        /**
+         * Handles the message, taking its token from the next refill, and stops reading from the player's connection
+         * until a token is refilled. Messages already read from the connection before it was paused are dropped.
+         */
+        THROTTLE,
+        /**
+         * Drops the message and disconnects the player.
+         */
+        DISCONNECT,
+    }
+}
@@ -69,7 +69,12 @@ public class EventHandlerImpl {
         CommandRegistrationCallback.EVENT.register((commandDispatcher, b) -> CommandRegistrationEvent.EVENT.invoker().register(commandDispatcher, b ? Commands.CommandSelection.DEDICATED : Commands.CommandSelection.INTEGRATED));
         
         UseItemCallback.EVENT.register((player, world, hand) -> InteractionEvent.RIGHT_CLICK_ITEM.invoker().click(player, hand));
-        UseBlockCallback.EVENT.register((player, world, hand, hitResult) -> InteractionEvent.RIGHT_CLICK_BLOCK.invoker().click(player, hand, hitResult.getBlockPos(), hitResult.getDirection()));
+        UseBlockCallback.EVENT.register((player, world, hand, hitResult) -> {
+            InteractionEvent.RightClickBlock invoker = InteractionEvent.RIGHT_CLICK_BLOCK_BY_BLOCK.hasKeyedListeners()
+                    ? InteractionEvent.RIGHT_CLICK_BLOCK_BY_BLOCK.invoker(world.getBlockState(hitResult.getBlockPos()).getBlock())
+                    : InteractionEvent.RIGHT_CLICK_BLOCK.invoker();
+            return invoker.click(player, hand, hitResult.getBlockPos(), hitResult.getDirection());
+        });
         AttackBlockCallback.EVENT.register((player, world, hand, pos, face) -> InteractionEvent.LEFT_CLICK_BLOCK.invoker().click(player, hand, pos, face));
     }
     
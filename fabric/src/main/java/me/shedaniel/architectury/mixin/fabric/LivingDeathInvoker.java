@@ -34,7 +34,7 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 public class LivingDeathInvoker {
     @Inject(method = "die", at = @At("HEAD"), cancellable = true)
     private void die(DamageSource source, CallbackInfo ci) {
-        if (EntityEvent.LIVING_DEATH.invoker().die((LivingEntity) (Object) this, source) == InteractionResult.FAIL) {
+        if (EntityEvent.LIVING_DEATH_BY_TYPE.invoker(((LivingEntity) (Object) this).getType()).die((LivingEntity) (Object) this, source) == InteractionResult.FAIL) {
             ci.cancel();
         }
     }
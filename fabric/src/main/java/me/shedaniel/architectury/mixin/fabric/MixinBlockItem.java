@@ -23,6 +23,7 @@ import me.shedaniel.architectury.event.events.EntityEvent;
 import net.minecraft.world.InteractionResult;
 import net.minecraft.world.item.BlockItem;
 import net.minecraft.world.item.context.BlockPlaceContext;
+import net.minecraft.world.level.block.state.BlockState;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
@@ -35,7 +36,9 @@ public abstract class MixinBlockItem {
                      target = "Lnet/minecraft/world/item/context/BlockPlaceContext;getClickedPos()Lnet/minecraft/core/BlockPos;"),
             cancellable = true)
     private void place(BlockPlaceContext context, CallbackInfoReturnable<InteractionResult> cir) {
-        InteractionResult result = EntityEvent.PLACE_BLOCK.invoker().placeBlock(context.getLevel(), context.getClickedPos(), context.getLevel().getBlockState(context.getClickedPos()), context.getPlayer());
+        if (EntityEvent.PLACE_BLOCK.isEmpty()) return;
+        BlockState state = context.getLevel().getBlockState(context.getClickedPos());
+        InteractionResult result = EntityEvent.PLACE_BLOCK_BY_BLOCK.invoker(state.getBlock()).placeBlock(context.getLevel(), context.getClickedPos(), state, context.getPlayer());
         if (result != InteractionResult.PASS) {
             cir.setReturnValue(result);
         }
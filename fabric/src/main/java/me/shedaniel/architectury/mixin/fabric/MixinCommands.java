@@ -38,6 +38,9 @@ public class MixinCommands {
               at = @At(value = "INVOKE", target = "Lcom/mojang/brigadier/CommandDispatcher;execute(Lcom/mojang/brigadier/StringReader;Ljava/lang/Object;)I", remap = false))
     private int performCommand(CommandDispatcher<CommandSourceStack> dispatcher, StringReader input, Object source) throws CommandSyntaxException {
         CommandSourceStack stack = (CommandSourceStack) source;
+        if (CommandPerformEvent.EVENT.isEmpty()) {
+            return dispatcher.execute(input, stack);
+        }
         ParseResults<CommandSourceStack> parse = dispatcher.parse(input, stack);
         CommandPerformEvent event = new CommandPerformEvent(parse, null);
         if (CommandPerformEvent.EVENT.invoker().act(event) != InteractionResult.PASS) {
@@ -42,10 +42,13 @@ public abstract class MixinItemEntity {
     @Inject(method = "playerTouch",
             at = @At(value = "INVOKE", target = "Lnet/minecraft/world/item/ItemStack;getCount()I"), cancellable = true)
     private void prePickup(Player player, CallbackInfo ci) {
-        cache = getItem().copy();
-        InteractionResult canPickUp = PlayerEvent.PICKUP_ITEM_PRE.invoker().canPickup(player, (ItemEntity) (Object) this, getItem());
-        if (canPickUp == InteractionResult.FAIL) {
-            ci.cancel();
+        // Only copy the stack if anyone is going to look at it after the pickup
+        cache = PlayerEvent.PICKUP_ITEM_POST.isEmpty() ? null : getItem().copy();
+        if (!PlayerEvent.PICKUP_ITEM_PRE.isEmpty()) {
+            InteractionResult canPickUp = PlayerEvent.PICKUP_ITEM_PRE_BY_ITEM.invoker(getItem().getItem()).canPickup(player, (ItemEntity) (Object) this, getItem());
+            if (canPickUp == InteractionResult.FAIL) {
+                ci.cancel();
+            }
         }
     }
     
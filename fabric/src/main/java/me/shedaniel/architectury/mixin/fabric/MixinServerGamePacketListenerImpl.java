@@ -53,6 +53,7 @@ public abstract class MixinServerGamePacketListenerImpl {
                      target = "Lnet/minecraft/server/players/PlayerList;broadcastMessage(Lnet/minecraft/network/chat/Component;Lnet/minecraft/network/chat/ChatType;Ljava/util/UUID;)V"),
             cancellable = true)
     private void handleChat(String message, CallbackInfo ci) {
+        if (ChatEvent.SERVER.isEmpty()) return;
         Component component = new TranslatableComponent("chat.type.text", this.player.getDisplayName(), message);
         InteractionResultHolder<Component> process = ChatEvent.SERVER.invoker().process(this.player, message, component);
         if (process.getResult() == InteractionResult.FAIL)
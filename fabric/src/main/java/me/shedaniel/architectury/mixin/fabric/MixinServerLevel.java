@@ -36,6 +36,7 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 public class MixinServerLevel {
     @Inject(method = "save", at = @At(value = "INVOKE", target = "Lnet/minecraft/server/level/ServerChunkCache;save(Z)V"))
     private void save(ProgressListener progressListener, boolean bl, boolean bl2, CallbackInfo ci) {
+        if (LifecycleEvent.SERVER_WORLD_SAVE.isEmpty()) return;
         LifecycleEvent.SERVER_WORLD_SAVE.invoker().act((ServerLevel) (Object) this);
     }
     
@@ -43,6 +44,7 @@ public class MixinServerLevel {
                                            target = "Lnet/minecraft/server/level/ServerLevel;getChunk(IILnet/minecraft/world/level/chunk/ChunkStatus;Z)Lnet/minecraft/world/level/chunk/ChunkAccess;"),
             cancellable = true)
     private void addEntity(Entity entity, CallbackInfoReturnable<Boolean> cir) {
+        if (EntityEvent.ADD.isEmpty()) return;
         if (EntityEvent.ADD.invoker().add(entity, (ServerLevel) (Object) this) == InteractionResult.FAIL) {
             cir.setReturnValue(false);
         }
@@ -50,6 +52,7 @@ public class MixinServerLevel {
     
     @Inject(method = "addPlayer", at = @At("HEAD"), cancellable = true)
     private void addPlayer(ServerPlayer serverPlayer, CallbackInfo ci) {
+        if (EntityEvent.ADD.isEmpty()) return;
         if (EntityEvent.ADD.invoker().add(serverPlayer, (ServerLevel) (Object) this) == InteractionResult.FAIL) {
             ci.cancel();
         }
@@ -58,6 +61,7 @@ public class MixinServerLevel {
     @Inject(method = "loadFromChunk", at = @At(value = "INVOKE", target = "Lnet/minecraft/server/level/ServerLevel;add(Lnet/minecraft/world/entity/Entity;)V"),
             cancellable = true)
     private void loadFromChunk(Entity entity, CallbackInfoReturnable<Boolean> cir) {
+        if (EntityEvent.ADD.isEmpty()) return;
         if (EntityEvent.ADD.invoker().add(entity, (ServerLevel) (Object) this) == InteractionResult.FAIL) {
             cir.setReturnValue(false);
         }
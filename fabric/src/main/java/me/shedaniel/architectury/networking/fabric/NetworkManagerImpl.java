@@ -19,6 +19,12 @@
 
 package me.shedaniel.architectury.networking.fabric;
 
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import me.shedaniel.architectury.mixin.fabric.ChunkMapAccessor;
+import me.shedaniel.architectury.mixin.fabric.TrackedEntityAccessor;
 import me.shedaniel.architectury.networking.NetworkManager;
 import me.shedaniel.architectury.networking.NetworkManager.NetworkReceiver;
 import me.shedaniel.architectury.utils.Env;
@@ -30,11 +36,17 @@ import net.fabricmc.fabric.api.network.ServerSidePacketRegistry;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.protocol.Packet;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ChunkMap;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.player.Player;
 
+import java.util.Collection;
+import java.util.Collections;
+
 public class NetworkManagerImpl {
-    public static void registerReceiver(NetworkManager.Side side, ResourceLocation id, NetworkReceiver receiver) {
+    public static void registerPlatformReceiver(NetworkManager.Side side, ResourceLocation id, NetworkReceiver receiver) {
         if (side == NetworkManager.Side.C2S) {
             registerC2SReceiver(id, receiver);
         } else if (side == NetworkManager.Side.S2C) {
@@ -71,15 +83,23 @@ public class NetworkManagerImpl {
     }
     
     public static Packet<?> toPacket(NetworkManager.Side side, ResourceLocation id, FriendlyByteBuf buf) {
+        // Fabric keeps the buffer in the packet, unpooled heap buffers are shared through a reference of the packet's own,
+        // which is left to the garbage collector, pooled or direct ones have to be returned so the packet gets a copy
+        boolean shared = buf.hasArray() && !(buf.alloc() instanceof PooledByteBufAllocator);
+        FriendlyByteBuf payload = new FriendlyByteBuf(shared ? buf.retainedDuplicate() : Unpooled.copiedBuffer(buf));
         if (side == NetworkManager.Side.C2S) {
-            return toC2SPacket(id, buf);
+            return toC2SPacket(id, payload);
         } else if (side == NetworkManager.Side.S2C) {
-            return toS2CPacket(id, buf);
+            return toS2CPacket(id, payload);
         }
         
         throw new IllegalArgumentException("Invalid side: " + side);
     }
     
+    public static ByteBufAllocator getPayloadAllocator() {
+        return UnpooledByteBufAllocator.DEFAULT;
+    }
+    
     public static boolean canServerReceive(ResourceLocation id) {
         return ClientSidePacketRegistry.INSTANCE.canServerReceive(id);
     }
@@ -88,6 +108,12 @@ public class NetworkManagerImpl {
         return ServerSidePacketRegistry.INSTANCE.canPlayerReceive(player, id);
     }
     
+    public static Collection<ServerPlayer> getTrackingPlayers(Entity entity) {
+        ChunkMap chunkMap = ((ServerLevel) entity.level).getChunkSource().chunkMap;
+        Object tracked = ((ChunkMapAccessor) chunkMap).getEntityMap().get(entity.getId());
+        return tracked == null ? Collections.emptySet() : Collections.unmodifiableSet(((TrackedEntityAccessor) tracked).getSeenBy());
+    }
+    
     @Environment(EnvType.CLIENT)
     private static Packet<?> toC2SPacket(ResourceLocation id, FriendlyByteBuf buf) {
         return ClientSidePacketRegistry.INSTANCE.toPacket(id, buf);
@@ -28,12 +28,12 @@ import net.minecraftforge.common.MinecraftForge;
 public class EventHandlerImpl {
     @OnlyIn(Dist.CLIENT)
     public static void registerClient() {
-        MinecraftForge.EVENT_BUS.register(EventHandlerImplClient.class);
+        EventHandlerImplClient.register();
         EventBuses.getModEventBus(ArchitecturyForge.MOD_ID).orElseThrow(() -> new IllegalStateException("Where is architectury?")).register(EventHandlerImplClient.ModBasedEventHandler.class);
     }
     
     public static void registerCommon() {
-        MinecraftForge.EVENT_BUS.register(EventHandlerImplCommon.class);
+        EventHandlerImplCommon.register();
         EventBuses.getModEventBus(ArchitecturyForge.MOD_ID).orElseThrow(() -> new IllegalStateException("Where is architectury?")).register(EventHandlerImplCommon.ModBasedEventHandler.class);
     }
     
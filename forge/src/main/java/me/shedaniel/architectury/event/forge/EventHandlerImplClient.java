@@ -43,12 +43,46 @@ import java.util.List;
 
 @OnlyIn(Dist.CLIENT)
 public class EventHandlerImplClient {
-    @SubscribeEvent
+    public static void register() {
+        ForgeEventBridge.bridge(ItemTooltipEvent.class, EventHandlerImplClient::event, TooltipEvent.ITEM);
+        ForgeEventBridge.bridge(net.minecraftforge.event.TickEvent.ClientTickEvent.class, EventHandlerImplClient::event, ClientTickEvent.CLIENT_PRE, ClientTickEvent.CLIENT_POST);
+        ForgeEventBridge.bridge(RenderGameOverlayEvent.Post.class, EventHandlerImplClient::event, GuiEvent.RENDER_HUD);
+        ForgeEventBridge.bridge(ClientPlayerNetworkEvent.LoggedInEvent.class, EventHandlerImplClient::event, ClientPlayerEvent.CLIENT_PLAYER_JOIN);
+        ForgeEventBridge.bridge(ClientPlayerNetworkEvent.LoggedOutEvent.class, EventHandlerImplClient::event, ClientPlayerEvent.CLIENT_PLAYER_QUIT);
+        ForgeEventBridge.bridge(ClientPlayerNetworkEvent.RespawnEvent.class, EventHandlerImplClient::event, ClientPlayerEvent.CLIENT_PLAYER_RESPAWN);
+        ForgeEventBridge.bridge(GuiScreenEvent.InitGuiEvent.Pre.class, EventHandlerImplClient::event, GuiEvent.INIT_PRE);
+        ForgeEventBridge.bridge(GuiScreenEvent.InitGuiEvent.Post.class, EventHandlerImplClient::event, GuiEvent.INIT_POST);
+        ForgeEventBridge.bridge(RenderGameOverlayEvent.Text.class, EventHandlerImplClient::event, GuiEvent.DEBUG_TEXT_LEFT, GuiEvent.DEBUG_TEXT_RIGHT);
+        ForgeEventBridge.bridge(net.minecraftforge.client.event.ClientChatEvent.class, EventHandlerImplClient::event, ClientChatEvent.CLIENT);
+        ForgeEventBridge.bridge(ClientChatReceivedEvent.class, EventHandlerImplClient::event, ClientChatEvent.CLIENT_RECEIVED);
+        ForgeEventBridge.bridge(WorldEvent.Save.class, EventHandlerImplClient::event, ClientLifecycleEvent.CLIENT_WORLD_LOAD);
+        ForgeEventBridge.bridge(GuiScreenEvent.DrawScreenEvent.Pre.class, EventHandlerImplClient::event, GuiEvent.RENDER_PRE);
+        ForgeEventBridge.bridge(GuiScreenEvent.DrawScreenEvent.Post.class, EventHandlerImplClient::event, GuiEvent.RENDER_POST);
+        ForgeEventBridge.bridge(PlayerInteractEvent.RightClickEmpty.class, EventHandlerImplClient::event, InteractionEvent.CLIENT_RIGHT_CLICK_AIR);
+        ForgeEventBridge.bridge(PlayerInteractEvent.LeftClickEmpty.class, EventHandlerImplClient::event, InteractionEvent.CLIENT_LEFT_CLICK_AIR);
+        ForgeEventBridge.bridge(RecipesUpdatedEvent.class, EventHandlerImplClient::event, RecipeUpdateEvent.EVENT);
+        ForgeEventBridge.bridge(RenderTooltipEvent.Pre.class, EventHandlerImplClient::event, TooltipEvent.RENDER_FORGE_PRE, TooltipEvent.RENDER_MODIFY_POSITION);
+        ForgeEventBridge.bridge(RenderTooltipEvent.Color.class, EventHandlerImplClient::event, TooltipEvent.RENDER_MODIFY_COLOR);
+        ForgeEventBridge.bridge(GuiScreenEvent.MouseScrollEvent.Pre.class, EventHandlerImplClient::event, ClientScreenInputEvent.MOUSE_SCROLLED_PRE);
+        ForgeEventBridge.bridge(GuiScreenEvent.MouseScrollEvent.Post.class, EventHandlerImplClient::event, ClientScreenInputEvent.MOUSE_SCROLLED_POST);
+        ForgeEventBridge.bridge(GuiScreenEvent.MouseClickedEvent.Pre.class, EventHandlerImplClient::event, ClientScreenInputEvent.MOUSE_CLICKED_PRE);
+        ForgeEventBridge.bridge(GuiScreenEvent.MouseClickedEvent.Post.class, EventHandlerImplClient::event, ClientScreenInputEvent.MOUSE_CLICKED_POST);
+        ForgeEventBridge.bridge(GuiScreenEvent.MouseDragEvent.Pre.class, EventHandlerImplClient::event, ClientScreenInputEvent.MOUSE_DRAGGED_PRE);
+        ForgeEventBridge.bridge(GuiScreenEvent.MouseDragEvent.Post.class, EventHandlerImplClient::event, ClientScreenInputEvent.MOUSE_DRAGGED_POST);
+        ForgeEventBridge.bridge(GuiScreenEvent.MouseReleasedEvent.Pre.class, EventHandlerImplClient::event, ClientScreenInputEvent.MOUSE_RELEASED_PRE);
+        ForgeEventBridge.bridge(GuiScreenEvent.MouseReleasedEvent.Post.class, EventHandlerImplClient::event, ClientScreenInputEvent.MOUSE_RELEASED_POST);
+        ForgeEventBridge.bridge(GuiScreenEvent.KeyboardCharTypedEvent.Pre.class, EventHandlerImplClient::event, ClientScreenInputEvent.CHAR_TYPED_PRE);
+        ForgeEventBridge.bridge(GuiScreenEvent.KeyboardCharTypedEvent.Post.class, EventHandlerImplClient::event, ClientScreenInputEvent.CHAR_TYPED_POST);
+        ForgeEventBridge.bridge(GuiScreenEvent.KeyboardKeyPressedEvent.Pre.class, EventHandlerImplClient::event, ClientScreenInputEvent.KEY_PRESSED_PRE);
+        ForgeEventBridge.bridge(GuiScreenEvent.KeyboardKeyPressedEvent.Post.class, EventHandlerImplClient::event, ClientScreenInputEvent.KEY_PRESSED_POST);
+        ForgeEventBridge.bridge(GuiScreenEvent.KeyboardKeyReleasedEvent.Pre.class, EventHandlerImplClient::event, ClientScreenInputEvent.KEY_RELEASED_PRE);
+        ForgeEventBridge.bridge(GuiScreenEvent.KeyboardKeyReleasedEvent.Post.class, EventHandlerImplClient::event, ClientScreenInputEvent.KEY_RELEASED_POST);
+    }
+    
     public static void event(ItemTooltipEvent event) {
         TooltipEvent.ITEM.invoker().append(event.getItemStack(), event.getToolTip(), event.getFlags());
     }
     
-    @SubscribeEvent
     public static void event(net.minecraftforge.event.TickEvent.ClientTickEvent event) {
         if (event.phase == net.minecraftforge.event.TickEvent.Phase.START)
             ClientTickEvent.CLIENT_PRE.invoker().tick(Minecraft.getInstance());
@@ -56,40 +90,33 @@ public class EventHandlerImplClient {
             ClientTickEvent.CLIENT_POST.invoker().tick(Minecraft.getInstance());
     }
     
-    @SubscribeEvent
     public static void event(RenderGameOverlayEvent.Post event) {
         if (event.getType() == RenderGameOverlayEvent.ElementType.ALL)
             GuiEvent.RENDER_HUD.invoker().renderHud(event.getMatrixStack(), event.getPartialTicks());
     }
     
-    @SubscribeEvent
     public static void event(ClientPlayerNetworkEvent.LoggedInEvent event) {
         ClientPlayerEvent.CLIENT_PLAYER_JOIN.invoker().join(event.getPlayer());
     }
     
-    @SubscribeEvent
     public static void event(ClientPlayerNetworkEvent.LoggedOutEvent event) {
         ClientPlayerEvent.CLIENT_PLAYER_QUIT.invoker().quit(event.getPlayer());
     }
     
-    @SubscribeEvent
     public static void event(ClientPlayerNetworkEvent.RespawnEvent event) {
         ClientPlayerEvent.CLIENT_PLAYER_RESPAWN.invoker().respawn(event.getOldPlayer(), event.getNewPlayer());
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.InitGuiEvent.Pre event) {
         if (GuiEvent.INIT_PRE.invoker().init(event.getGui(), event.getWidgetList(), (List<GuiEventListener>) event.getGui().children()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.InitGuiEvent.Post event) {
         GuiEvent.INIT_POST.invoker().init(event.getGui(), event.getWidgetList(), (List<GuiEventListener>) event.getGui().children());
     }
     
-    @SubscribeEvent
     public static void event(RenderGameOverlayEvent.Text event) {
         if (Minecraft.getInstance().options.renderDebug) {
             GuiEvent.DEBUG_TEXT_LEFT.invoker().gatherText(event.getLeft());
@@ -97,7 +124,6 @@ public class EventHandlerImplClient {
         }
     }
     
-    @SubscribeEvent
     public static void event(net.minecraftforge.client.event.ClientChatEvent event) {
         InteractionResultHolder<String> process = ClientChatEvent.CLIENT.invoker().process(event.getMessage());
         if (process.getObject() != null)
@@ -106,7 +132,6 @@ public class EventHandlerImplClient {
             event.setCanceled(true);
     }
     
-    @SubscribeEvent
     public static void event(ClientChatReceivedEvent event) {
         InteractionResultHolder<Component> process = ClientChatEvent.CLIENT_RECEIVED.invoker().process(event.getType(), event.getMessage(), event.getSenderUUID());
         if (process.getObject() != null)
@@ -115,7 +140,6 @@ public class EventHandlerImplClient {
             event.setCanceled(true);
     }
     
-    @SubscribeEvent
     public static void event(WorldEvent.Save event) {
         if (event.getWorld() instanceof ClientLevel) {
             ClientLevel world = (ClientLevel) event.getWorld();
@@ -123,29 +147,24 @@ public class EventHandlerImplClient {
         }
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.DrawScreenEvent.Pre event) {
         if (GuiEvent.RENDER_PRE.invoker().render(event.getGui(), event.getMatrixStack(), event.getMouseX(), event.getMouseY(), event.getRenderPartialTicks()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.DrawScreenEvent.Post event) {
         GuiEvent.RENDER_POST.invoker().render(event.getGui(), event.getMatrixStack(), event.getMouseX(), event.getMouseY(), event.getRenderPartialTicks());
     }
     
-    @SubscribeEvent
     public static void event(PlayerInteractEvent.RightClickEmpty event) {
         InteractionEvent.CLIENT_RIGHT_CLICK_AIR.invoker().click(event.getPlayer(), event.getHand());
     }
     
-    @SubscribeEvent
     public static void event(PlayerInteractEvent.LeftClickEmpty event) {
         InteractionEvent.CLIENT_LEFT_CLICK_AIR.invoker().click(event.getPlayer(), event.getHand());
     }
     
-    @SubscribeEvent
     public static void event(RecipesUpdatedEvent event) {
         RecipeUpdateEvent.EVENT.invoker().update(event.getRecipeManager());
     }
@@ -153,7 +172,6 @@ public class EventHandlerImplClient {
     private static final ThreadLocal<TooltipEventColorContextImpl> tooltipColorContext = ThreadLocal.withInitial(TooltipEventColorContextImpl::new);
     private static final ThreadLocal<TooltipEventPositionContextImpl> tooltipPositionContext = ThreadLocal.withInitial(TooltipEventPositionContextImpl::new);
     
-    @SubscribeEvent
     public static void event(RenderTooltipEvent.Pre event) {
         if (TooltipEvent.RENDER_FORGE_PRE.invoker().renderTooltip(event.getMatrixStack(), event.getLines(), event.getX(), event.getY()) == InteractionResult.FAIL) {
             event.setCanceled(true);
@@ -167,7 +185,6 @@ public class EventHandlerImplClient {
         event.setY(positionContext.getTooltipY());
     }
     
-    @SubscribeEvent
     public static void event(RenderTooltipEvent.Color event) {
         TooltipEventColorContextImpl colorContext = tooltipColorContext.get();
         colorContext.reset();
@@ -180,86 +197,72 @@ public class EventHandlerImplClient {
         event.setBorderStart(colorContext.getOutlineGradientTopColor());
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.MouseScrollEvent.Pre event) {
         if (ClientScreenInputEvent.MOUSE_SCROLLED_PRE.invoker().mouseScrolled(Minecraft.getInstance(), event.getGui(), event.getMouseX(), event.getMouseY(), event.getScrollDelta()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.MouseScrollEvent.Post event) {
         ClientScreenInputEvent.MOUSE_SCROLLED_POST.invoker().mouseScrolled(Minecraft.getInstance(), event.getGui(), event.getMouseX(), event.getMouseY(), event.getScrollDelta());
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.MouseClickedEvent.Pre event) {
         if (ClientScreenInputEvent.MOUSE_CLICKED_PRE.invoker().mouseClicked(Minecraft.getInstance(), event.getGui(), event.getMouseX(), event.getMouseY(), event.getButton()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.MouseClickedEvent.Post event) {
         ClientScreenInputEvent.MOUSE_CLICKED_POST.invoker().mouseClicked(Minecraft.getInstance(), event.getGui(), event.getMouseX(), event.getMouseY(), event.getButton());
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.MouseDragEvent.Pre event) {
         if (ClientScreenInputEvent.MOUSE_DRAGGED_PRE.invoker().mouseDragged(Minecraft.getInstance(), event.getGui(), event.getMouseX(), event.getMouseY(), event.getMouseButton(), event.getDragX(), event.getDragY()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.MouseDragEvent.Post event) {
         ClientScreenInputEvent.MOUSE_DRAGGED_POST.invoker().mouseDragged(Minecraft.getInstance(), event.getGui(), event.getMouseX(), event.getMouseY(), event.getMouseButton(), event.getDragX(), event.getDragY());
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.MouseReleasedEvent.Pre event) {
         if (ClientScreenInputEvent.MOUSE_RELEASED_PRE.invoker().mouseReleased(Minecraft.getInstance(), event.getGui(), event.getMouseX(), event.getMouseY(), event.getButton()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.MouseReleasedEvent.Post event) {
-        ClientScreenInputEvent.MOUSE_RELEASED_PRE.invoker().mouseReleased(Minecraft.getInstance(), event.getGui(), event.getMouseX(), event.getMouseY(), event.getButton());
+        ClientScreenInputEvent.MOUSE_RELEASED_POST.invoker().mouseReleased(Minecraft.getInstance(), event.getGui(), event.getMouseX(), event.getMouseY(), event.getButton());
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.KeyboardCharTypedEvent.Pre event) {
         if (ClientScreenInputEvent.CHAR_TYPED_PRE.invoker().charTyped(Minecraft.getInstance(), event.getGui(), event.getCodePoint(), event.getModifiers()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.KeyboardCharTypedEvent.Post event) {
         ClientScreenInputEvent.CHAR_TYPED_POST.invoker().charTyped(Minecraft.getInstance(), event.getGui(), event.getCodePoint(), event.getModifiers());
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.KeyboardKeyPressedEvent.Pre event) {
         if (ClientScreenInputEvent.KEY_PRESSED_PRE.invoker().keyPressed(Minecraft.getInstance(), event.getGui(), event.getKeyCode(), event.getScanCode(), event.getModifiers()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.KeyboardKeyPressedEvent.Post event) {
         ClientScreenInputEvent.KEY_PRESSED_POST.invoker().keyPressed(Minecraft.getInstance(), event.getGui(), event.getKeyCode(), event.getScanCode(), event.getModifiers());
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.KeyboardKeyReleasedEvent.Pre event) {
         if (ClientScreenInputEvent.KEY_RELEASED_PRE.invoker().keyReleased(Minecraft.getInstance(), event.getGui(), event.getKeyCode(), event.getScanCode(), event.getModifiers()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(GuiScreenEvent.KeyboardKeyReleasedEvent.Post event) {
         ClientScreenInputEvent.KEY_RELEASED_POST.invoker().keyReleased(Minecraft.getInstance(), event.getGui(), event.getKeyCode(), event.getScanCode(), event.getModifiers());
     }
@@ -49,13 +49,51 @@ import net.minecraftforge.event.world.ExplosionEvent.Detonate;
 import net.minecraftforge.event.world.ExplosionEvent.Start;
 import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.eventbus.api.Event;
-import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.LogicalSide;
 import net.minecraftforge.fml.event.server.*;
 import net.minecraftforge.fml.server.ServerLifecycleHooks;
 
 public class EventHandlerImplCommon {
-    @SubscribeEvent
+    public static void register() {
+        ForgeEventBridge.bridge(ServerTickEvent.class, EventHandlerImplCommon::event, TickEvent.SERVER_PRE, TickEvent.SERVER_POST);
+        ForgeEventBridge.bridge(WorldTickEvent.class, EventHandlerImplCommon::event, TickEvent.SERVER_WORLD_PRE, TickEvent.SERVER_WORLD_POST);
+        ForgeEventBridge.bridge(FMLServerStartingEvent.class, EventHandlerImplCommon::event, LifecycleEvent.SERVER_STARTING);
+        ForgeEventBridge.bridge(FMLServerStartedEvent.class, EventHandlerImplCommon::event, LifecycleEvent.SERVER_STARTED);
+        ForgeEventBridge.bridge(FMLServerStoppingEvent.class, EventHandlerImplCommon::event, LifecycleEvent.SERVER_STOPPING);
+        ForgeEventBridge.bridge(FMLServerStoppedEvent.class, EventHandlerImplCommon::event, LifecycleEvent.SERVER_STOPPED);
+        ForgeEventBridge.bridge(RegisterCommandsEvent.class, EventHandlerImplCommon::event, CommandRegistrationEvent.EVENT);
+        ForgeEventBridge.bridge(PlayerLoggedInEvent.class, EventHandlerImplCommon::event, PlayerEvent.PLAYER_JOIN);
+        ForgeEventBridge.bridge(PlayerLoggedOutEvent.class, EventHandlerImplCommon::event, PlayerEvent.PLAYER_QUIT);
+        ForgeEventBridge.bridge(PlayerRespawnEvent.class, EventHandlerImplCommon::event, PlayerEvent.PLAYER_RESPAWN);
+        ForgeEventBridge.bridge(CommandEvent.class, EventHandlerImplCommon::event, CommandPerformEvent.EVENT);
+        ForgeEventBridge.bridge(PlayerTickEvent.class, EventHandlerImplCommon::event, TickEvent.PLAYER_PRE, TickEvent.PLAYER_POST);
+        ForgeEventBridge.bridge(ServerChatEvent.class, EventHandlerImplCommon::event, ChatEvent.SERVER);
+        ForgeEventBridge.bridge(WorldEvent.Load.class, EventHandlerImplCommon::event, LifecycleEvent.SERVER_WORLD_LOAD);
+        ForgeEventBridge.bridge(WorldEvent.Unload.class, EventHandlerImplCommon::event, LifecycleEvent.SERVER_WORLD_UNLOAD);
+        ForgeEventBridge.bridge(WorldEvent.Save.class, EventHandlerImplCommon::event, LifecycleEvent.SERVER_WORLD_SAVE);
+        ForgeEventBridge.bridge(LivingDeathEvent.class, EventHandlerImplCommon::event, EntityEvent.LIVING_DEATH);
+        ForgeEventBridge.bridge(AdvancementEvent.class, EventHandlerImplCommon::event, PlayerEvent.PLAYER_ADVANCEMENT);
+        ForgeEventBridge.bridge(Clone.class, EventHandlerImplCommon::event, PlayerEvent.PLAYER_CLONE);
+        ForgeEventBridge.bridge(Start.class, EventHandlerImplCommon::event, ExplosionEvent.PRE);
+        ForgeEventBridge.bridge(Detonate.class, EventHandlerImplCommon::event, ExplosionEvent.DETONATE);
+        ForgeEventBridge.bridge(LivingAttackEvent.class, EventHandlerImplCommon::event, EntityEvent.LIVING_ATTACK);
+        ForgeEventBridge.bridge(EntityJoinWorldEvent.class, EventHandlerImplCommon::event, EntityEvent.ADD);
+        ForgeEventBridge.bridge(ItemCraftedEvent.class, EventHandlerImplCommon::event, PlayerEvent.CRAFT_ITEM);
+        ForgeEventBridge.bridge(ItemSmeltedEvent.class, EventHandlerImplCommon::event, PlayerEvent.SMELT_ITEM);
+        ForgeEventBridge.bridge(EntityItemPickupEvent.class, EventHandlerImplCommon::event, PlayerEvent.PICKUP_ITEM_PRE);
+        ForgeEventBridge.bridge(ItemPickupEvent.class, EventHandlerImplCommon::event, PlayerEvent.PICKUP_ITEM_POST);
+        ForgeEventBridge.bridge(ItemTossEvent.class, EventHandlerImplCommon::event, PlayerEvent.DROP_ITEM);
+        ForgeEventBridge.bridge(PlayerContainerEvent.Open.class, EventHandlerImplCommon::event, PlayerEvent.OPEN_MENU);
+        ForgeEventBridge.bridge(PlayerContainerEvent.Close.class, EventHandlerImplCommon::event, PlayerEvent.CLOSE_MENU);
+        ForgeEventBridge.bridge(PlayerInteractEvent.RightClickItem.class, EventHandlerImplCommon::event, InteractionEvent.RIGHT_CLICK_ITEM);
+        ForgeEventBridge.bridge(PlayerInteractEvent.RightClickBlock.class, EventHandlerImplCommon::event, InteractionEvent.RIGHT_CLICK_BLOCK);
+        ForgeEventBridge.bridge(PlayerInteractEvent.EntityInteract.class, EventHandlerImplCommon::event, InteractionEvent.INTERACT_ENTITY);
+        ForgeEventBridge.bridge(PlayerInteractEvent.LeftClickBlock.class, EventHandlerImplCommon::event, InteractionEvent.LEFT_CLICK_BLOCK);
+        ForgeEventBridge.bridge(BlockEvent.BreakEvent.class, EventHandlerImplCommon::event, PlayerEvent.BREAK_BLOCK);
+        ForgeEventBridge.bridge(BlockEvent.EntityPlaceEvent.class, EventHandlerImplCommon::event, EntityEvent.PLACE_BLOCK);
+        ForgeEventBridge.bridge(FMLServerAboutToStartEvent.class, EventHandlerImplCommon::event, LifecycleEvent.SERVER_BEFORE_START);
+    }
+    
     public static void event(ServerTickEvent event) {
         if (event.phase == Phase.START)
             TickEvent.SERVER_PRE.invoker().tick(ServerLifecycleHooks.getCurrentServer());
@@ -63,7 +101,6 @@ public class EventHandlerImplCommon {
             TickEvent.SERVER_POST.invoker().tick(ServerLifecycleHooks.getCurrentServer());
     }
     
-    @SubscribeEvent
     public static void event(WorldTickEvent event) {
         if (event.side == LogicalSide.SERVER) {
             if (event.phase == Phase.START)
@@ -73,48 +110,40 @@ public class EventHandlerImplCommon {
         }
     }
     
-    @SubscribeEvent
     public static void event(FMLServerStartingEvent event) {
         LifecycleEvent.SERVER_STARTING.invoker().stateChanged(event.getServer());
     }
     
-    @SubscribeEvent
     public static void event(FMLServerStartedEvent event) {
         LifecycleEvent.SERVER_STARTED.invoker().stateChanged(event.getServer());
     }
     
-    @SubscribeEvent
     public static void event(FMLServerStoppingEvent event) {
         LifecycleEvent.SERVER_STOPPING.invoker().stateChanged(event.getServer());
     }
     
-    @SubscribeEvent
     public static void event(FMLServerStoppedEvent event) {
         LifecycleEvent.SERVER_STOPPED.invoker().stateChanged(event.getServer());
     }
     
-    @SubscribeEvent
     public static void event(RegisterCommandsEvent event) {
         CommandRegistrationEvent.EVENT.invoker().register(event.getDispatcher(), event.getEnvironment());
     }
     
-    @SubscribeEvent
     public static void event(PlayerLoggedInEvent event) {
         PlayerEvent.PLAYER_JOIN.invoker().join((ServerPlayer) event.getPlayer());
     }
     
-    @SubscribeEvent
     public static void event(PlayerLoggedOutEvent event) {
         PlayerEvent.PLAYER_QUIT.invoker().quit((ServerPlayer) event.getPlayer());
     }
     
-    @SubscribeEvent
     public static void event(PlayerRespawnEvent event) {
         PlayerEvent.PLAYER_RESPAWN.invoker().respawn((ServerPlayer) event.getPlayer(), event.isEndConquered());
     }
     
-    @SubscribeEvent
     public static void event(CommandEvent event) {
+        if (CommandPerformEvent.EVENT.isEmpty()) return;
         CommandPerformEvent performEvent = new CommandPerformEvent(event.getParseResults(), event.getException());
         if (CommandPerformEvent.EVENT.invoker().act(performEvent) == InteractionResult.FAIL) {
             event.setCanceled(true);
@@ -123,7 +152,6 @@ public class EventHandlerImplCommon {
         event.setException(performEvent.getThrowable());
     }
     
-    @SubscribeEvent
     public static void event(PlayerTickEvent event) {
         if (event.phase == Phase.START) {
             TickEvent.PLAYER_PRE.invoker().tick(event.player);
@@ -132,7 +160,6 @@ public class EventHandlerImplCommon {
         }
     }
     
-    @SubscribeEvent
     public static void event(ServerChatEvent event) {
         InteractionResultHolder<Component> process = ChatEvent.SERVER.invoker().process(event.getPlayer(), event.getMessage(), event.getComponent());
         if (process.getObject() != null)
@@ -141,7 +168,6 @@ public class EventHandlerImplCommon {
             event.setCanceled(true);
     }
     
-    @SubscribeEvent
     public static void event(WorldEvent.Load event) {
         if (event.getWorld() instanceof ServerLevel) {
             ServerLevel world = (ServerLevel) event.getWorld();
@@ -149,7 +175,6 @@ public class EventHandlerImplCommon {
         }
     }
     
-    @SubscribeEvent
     public static void event(WorldEvent.Unload event) {
         if (event.getWorld() instanceof ServerLevel) {
             ServerLevel world = (ServerLevel) event.getWorld();
@@ -157,7 +182,6 @@ public class EventHandlerImplCommon {
         }
     }
     
-    @SubscribeEvent
     public static void event(WorldEvent.Save event) {
         if (event.getWorld() instanceof ServerLevel) {
             ServerLevel world = (ServerLevel) event.getWorld();
@@ -165,89 +189,74 @@ public class EventHandlerImplCommon {
         }
     }
     
-    @SubscribeEvent
     public static void event(LivingDeathEvent event) {
-        if (EntityEvent.LIVING_DEATH.invoker().die(event.getEntityLiving(), event.getSource()) == InteractionResult.FAIL) {
+        if (EntityEvent.LIVING_DEATH_BY_TYPE.invoker(event.getEntityLiving().getType()).die(event.getEntityLiving(), event.getSource()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(AdvancementEvent event) {
         if (event.getPlayer() instanceof ServerPlayer) {
             PlayerEvent.PLAYER_ADVANCEMENT.invoker().award((ServerPlayer) event.getPlayer(), event.getAdvancement());
         }
     }
     
-    @SubscribeEvent
     public static void event(Clone event) {
         if (event.getOriginal() instanceof ServerPlayer && event.getPlayer() instanceof ServerPlayer) {
             PlayerEvent.PLAYER_CLONE.invoker().clone((ServerPlayer) event.getOriginal(), (ServerPlayer) event.getPlayer(), !event.isWasDeath());
         }
     }
     
-    @SubscribeEvent
     public static void event(Start event) {
         if (ExplosionEvent.PRE.invoker().explode(event.getWorld(), event.getExplosion()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(Detonate event) {
         ExplosionEvent.DETONATE.invoker().explode(event.getWorld(), event.getExplosion(), event.getAffectedEntities());
     }
     
-    @SubscribeEvent
     public static void event(LivingAttackEvent event) {
         if (EntityEvent.LIVING_ATTACK.invoker().attack(event.getEntityLiving(), event.getSource(), event.getAmount()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(EntityJoinWorldEvent event) {
         if (EntityEvent.ADD.invoker().add(event.getEntity(), event.getWorld()) == InteractionResult.FAIL) {
             event.setCanceled(true);
         }
     }
     
-    @SubscribeEvent
     public static void event(ItemCraftedEvent event) {
         PlayerEvent.CRAFT_ITEM.invoker().craft(event.getPlayer(), event.getCrafting(), event.getInventory());
     }
     
-    @SubscribeEvent
     public static void event(ItemSmeltedEvent event) {
         PlayerEvent.SMELT_ITEM.invoker().smelt(event.getPlayer(), event.getSmelting());
     }
     
-    @SubscribeEvent
     public static void event(EntityItemPickupEvent event) {
-        PlayerEvent.PICKUP_ITEM_PRE.invoker().canPickup(event.getPlayer(), event.getItem(), event.getItem().getItem());
+        PlayerEvent.PICKUP_ITEM_PRE_BY_ITEM.invoker(event.getItem().getItem().getItem()).canPickup(event.getPlayer(), event.getItem(), event.getItem().getItem());
     }
     
-    @SubscribeEvent
     public static void event(ItemPickupEvent event) {
         PlayerEvent.PICKUP_ITEM_POST.invoker().pickup(event.getPlayer(), event.getOriginalEntity(), event.getStack());
     }
     
-    @SubscribeEvent
     public static void event(ItemTossEvent event) {
         PlayerEvent.DROP_ITEM.invoker().drop(event.getPlayer(), event.getEntityItem());
     }
     
-    @SubscribeEvent
     public static void event(PlayerContainerEvent.Open event) {
         PlayerEvent.OPEN_MENU.invoker().open(event.getPlayer(), event.getContainer());
     }
     
-    @SubscribeEvent
     public static void event(PlayerContainerEvent.Close event) {
         PlayerEvent.CLOSE_MENU.invoker().close(event.getPlayer(), event.getContainer());
     }
     
-    @SubscribeEvent
     public static void event(PlayerInteractEvent.RightClickItem event) {
         InteractionResultHolder<ItemStack> result = InteractionEvent.RIGHT_CLICK_ITEM.invoker().click(event.getPlayer(), event.getHand());
         if (result.getResult() != InteractionResult.PASS) {
@@ -256,9 +265,11 @@ public class EventHandlerImplCommon {
         }
     }
     
-    @SubscribeEvent
     public static void event(PlayerInteractEvent.RightClickBlock event) {
-        InteractionResult result = InteractionEvent.RIGHT_CLICK_BLOCK.invoker().click(event.getPlayer(), event.getHand(), event.getPos(), event.getFace());
+        InteractionEvent.RightClickBlock invoker = InteractionEvent.RIGHT_CLICK_BLOCK_BY_BLOCK.hasKeyedListeners()
+                ? InteractionEvent.RIGHT_CLICK_BLOCK_BY_BLOCK.invoker(event.getWorld().getBlockState(event.getPos()).getBlock())
+                : InteractionEvent.RIGHT_CLICK_BLOCK.invoker();
+        InteractionResult result = invoker.click(event.getPlayer(), event.getHand(), event.getPos(), event.getFace());
         if (result != InteractionResult.PASS) {
             event.setCanceled(true);
             event.setCancellationResult(result);
@@ -267,7 +278,6 @@ public class EventHandlerImplCommon {
         }
     }
     
-    @SubscribeEvent
     public static void event(PlayerInteractEvent.EntityInteract event) {
         InteractionResult result = InteractionEvent.INTERACT_ENTITY.invoker().interact(event.getPlayer(), event.getTarget(), event.getHand());
         if (result != InteractionResult.PASS) {
@@ -276,7 +286,6 @@ public class EventHandlerImplCommon {
         }
     }
     
-    @SubscribeEvent
     public static void event(PlayerInteractEvent.LeftClickBlock event) {
         InteractionResult result = InteractionEvent.LEFT_CLICK_BLOCK.invoker().click(event.getPlayer(), event.getHand(), event.getPos(), event.getFace());
         if (result != InteractionResult.PASS) {
@@ -287,10 +296,9 @@ public class EventHandlerImplCommon {
         }
     }
     
-    @SubscribeEvent
     public static void event(BlockEvent.BreakEvent event) {
-        if (event.getPlayer() instanceof ServerPlayer && event.getWorld() instanceof Level) {
-            InteractionResult result = PlayerEvent.BREAK_BLOCK.invoker().breakBlock((Level) event.getWorld(), event.getPos(), event.getState(), (ServerPlayer) event.getPlayer(), new IntValue() {
+        if (!PlayerEvent.BREAK_BLOCK.isEmpty() && event.getPlayer() instanceof ServerPlayer && event.getWorld() instanceof Level) {
+            InteractionResult result = PlayerEvent.BREAK_BLOCK_BY_BLOCK.invoker(event.getState().getBlock()).breakBlock((Level) event.getWorld(), event.getPos(), event.getState(), (ServerPlayer) event.getPlayer(), new IntValue() {
                 @Override
                 public int getAsInt() {
                     return event.getExpToDrop();
@@ -307,17 +315,15 @@ public class EventHandlerImplCommon {
         }
     }
     
-    @SubscribeEvent
     public static void event(BlockEvent.EntityPlaceEvent event) {
         if (event.getWorld() instanceof Level) {
-            InteractionResult result = EntityEvent.PLACE_BLOCK.invoker().placeBlock((Level) event.getWorld(), event.getPos(), event.getState(), event.getEntity());
+            InteractionResult result = EntityEvent.PLACE_BLOCK_BY_BLOCK.invoker(event.getState().getBlock()).placeBlock((Level) event.getWorld(), event.getPos(), event.getState(), event.getEntity());
             if (result != InteractionResult.PASS) {
                 event.setCanceled(true);
             }
         }
     }
     
-    @SubscribeEvent
     public static void event(FMLServerAboutToStartEvent event) {
         LifecycleEvent.SERVER_BEFORE_START.invoker().stateChanged(event.getServer());
     }
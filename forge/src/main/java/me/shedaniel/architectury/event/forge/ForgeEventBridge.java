@@ -0,0 +1,61 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.event.forge;
+
+import me.shedaniel.architectury.event.Event;
+import me.shedaniel.architectury.event.EventFactory;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.eventbus.api.EventPriority;
+
+import java.util.function.Consumer;
+
+/**
+ * Forwards a forge event to architectury events, only listening on {@link MinecraftForge#EVENT_BUS}
+ * while at least one of the architectury events has listeners.
+ */
+public final class ForgeEventBridge<E extends net.minecraftforge.eventbus.api.Event> {
+    private final Class<E> type;
+    private final Consumer<E> handler;
+    private int active;
+    private boolean attached;
+    
+    private ForgeEventBridge(Class<E> type, Consumer<E> handler) {
+        this.type = type;
+        this.handler = handler;
+    }
+    
+    public static <E extends net.minecraftforge.eventbus.api.Event> void bridge(Class<E> type, Consumer<E> handler, Event<?>... events) {
+        ForgeEventBridge<E> bridge = new ForgeEventBridge<>(type, handler);
+        for (Event<?> event : events) {
+            EventFactory.addActivityListener(event, bridge::update);
+        }
+    }
+    
+    private synchronized void update(boolean active) {
+        this.active += active ? 1 : -1;
+        if (this.active > 0 && !attached) {
+            attached = true;
+            MinecraftForge.EVENT_BUS.addListener(EventPriority.NORMAL, false, type, handler);
+        } else if (this.active == 0 && attached) {
+            attached = false;
+            MinecraftForge.EVENT_BUS.unregister(handler);
+        }
+    }
+}
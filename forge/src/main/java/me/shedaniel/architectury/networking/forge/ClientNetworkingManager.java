@@ -19,8 +19,12 @@
 
 package me.shedaniel.architectury.networking.forge;
 
+import io.netty.buffer.Unpooled;
 import me.shedaniel.architectury.networking.NetworkManager;
+import me.shedaniel.architectury.networking.NetworkManager.NetworkReceiver;
+import me.shedaniel.architectury.networking.NetworkManager.PacketContext;
 import net.minecraft.client.Minecraft;
+import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.entity.player.Player;
 import net.minecraftforge.api.distmarker.Dist;
@@ -28,30 +32,134 @@ import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.network.NetworkEvent;
+import org.jetbrains.annotations.Nullable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
-import static me.shedaniel.architectury.networking.forge.NetworkManagerImpl.C2S;
-import static me.shedaniel.architectury.networking.forge.NetworkManagerImpl.SYNC_IDS;
+import static me.shedaniel.architectury.networking.forge.NetworkManagerImpl.*;
 
 @OnlyIn(Dist.CLIENT)
 public class ClientNetworkingManager {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final int MAX_PENDING = 4096;
+    /**
+     * Packets numbered by the server that arrived before its numbering, which is only sent once the player has logged in.
+     * They are held in order until then, {@code null} once the numbering has arrived.
+     */
+    private static List<PendingPacket> pending = new ArrayList<>();
+    
     public static void initClient() {
-        NetworkManagerImpl.CHANNEL.addListener(NetworkManagerImpl.createPacketHandler(NetworkEvent.ServerCustomPayloadEvent.class, NetworkManagerImpl.S2C));
-        MinecraftForge.EVENT_BUS.<ClientPlayerNetworkEvent.LoggedOutEvent>addListener(event -> NetworkManagerImpl.serverReceivables.clear());
+        NetworkManagerImpl.CHANNEL.addListener(NetworkManagerImpl.createPacketHandler(NetworkEvent.ServerCustomPayloadEvent.class, ClientNetworkingManager::readS2CReceiver));
+        MinecraftForge.EVENT_BUS.<ClientPlayerNetworkEvent.LoggedOutEvent>addListener(event -> {
+            REMOTE_C2S.clear();
+            REMOTE_S2C.clear();
+            resetPending();
+        });
         
         NetworkManagerImpl.registerS2CReceiver(SYNC_IDS, (buffer, context) -> {
-            Set<ResourceLocation> receivables = NetworkManagerImpl.serverReceivables;
-            int size = buffer.readInt();
-            receivables.clear();
-            for (int i = 0; i < size; i++) {
-                receivables.add(buffer.readResourceLocation());
-            }
-            NetworkManager.sendToServer(SYNC_IDS, NetworkManagerImpl.sendSyncPacket(C2S));
+            REMOTE_C2S.clear();
+            REMOTE_C2S.putAll(0, readIds(buffer), id -> null);
+            REMOTE_S2C.clear();
+            REMOTE_S2C.putAll(0, readIds(buffer), S2C::get);
+            receivePending();
+            
+            FriendlyByteBuf packetBuffer = new FriendlyByteBuf(Unpooled.buffer());
+            writeIds(packetBuffer, S2C.keySet().toArray(new ResourceLocation[0]));
+            NetworkManager.sendToServer(SYNC_IDS, packetBuffer);
         });
+        NetworkManagerImpl.registerS2CReceiver(DEFINE_IDS, (buffer, context) -> {
+            int start = buffer.readVarInt();
+            REMOTE_S2C.putAll(start, readIds(buffer), S2C::get);
+        });
+    }
+    
+    private static NetworkReceiver readS2CReceiver(FriendlyByteBuf buffer) {
+        int index = buffer.readVarInt() - 1;
+        if (index == -1) return S2C.get(buffer.readResourceLocation());
+        synchronized (ClientNetworkingManager.class) {
+            if (pending != null) {
+                // Even if the index is known from an announcement, so that the packets are received in order
+                return (buf, context) -> hold(index, buf, context);
+            }
+        }
+        NetworkReceiver receiver = getS2CReceiver(index);
+        if (receiver == null) {
+            LOGGER.warn("Received a packet with unknown id number {}, the server did not announce it", index);
+        }
+        return receiver;
+    }
+    
+    private static synchronized void hold(int index, FriendlyByteBuf buf, PacketContext context) {
+        if (pending == null) {
+            // The numbering arrived in the meantime
+            NetworkReceiver receiver = getS2CReceiver(index);
+            if (receiver == null) {
+                LOGGER.warn("Dropping a packet with id number {}, which is not in the numbering sent by the server", index);
+            } else {
+                receiver.receive(buf, context);
+            }
+        } else if (pending.size() >= MAX_PENDING) {
+            LOGGER.warn("Dropping a packet with id number {}, more than {} packets arrived before the server sent its id numbering", index, MAX_PENDING);
+        } else {
+            // The incoming buffer is only valid while it is being received
+            pending.add(new PendingPacket(index, new FriendlyByteBuf(Unpooled.copiedBuffer(buf)), context));
+        }
+    }
+    
+    /**
+     * Receives the packets that arrived before the numbering, in the order they arrived.
+     */
+    private static void receivePending() {
+        List<PendingPacket> packets;
+        synchronized (ClientNetworkingManager.class) {
+            packets = pending;
+            pending = null;
+        }
+        if (packets == null) return;
+        for (PendingPacket packet : packets) {
+            NetworkReceiver receiver = getS2CReceiver(packet.index);
+            if (receiver == null) {
+                LOGGER.warn("Dropping a packet with id number {}, which is not in the numbering sent by the server", packet.index);
+            } else {
+                receiver.receive(packet.buffer, packet.context);
+            }
+        }
+    }
+    
+    /**
+     * Holds packets again until the numbering of the next server arrives.
+     */
+    private static synchronized void resetPending() {
+        pending = new ArrayList<>();
+    }
+    
+    @Nullable
+    private static NetworkReceiver getS2CReceiver(int index) {
+        NetworkReceiver receiver = REMOTE_S2C.get(index);
+        if (receiver == null) {
+            // Registered after the numbering was received
+            ResourceLocation id = REMOTE_S2C.getId(index);
+            return id == null ? null : S2C.get(id);
+        }
+        return receiver;
     }
     
     public static Player getClientPlayer() {
         return Minecraft.getInstance().player;
     }
-}
\ No newline at end of file
+    
+    private static final class PendingPacket {
+        private final int index;
+        private final FriendlyByteBuf buffer;
+        private final PacketContext context;
+        
+        private PendingPacket(int index, FriendlyByteBuf buffer, PacketContext context) {
+            this.index = index;
+            this.buffer = buffer;
+            this.context = context;
+        }
+    }
+}
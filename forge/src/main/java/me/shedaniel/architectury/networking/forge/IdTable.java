@@ -0,0 +1,131 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.networking.forge;
+
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Append-only numbering of packet identifiers, the index of an identifier is written as a varint in place of the identifier itself.
+ * Reads are lock-free, writes copy the backing array.
+ */
+final class IdTable<V> {
+    private static final Entry<?>[] EMPTY = new Entry[0];
+    private final Map<ResourceLocation, Integer> indices = new ConcurrentHashMap<>();
+    @SuppressWarnings("unchecked")
+    private volatile Entry<V>[] entries = (Entry<V>[]) EMPTY;
+    
+    /**
+     * @return the index of the identifier, or {@code -1} if it is not numbered
+     */
+    int indexOf(ResourceLocation id) {
+        Integer index = indices.get(id);
+        return index == null ? -1 : index;
+    }
+    
+    @Nullable
+    ResourceLocation getId(int index) {
+        Entry<V> entry = getEntry(index);
+        return entry == null ? null : entry.id;
+    }
+    
+    @Nullable
+    V get(int index) {
+        Entry<V> entry = getEntry(index);
+        return entry == null ? null : entry.value;
+    }
+    
+    @Nullable
+    V get(ResourceLocation id) {
+        return get(indexOf(id));
+    }
+    
+    @Nullable
+    private Entry<V> getEntry(int index) {
+        Entry<V>[] entries = this.entries;
+        return index >= 0 && index < entries.length ? entries[index] : null;
+    }
+    
+    ResourceLocation[] getIds() {
+        Entry<V>[] entries = this.entries;
+        ResourceLocation[] ids = new ResourceLocation[entries.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = entries[i] == null ? null : entries[i].id;
+        }
+        return ids;
+    }
+    
+    /**
+     * Numbers the identifier if it is new, or replaces the value of the existing entry.
+     *
+     * @return the index of the identifier
+     */
+    synchronized int put(ResourceLocation id, @Nullable V value) {
+        int index = indexOf(id);
+        if (index == -1) {
+            index = entries.length;
+        }
+        set(index, id, value);
+        return index;
+    }
+    
+    /**
+     * Mirrors a range of identifiers numbered by the remote side, gaps left by out of order updates are filled later.
+     */
+    synchronized void putAll(int start, ResourceLocation[] ids, Function<ResourceLocation, V> values) {
+        for (int i = 0; i < ids.length; i++) {
+            ResourceLocation id = ids[i];
+            set(start + i, id, values.apply(id));
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    synchronized void clear() {
+        indices.clear();
+        entries = (Entry<V>[]) EMPTY;
+    }
+    
+    private void set(int index, ResourceLocation id, @Nullable V value) {
+        Entry<V>[] entries = Arrays.copyOf(this.entries, Math.max(this.entries.length, index + 1));
+        Entry<V> previous = entries[index];
+        if (previous != null && !previous.id.equals(id)) {
+            indices.remove(previous.id, index);
+        }
+        entries[index] = new Entry<>(id, value);
+        this.entries = entries;
+        indices.put(id, index);
+    }
+    
+    private static final class Entry<V> {
+        private final ResourceLocation id;
+        @Nullable
+        private final V value;
+        
+        private Entry(ResourceLocation id, @Nullable V value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+}
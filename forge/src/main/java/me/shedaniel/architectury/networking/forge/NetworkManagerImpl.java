@@ -21,34 +21,46 @@ package me.shedaniel.architectury.networking.forge;
 
 
 import com.google.common.collect.*;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import me.shedaniel.architectury.mixin.forge.ChunkMapAccessor;
+import me.shedaniel.architectury.mixin.forge.TrackedEntityAccessor;
 import me.shedaniel.architectury.networking.NetworkManager;
 import me.shedaniel.architectury.networking.NetworkManager.NetworkReceiver;
 import me.shedaniel.architectury.utils.Env;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.protocol.Packet;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ChunkMap;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.player.Player;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.fml.DistExecutor;
 import net.minecraftforge.fml.LogicalSide;
 import net.minecraftforge.fml.network.NetworkDirection;
 import net.minecraftforge.fml.network.NetworkEvent;
 import net.minecraftforge.fml.network.NetworkRegistry;
 import net.minecraftforge.fml.network.event.EventNetworkChannel;
+import net.minecraftforge.fml.server.ServerLifecycleHooks;
 import org.apache.commons.lang3.tuple.Pair;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class NetworkManagerImpl {
-    public static void registerReceiver(NetworkManager.Side side, ResourceLocation id, NetworkReceiver receiver) {
+    public static void registerPlatformReceiver(NetworkManager.Side side, ResourceLocation id, NetworkReceiver receiver) {
         if (side == NetworkManager.Side.C2S) {
             registerC2SReceiver(id, receiver);
         } else if (side == NetworkManager.Side.S2C) {
@@ -57,46 +69,82 @@ public class NetworkManagerImpl {
     }
     
     public static Packet<?> toPacket(NetworkManager.Side side, ResourceLocation id, FriendlyByteBuf buffer) {
-        FriendlyByteBuf packetBuffer = new FriendlyByteBuf(Unpooled.buffer());
-        packetBuffer.writeResourceLocation(id);
-        packetBuffer.writeBytes(buffer);
+        int index = side == NetworkManager.Side.C2S ? REMOTE_C2S.indexOf(id) : getS2CIndex(id);
+        FriendlyByteBuf packetBuffer;
+        if (index != -1) {
+            packetBuffer = new FriendlyByteBuf(Unpooled.buffer(5 + buffer.readableBytes()));
+            packetBuffer.writeVarInt(index + 1);
+        } else {
+            // Identifiers are ascii, so their length in chars is their length in bytes, plus up to 5 bytes for the length prefix
+            String idString = id.toString();
+            packetBuffer = new FriendlyByteBuf(Unpooled.buffer(1 + idString.length() + 5 + buffer.readableBytes()));
+            packetBuffer.writeVarInt(0);
+            packetBuffer.writeResourceLocation(id);
+        }
+        packetBuffer.writeBytes(buffer, buffer.readerIndex(), buffer.readableBytes());
         return (side == NetworkManager.Side.C2S ? NetworkDirection.PLAY_TO_SERVER : NetworkDirection.PLAY_TO_CLIENT).buildPacket(Pair.of(packetBuffer, 0), CHANNEL_ID).getThis();
     }
     
+    /**
+     * Payloads are copied into the framed packet buffer, so they are pooled.
+     */
+    public static ByteBufAllocator getPayloadAllocator() {
+        return PooledByteBufAllocator.DEFAULT;
+    }
+    
     private static final ResourceLocation CHANNEL_ID = new ResourceLocation("architectury:network");
+    private static final String CHANNEL_VERSION = "2";
     static final ResourceLocation SYNC_IDS = new ResourceLocation("architectury:sync_ids");
-    static final EventNetworkChannel CHANNEL = NetworkRegistry.newEventChannel(CHANNEL_ID, () -> "1", version -> true, version -> true);
-    static final Map<ResourceLocation, NetworkReceiver> S2C = Maps.newHashMap();
-    static final Map<ResourceLocation, NetworkReceiver> C2S = Maps.newHashMap();
-    static final Set<ResourceLocation> serverReceivables = Sets.newHashSet();
+    static final ResourceLocation DEFINE_IDS = new ResourceLocation("architectury:define_ids");
+    static final EventNetworkChannel CHANNEL = NetworkRegistry.newEventChannel(CHANNEL_ID, () -> CHANNEL_VERSION, NetworkManagerImpl::isCompatible, NetworkManagerImpl::isCompatible);
+    static final Map<ResourceLocation, NetworkReceiver> S2C = Maps.newConcurrentMap();
+    /**
+     * Receivers on the server, numbered in registration order; the numbering is sent to clients when they join.
+     */
+    static final IdTable<NetworkReceiver> C2S = new IdTable<>();
+    /**
+     * Identifiers sent by the server, numbered on first use and announced to every connected client.
+     * Packets are built once for all of their recipients, so the server dictates the numbering for both directions.
+     */
+    private static final IdTable<Void> S2C_IDS = new IdTable<>();
+    /**
+     * The client's view of {@link #C2S}, an identifier is receivable by the server if it is numbered.
+     */
+    static final IdTable<Void> REMOTE_C2S = new IdTable<>();
+    /**
+     * The client's view of {@link #S2C_IDS}, resolved against the client's receivers.
+     */
+    static final IdTable<NetworkReceiver> REMOTE_S2C = new IdTable<>();
     private static final Multimap<Player, ResourceLocation> clientReceivables = Multimaps.newMultimap(Maps.newHashMap(), Sets::newHashSet);
     
     static {
-        CHANNEL.addListener(createPacketHandler(NetworkEvent.ClientCustomPayloadEvent.class, C2S));
+        CHANNEL.addListener(createPacketHandler(NetworkEvent.ClientCustomPayloadEvent.class, NetworkManagerImpl::readC2SReceiver));
         
         DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> ClientNetworkingManager::initClient);
         
-        MinecraftForge.EVENT_BUS.<PlayerEvent.PlayerLoggedInEvent>addListener(event -> NetworkManager.sendToPlayer((ServerPlayer) event.getPlayer(), SYNC_IDS, sendSyncPacket(C2S)));
+        // Sent ahead of other login listeners, which may already send packets using numbered identifiers
+        MinecraftForge.EVENT_BUS.<PlayerEvent.PlayerLoggedInEvent>addListener(EventPriority.HIGHEST, event -> NetworkManager.sendToPlayer((ServerPlayer) event.getPlayer(), SYNC_IDS, sendSyncPacket()));
         MinecraftForge.EVENT_BUS.<PlayerEvent.PlayerLoggedOutEvent>addListener(event -> clientReceivables.removeAll(event.getPlayer()));
         
         registerC2SReceiver(SYNC_IDS, (buffer, context) -> {
             Set<ResourceLocation> receivables = (Set<ResourceLocation>) clientReceivables.get(context.getPlayer());
-            int size = buffer.readInt();
             receivables.clear();
-            for (int i = 0; i < size; i++) {
-                receivables.add(buffer.readResourceLocation());
-            }
+            Collections.addAll(receivables, readIds(buffer));
         });
     }
     
-    static <T extends NetworkEvent> Consumer<T> createPacketHandler(Class<T> clazz, Map<ResourceLocation, NetworkReceiver> map) {
+    private static boolean isCompatible(String version) {
+        return CHANNEL_VERSION.equals(version) || NetworkRegistry.ABSENT.equals(version) || NetworkRegistry.ACCEPTVANILLA.equals(version);
+    }
+    
+    static <T extends NetworkEvent> Consumer<T> createPacketHandler(Class<T> clazz, Function<FriendlyByteBuf, NetworkReceiver> receiverReader) {
         return event -> {
             if (event.getClass() != clazz) return;
             NetworkEvent.Context context = event.getSource().get();
             if (context.getPacketHandled()) return;
-            FriendlyByteBuf buffer = new FriendlyByteBuf(event.getPayload().copy());
-            ResourceLocation type = buffer.readResourceLocation();
-            NetworkReceiver receiver = map.get(type);
+            // A slice shares the payload's memory but has its own indices, so the packet can still be read again
+            FriendlyByteBuf buffer = new FriendlyByteBuf(event.getPayload().slice());
+            NetworkReceiver receiver = receiverReader.apply(buffer);
             
             if (receiver != null) {
                 receiver.receive(buffer, new NetworkManager.PacketContext() {
@@ -124,6 +172,33 @@ public class NetworkManagerImpl {
         };
     }
     
+    private static NetworkReceiver readC2SReceiver(FriendlyByteBuf buffer) {
+        int index = buffer.readVarInt() - 1;
+        return index == -1 ? C2S.get(buffer.readResourceLocation()) : C2S.get(index);
+    }
+    
+    private static int getS2CIndex(ResourceLocation id) {
+        // The numbering itself is sent with full identifiers
+        if (id.equals(SYNC_IDS) || id.equals(DEFINE_IDS)) return -1;
+        int index = S2C_IDS.indexOf(id);
+        if (index != -1) return index;
+        synchronized (S2C_IDS) {
+            index = S2C_IDS.indexOf(id);
+            if (index == -1) {
+                index = S2C_IDS.put(id, null);
+                // Announced before the packet using it is sent, players joining later receive it with the rest of the numbering
+                MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+                if (server != null) {
+                    FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.buffer());
+                    buffer.writeVarInt(index);
+                    writeIds(buffer, new ResourceLocation[]{id});
+                    NetworkManager.sendToPlayers(server.getPlayerList().getPlayers(), DEFINE_IDS, buffer);
+                }
+            }
+            return index;
+        }
+    }
+    
     @OnlyIn(Dist.CLIENT)
     public static void registerS2CReceiver(ResourceLocation id, NetworkReceiver receiver) {
         S2C.put(id, receiver);
@@ -134,20 +209,38 @@ public class NetworkManagerImpl {
     }
     
     public static boolean canServerReceive(ResourceLocation id) {
-        return serverReceivables.contains(id);
+        return REMOTE_C2S.indexOf(id) != -1;
     }
     
     public static boolean canPlayerReceive(ServerPlayer player, ResourceLocation id) {
         return clientReceivables.get(player).contains(id);
     }
     
-    static FriendlyByteBuf sendSyncPacket(Map<ResourceLocation, NetworkReceiver> map) {
-        List<ResourceLocation> availableIds = Lists.newArrayList(map.keySet());
+    public static Collection<ServerPlayer> getTrackingPlayers(Entity entity) {
+        ChunkMap chunkMap = ((ServerLevel) entity.level).getChunkSource().chunkMap;
+        Object tracked = ((ChunkMapAccessor) chunkMap).getEntityMap().get(entity.getId());
+        return tracked == null ? Collections.emptySet() : Collections.unmodifiableSet(((TrackedEntityAccessor) tracked).getSeenBy());
+    }
+    
+    private static FriendlyByteBuf sendSyncPacket() {
         FriendlyByteBuf packetBuffer = new FriendlyByteBuf(Unpooled.buffer());
-        packetBuffer.writeInt(availableIds.size());
-        for (ResourceLocation availableId : availableIds) {
-            packetBuffer.writeResourceLocation(availableId);
-        }
+        writeIds(packetBuffer, C2S.getIds());
+        writeIds(packetBuffer, S2C_IDS.getIds());
         return packetBuffer;
     }
+    
+    static void writeIds(FriendlyByteBuf buffer, ResourceLocation[] ids) {
+        buffer.writeVarInt(ids.length);
+        for (ResourceLocation id : ids) {
+            buffer.writeResourceLocation(id);
+        }
+    }
+    
+    static ResourceLocation[] readIds(FriendlyByteBuf buffer) {
+        ResourceLocation[] ids = new ResourceLocation[buffer.readVarInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = buffer.readResourceLocation();
+        }
+        return ids;
+    }
 }
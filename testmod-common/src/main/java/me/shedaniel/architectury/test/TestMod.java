@@ -24,6 +24,9 @@ import me.shedaniel.architectury.test.debug.ConsoleMessageSink;
 import me.shedaniel.architectury.test.debug.DebugEvents;
 import me.shedaniel.architectury.test.debug.MessageSink;
 import me.shedaniel.architectury.test.debug.client.ClientOverlayMessageSink;
+import me.shedaniel.architectury.test.events.TestEventInvokers;
+import me.shedaniel.architectury.test.networking.TestMessageCodecs;
+import me.shedaniel.architectury.test.networking.TestNetworkHarness;
 import me.shedaniel.architectury.test.registry.TestRegistries;
 import me.shedaniel.architectury.test.registry.client.TestKeybinds;
 import me.shedaniel.architectury.utils.Env;
@@ -35,6 +38,9 @@ public class TestMod {
     
     public static void initialize() {
         DebugEvents.initialize();
+        TestEventInvokers.initialize();
+        TestMessageCodecs.initialize();
+        TestNetworkHarness.initialize();
         TestRegistries.initialize();
         if (Platform.getEnvironment() == Env.CLIENT)
             TestKeybinds.initialize();
@@ -0,0 +1,166 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package me.shedaniel.architectury.test.events;
+
+import me.shedaniel.architectury.event.Actor;
+import me.shedaniel.architectury.event.Event;
+import me.shedaniel.architectury.event.EventFactory;
+import me.shedaniel.architectury.event.EventPriority;
+import net.minecraft.world.InteractionResult;
+import net.minecraft.world.InteractionResultHolder;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static me.shedaniel.architectury.test.TestMod.SINK;
+
+/**
+ * Dispatches events of every invoker mode once at startup, so that broken generated invokers
+ * or a broken fallback to proxies fail the test mod instead of a release.
+ */
+public class TestEventInvokers {
+    private static final String GENERATED_PACKAGE = "me.shedaniel.architectury.impl.event.generated.";
+    
+    public static void initialize() {
+        testLoop();
+        testInteractionResult();
+        testInteractionResultHolder();
+        testConsumerLoop();
+        testActorLoop();
+        testFallback();
+        SINK.accept("Event invokers dispatched as expected");
+    }
+    
+    private static void testLoop() {
+        Event<LoopListener> event = EventFactory.createLoop(LoopListener.class);
+        List<String> calls = new ArrayList<>();
+        check(event.invoker(), true, "empty loop");
+        event.invoker().accept(calls, 0, 0L, 0.0);
+        check(calls.isEmpty(), "empty loop invoked listeners");
+        event.register((list, i, l, d) -> list.add("normal " + i + " " + l + " " + d));
+        event.register(EventPriority.HIGH, (list, i, l, d) -> list.add("high"));
+        // Wide and narrow primitives mixed, so that wrong local slots in the generated loop show up as wrong values
+        event.invoker().accept(calls, 1, 2L, 3.5);
+        check(event.invoker(), true, "loop");
+        check(calls.equals(Arrays.asList("high", "normal 1 2 3.5")), "loop invoked " + calls);
+    }
+    
+    private static void testInteractionResult() {
+        Event<ResultListener> event = EventFactory.createInteractionResult(ResultListener.class);
+        check(event.invoker().apply("empty") == InteractionResult.PASS, "empty interaction result event did not pass");
+        List<String> calls = new ArrayList<>();
+        event.register(value -> {
+            calls.add("pass");
+            return InteractionResult.PASS;
+        });
+        event.register(value -> {
+            calls.add("success");
+            return InteractionResult.SUCCESS;
+        });
+        event.register(value -> {
+            calls.add("unreachable");
+            return InteractionResult.FAIL;
+        });
+        check(event.invoker(), true, "interaction result");
+        check(event.invoker().apply("value") == InteractionResult.SUCCESS, "interaction result did not stop at the first non pass result");
+        check(calls.equals(Arrays.asList("pass", "success")), "interaction result invoked " + calls);
+    }
+    
+    private static void testInteractionResultHolder() {
+        Event<HolderListener> event = EventFactory.createInteractionResultHolder(HolderListener.class);
+        check(event.invoker().apply("empty").getResult() == InteractionResult.PASS, "empty interaction result holder event did not pass");
+        event.register(value -> InteractionResultHolder.pass(value + " ignored"));
+        event.register(value -> InteractionResultHolder.success(value + " handled"));
+        event.register(value -> InteractionResultHolder.fail(value + " unreachable"));
+        check(event.invoker(), true, "interaction result holder");
+        InteractionResultHolder<String> result = event.invoker().apply("value");
+        check(result.getResult() == InteractionResult.SUCCESS && "value handled".equals(result.getObject()), "interaction result holder returned " + result.getObject());
+    }
+    
+    private static void testConsumerLoop() {
+        Event<Consumer<List<String>>> event = EventFactory.createConsumerLoop((Class<List<String>>) (Class<?>) List.class);
+        event.register(list -> list.add("first"));
+        event.register(list -> list.add("second"));
+        List<String> calls = new ArrayList<>();
+        event.invoker().accept(calls);
+        check(calls.equals(Arrays.asList("first", "second")), "consumer loop invoked " + calls);
+    }
+    
+    private static void testActorLoop() {
+        Event<Actor<List<String>>> event = EventFactory.createActorLoop((Class<List<String>>) (Class<?>) List.class);
+        event.register(list -> {
+            list.add("pass");
+            return InteractionResult.PASS;
+        });
+        event.register(list -> {
+            list.add("fail");
+            return InteractionResult.FAIL;
+        });
+        event.register(list -> {
+            list.add("unreachable");
+            return InteractionResult.PASS;
+        });
+        List<String> calls = new ArrayList<>();
+        check(event.invoker().act(calls) == InteractionResult.FAIL, "actor loop did not stop at the first non pass result");
+        check(calls.equals(Arrays.asList("pass", "fail")), "actor loop invoked " + calls);
+    }
+    
+    private static void testFallback() {
+        // Package private interfaces can not be implemented from the generated classes' loader, so these use proxies
+        Event<HiddenListener> event = EventFactory.createInteractionResult(HiddenListener.class);
+        event.register(value -> InteractionResult.PASS);
+        event.register(value -> value.isEmpty() ? InteractionResult.PASS : InteractionResult.CONSUME);
+        check(event.invoker(), false, "fallback");
+        check(event.invoker().apply("") == InteractionResult.PASS, "fallback did not pass");
+        check(event.invoker().apply("value") == InteractionResult.CONSUME, "fallback did not return the listener's result");
+    }
+    
+    private static void check(Object invoker, boolean generated, String name) {
+        boolean isGenerated = invoker.getClass().getName().startsWith(GENERATED_PACKAGE);
+        if (generated ? !isGenerated : !Proxy.isProxyClass(invoker.getClass())) {
+            throw new IllegalStateException("The " + name + " invoker is a " + invoker.getClass().getName() + ", expected " + (generated ? "a generated invoker" : "a proxy"));
+        }
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("Event dispatch is broken, " + message);
+        }
+    }
+    
+    public interface LoopListener {
+        void accept(List<String> calls, int i, long l, double d);
+    }
+    
+    public interface ResultListener {
+        InteractionResult apply(String value);
+    }
+    
+    public interface HolderListener {
+        InteractionResultHolder<String> apply(String value);
+    }
+    
+    interface HiddenListener {
+        InteractionResult apply(String value);
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package me.shedaniel.architectury.test.networking;
+
+import com.mojang.authlib.GameProfile;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import me.shedaniel.architectury.annotations.ExpectPlatform;
+import me.shedaniel.architectury.impl.networking.PacketBundler;
+import me.shedaniel.architectury.impl.networking.PacketFragmenter;
+import me.shedaniel.architectury.networking.NetworkChannel;
+import me.shedaniel.architectury.networking.NetworkManager;
+import me.shedaniel.architectury.networking.NetworkMetrics;
+import me.shedaniel.architectury.platform.Platform;
+import me.shedaniel.architectury.utils.Env;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientPacketListener;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.PacketFlow;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
+import net.minecraft.network.protocol.game.ClientboundCustomPayloadPacket;
+import net.minecraft.network.protocol.game.ServerGamePacketListener;
+import net.minecraft.network.protocol.game.ServerboundCustomPayloadPacket;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.RunningOnDifferentThreadException;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.level.ServerPlayerGameMode;
+import net.minecraft.server.network.ServerGamePacketListenerImpl;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives {@link NetworkChannel}s through fake players on the integrated server, to measure their throughput without
+ * real clients. Each virtual client is a {@link ServerPlayer} that is not added to a level, whose connection captures
+ * the packets sent to it instead of writing them to a socket.
+ * <p>
+ * Messages to virtual clients take the real send path of the channel, with coalescing, batching, fragmentation and the
+ * framing of the platform, and the captured packets are handed to the packet listener of this client as if it had
+ * read them from its own connection. Messages from virtual clients are framed like a client frames them, and handed to
+ * the packet listener of their fake player, so the server receives, rate limits and hands them off like those of any
+ * player. Coalesced and batched messages are flushed, and fragments are sent, by the ticks of the server and client.
+ * <p>
+ * The client cannot tell the virtual clients apart, so requests to them are answered for the player of this client
+ * and never complete. The traffic in bytes is measured by {@link NetworkMetrics}, as for real connections.
+ * <p>
+ * The harness is driven from the server thread, the packets to virtual clients are received on the client thread.
+ */
+public final class NetworkHarness {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    /**
+     * {@code com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}, which not every JVM has.
+     */
+    @Nullable
+    private static final MethodHandle GET_ALLOCATED_BYTES = findAllocatedBytes();
+    private final MinecraftServer server;
+    private final List<VirtualClient> clients = new ArrayList<>();
+    private final Queue<Frame> inFlight = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger receiving = new AtomicInteger();
+    // Guarded by this, as packets to virtual clients are received on the client thread
+    private long sent;
+    private long delivered;
+    private long busyNanos;
+    private long allocatedBytes;
+    private final LongArrayList sendNanos = new LongArrayList();
+    private final LongArrayList receiveNanos = new LongArrayList();
+    private final LongArrayList latencyNanos = new LongArrayList();
+    
+    public NetworkHarness(MinecraftServer server) {
+        if (Platform.getEnvironment() != Env.CLIENT || server.isDedicatedServer()) {
+            throw new IllegalStateException("The network harness needs the integrated server and its client!");
+        }
+        this.server = server;
+    }
+    
+    /**
+     * Connects a virtual client with a fake player of the name.
+     */
+    public VirtualClient connect(String name) {
+        ServerLevel level = server.overworld();
+        GameProfile profile = new GameProfile(UUID.nameUUIDFromBytes(("architectury-test:harness/" + name).getBytes(StandardCharsets.UTF_8)), name);
+        ServerPlayer player = new ServerPlayer(server, level, profile, new ServerPlayerGameMode(level));
+        VirtualClient client = new VirtualClient(name, player);
+        // Sets itself as the connection of the player, and as the listener of the connection
+        new ServerGamePacketListenerImpl(server, client.serverConnection, player);
+        // Declared like a client declares what it receives when joining, so that batched messages are bundled for it
+        receiveOnServer(client, createRegisterPacket(Arrays.asList(PacketBundler.BUNDLE, PacketFragmenter.FRAGMENT)));
+        clients.add(client);
+        return client;
+    }
+    
+    public List<VirtualClient> connect(int count) {
+        List<VirtualClient> connected = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            connected.add(connect("client" + clients.size()));
+        }
+        return connected;
+    }
+    
+    /**
+     * Disconnects the virtual client, dropping its packets in flight. Virtual clients of the same name share their
+     * player's UUID, so what the server tracks for a player is picked up again when it reconnects.
+     */
+    public void disconnect(VirtualClient client) {
+        if (!clients.remove(client)) return;
+        client.serverConnection.connected = false;
+        client.clientConnection.connected = false;
+        inFlight.removeIf(frame -> frame.client == client);
+    }
+    
+    public void disconnectAll() {
+        for (VirtualClient client : new ArrayList<>(clients)) {
+            disconnect(client);
+        }
+    }
+    
+    public List<VirtualClient> getClients() {
+        return Collections.unmodifiableList(clients);
+    }
+    
+    public <T> void sendToServer(VirtualClient client, NetworkChannel channel, T message) {
+        long allocated = getAllocatedBytes();
+        long start = System.nanoTime();
+        Map.Entry<ResourceLocation, FriendlyByteBuf> encoded = channel.encode(NetworkManager.c2s(), message);
+        FriendlyByteBuf buf = encoded.getValue();
+        try {
+            // As NetworkManager.sendToServer, through the connection of the virtual client
+            if (NetworkMetrics.isEnabled()) {
+                NetworkMetrics.record(NetworkManager.c2s(), true, encoded.getKey(), client.player, buf.readableBytes());
+            }
+            if (PacketFragmenter.needsFragmenting(NetworkManager.c2s(), buf)) {
+                PacketFragmenter.send(NetworkManager.c2s(), client.clientConnection, encoded.getKey(), PacketFragmenter.copy(NetworkManager.c2s(), buf));
+            } else {
+                client.clientConnection.send(NetworkManager.toPacket(NetworkManager.c2s(), encoded.getKey(), buf));
+            }
+        } finally {
+            buf.release();
+        }
+        recordSend(start, allocated);
+    }
+    
+    public <T> void sendToClient(VirtualClient client, NetworkChannel channel, T message) {
+        long allocated = getAllocatedBytes();
+        long start = System.nanoTime();
+        channel.sendToPlayer(client.player, message);
+        recordSend(start, allocated);
+    }
+    
+    /**
+     * Sends the message to every virtual client at once, so that it is encoded once for all of them.
+     */
+    public <T> void sendToAll(NetworkChannel channel, T message) {
+        List<ServerPlayer> players = new ArrayList<>(clients.size());
+        for (VirtualClient client : clients) {
+            players.add(client.player);
+        }
+        long allocated = getAllocatedBytes();
+        long start = System.nanoTime();
+        channel.sendToPlayers(players, message);
+        recordSend(start, allocated);
+    }
+    
+    private synchronized void recordSend(long start, long allocated) {
+        long end = System.nanoTime();
+        sendNanos.add(end - start);
+        busyNanos += end - start;
+        addAllocatedBytes(allocated);
+        sent++;
+    }
+    
+    /**
+     * Delivers the packets captured since the last tick, those to the server right away and those to virtual clients
+     * on the client thread. Meant to be called once per server tick.
+     */
+    public void tick() {
+        long allocated = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (Frame frame; (frame = inFlight.poll()) != null; ) {
+            if (frame.side == NetworkManager.Side.C2S) {
+                long received = System.nanoTime();
+                receiveOnServer(frame.client, frame.packet);
+                recordReceive(received, frame);
+            } else {
+                receiving.incrementAndGet();
+                receiveOnClient(frame);
+            }
+        }
+        synchronized (this) {
+            busyNanos += System.nanoTime() - start;
+            addAllocatedBytes(allocated);
+        }
+    }
+    
+    /**
+     * @return whether every captured packet has been received
+     */
+    public boolean isIdle() {
+        return inFlight.isEmpty() && receiving.get() == 0;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static void receiveOnServer(VirtualClient client, Packet<?> packet) {
+        try {
+            ((Packet<ServerGamePacketListener>) packet).handle(client.player.connection);
+        } catch (RunningOnDifferentThreadException ignored) {
+            // Handed to the server thread by the platform, as when it is read on a network thread
+        }
+    }
+    
+    @Environment(EnvType.CLIENT)
+    @SuppressWarnings("unchecked")
+    private void receiveOnClient(Frame frame) {
+        Minecraft minecraft = Minecraft.getInstance();
+        minecraft.execute(() -> {
+            try {
+                ClientPacketListener listener = minecraft.getConnection();
+                if (listener == null) return;
+                long start = System.nanoTime();
+                ((Packet<ClientGamePacketListener>) frame.packet).handle(listener);
+                recordReceive(start, frame);
+            } finally {
+                receiving.decrementAndGet();
+            }
+        });
+    }
+    
+    private synchronized void recordReceive(long start, Frame frame) {
+        long end = System.nanoTime();
+        receiveNanos.add(end - start);
+        latencyNanos.add(end - frame.sentNanos);
+        busyNanos += end - start;
+        delivered++;
+    }
+    
+    /**
+     * @return the packet a client sends when joining, to declare the ids it is able to receive
+     */
+    @ExpectPlatform
+    private static Packet<?> createRegisterPacket(Collection<ResourceLocation> ids) {
+        throw new AssertionError();
+    }
+    
+    public synchronized Report report() {
+        return new Report(this);
+    }
+    
+    /**
+     * Clears the measurements and drops the packets in flight, keeping the clients connected.
+     */
+    public synchronized void reset() {
+        inFlight.clear();
+        sent = delivered = busyNanos = allocatedBytes = 0;
+        sendNanos.clear();
+        receiveNanos.clear();
+        latencyNanos.clear();
+    }
+    
+    @Nullable
+    private static MethodHandle findAllocatedBytes() {
+        try {
+            Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+            if (!type.isInstance(THREADS) || !(boolean) type.getMethod("isThreadAllocatedMemorySupported").invoke(THREADS)) return null;
+            Method method = type.getMethod("getThreadAllocatedBytes", long.class);
+            return MethodHandles.publicLookup().unreflect(method).bindTo(THREADS);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+    
+    private static long getAllocatedBytes() {
+        if (GET_ALLOCATED_BYTES == null) return -1;
+        try {
+            return (long) GET_ALLOCATED_BYTES.invokeExact(Thread.currentThread().getId());
+        } catch (Throwable throwable) {
+            return -1;
+        }
+    }
+    
+    private void addAllocatedBytes(long before) {
+        if (before != -1 && allocatedBytes != -1) {
+            allocatedBytes += getAllocatedBytes() - before;
+        } else {
+            allocatedBytes = -1;
+        }
+    }
+    
+    public final class VirtualClient {
+        private final String name;
+        private final ServerPlayer player;
+        private final VirtualConnection serverConnection;
+        private final VirtualConnection clientConnection;
+        
+        private VirtualClient(String name, ServerPlayer player) {
+            this.name = name;
+            this.player = player;
+            this.serverConnection = new VirtualConnection(NetworkManager.s2c(), this);
+            this.clientConnection = new VirtualConnection(NetworkManager.c2s(), this);
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public ServerPlayer getPlayer() {
+            return player;
+        }
+        
+        /**
+         * @return whether the client is connected, it is disconnected when the server disconnects its player
+         */
+        public boolean isConnected() {
+            return serverConnection.connected;
+        }
+        
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+    
+    /**
+     * A connection that captures the custom payloads sent through it, which are the packets sent to the side.
+     */
+    private final class VirtualConnection extends Connection {
+        private final NetworkManager.Side side;
+        private final VirtualClient client;
+        private volatile boolean connected = true;
+        
+        private VirtualConnection(NetworkManager.Side side, VirtualClient client) {
+            super(side == NetworkManager.Side.S2C ? PacketFlow.SERVERBOUND : PacketFlow.CLIENTBOUND);
+            this.side = side;
+            this.client = client;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public void send(Packet<?> packet, @Nullable GenericFutureListener<? extends Future<? super Void>> listener) {
+            if (!connected) return;
+            if (packet instanceof ClientboundCustomPayloadPacket || packet instanceof ServerboundCustomPayloadPacket) {
+                inFlight.add(new Frame(side, client, packet, System.nanoTime()));
+            }
+            if (listener != null) {
+                // Written as soon as it is captured
+                try {
+                    ((GenericFutureListener<Future<Void>>) listener).operationComplete(ImmediateEventExecutor.INSTANCE.newSucceededFuture(null));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+        
+        @Override
+        public void disconnect(Component reason) {
+            connected = false;
+        }
+        
+        @Override
+        public void setReadOnly() {
+        }
+    }
+    
+    private static final class Frame {
+        private final NetworkManager.Side side;
+        private final VirtualClient client;
+        private final Packet<?> packet;
+        private final long sentNanos;
+        
+        private Frame(NetworkManager.Side side, VirtualClient client, Packet<?> packet, long sentNanos) {
+            this.side = side;
+            this.client = client;
+            this.packet = packet;
+            this.sentNanos = sentNanos;
+        }
+    }
+    
+    /**
+     * The measurements since the harness was created or last reset. Send times span the whole send path up to the
+     * packet being captured, or queued when it is coalesced, batched or fragmented. Latencies are from a packet being
+     * captured to the return of the platform's handling of it, so they include the ticks it waited in flight but not
+     * the work it queued. Packets are counted once, so a bundle or a fragment counts as one delivery.
+     */
+    public static final class Report {
+        private final long sent;
+        private final long delivered;
+        private final long busyNanos;
+        private final long allocatedBytes;
+        private final Percentiles send;
+        private final Percentiles receive;
+        private final Percentiles latency;
+        
+        private Report(NetworkHarness harness) {
+            this.sent = harness.sent;
+            this.delivered = harness.delivered;
+            this.busyNanos = harness.busyNanos;
+            this.allocatedBytes = harness.allocatedBytes;
+            this.send = new Percentiles(harness.sendNanos);
+            this.receive = new Percentiles(harness.receiveNanos);
+            this.latency = new Percentiles(harness.latencyNanos);
+        }
+        
+        public long getSent() {
+            return sent;
+        }
+        
+        public long getDelivered() {
+            return delivered;
+        }
+        
+        /**
+         * @return the messages sent per second of time spent sending and receiving
+         */
+        public double getMessagesPerSecond() {
+            return busyNanos == 0 ? 0 : sent * 1e9 / busyNanos;
+        }
+        
+        /**
+         * @return the bytes allocated by the server thread per message sent, or -1 if the JVM does not measure it
+         */
+        public long getAllocatedBytesPerMessage() {
+            return allocatedBytes == -1 || sent == 0 ? -1 : allocatedBytes / sent;
+        }
+        
+        public Percentiles getSendNanos() {
+            return send;
+        }
+        
+        public Percentiles getReceiveNanos() {
+            return receive;
+        }
+        
+        public Percentiles getLatencyNanos() {
+            return latency;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d sent, %d delivered, %.0f msg/s, %d B/msg allocated%nsend %s%nreceive %s%nlatency %s",
+                    sent, delivered, getMessagesPerSecond(), getAllocatedBytesPerMessage(), send, receive, latency);
+        }
+    }
+    
+    public static final class Percentiles {
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+        
+        private Percentiles(LongArrayList samples) {
+            long[] sorted = samples.toLongArray();
+            Arrays.sort(sorted);
+            this.p50 = get(sorted, 0.5);
+            this.p90 = get(sorted, 0.9);
+            this.p99 = get(sorted, 0.99);
+            this.max = sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+        }
+        
+        private static long get(long[] sorted, double percentile) {
+            if (sorted.length == 0) return 0;
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+        }
+        
+        public long getP50() {
+            return p50;
+        }
+        
+        public long getP90() {
+            return p90;
+        }
+        
+        public long getP99() {
+            return p99;
+        }
+        
+        public long getMax() {
+            return max;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("p50 %dns, p90 %dns, p99 %dns, max %dns", p50, p90, p99, max);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package me.shedaniel.architectury.test.networking;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import me.shedaniel.architectury.networking.MessageCodec;
+import me.shedaniel.architectury.networking.NetworkField;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static me.shedaniel.architectury.test.TestMod.SINK;
+
+/**
+ * Round trips messages through their generated codecs once at startup. The codecs are loaded by a class loader that
+ * only sees JDK classes, so a codec referring to a message or game class by name fails here instead of only once
+ * classes are remapped.
+ */
+public class TestMessageCodecs {
+    public static void initialize() {
+        testBooleans();
+        testMessage();
+        testRecursive();
+        testMalformed();
+        SINK.accept("Message codecs round tripped as expected");
+    }
+    
+    private static void testBooleans() {
+        Flags flags = new Flags();
+        flags.first = true;
+        flags.third = true;
+        flags.fifth = true;
+        FriendlyByteBuf buf = encode(Flags.class, flags);
+        // Packed into a single varint byte
+        check(buf.readableBytes() == 1, "booleans were written as " + buf.readableBytes() + " bytes");
+        check(flags.toString().equals(decode(Flags.class, buf).toString()), "booleans did not round trip");
+    }
+    
+    private static void testMessage() {
+        Message message = new Message();
+        message.id = 300;
+        message.hash = -5;
+        message.time = Long.MAX_VALUE;
+        message.visible = true;
+        message.name = "message";
+        message.locked = false;
+        message.uuid = new UUID(3, 4);
+        message.state = State.CLOSED;
+        message.location = new ResourceLocation("architectury-test", "message");
+        message.pos = new BlockPos(1, -64, 3);
+        message.label = Optional.of("label");
+        message.missing = Optional.empty();
+        message.inner = new Inner();
+        message.inner.value = 7;
+        message.inner.enabled = true;
+        message.inners = Arrays.asList(message.inner, new Inner());
+        message.ratio = 0.5;
+        message.boxed = -1;
+        round(Message.class, message);
+    }
+    
+    private static void testRecursive() {
+        Node leaf = new Node();
+        leaf.name = "leaf";
+        leaf.next = Optional.empty();
+        leaf.children = Collections.emptyList();
+        Node middle = new Node();
+        middle.name = "middle";
+        middle.next = Optional.of(leaf);
+        middle.children = new ArrayList<>(Collections.singletonList(leaf));
+        Node root = new Node();
+        root.name = "root";
+        root.next = Optional.of(middle);
+        root.children = Arrays.asList(middle, leaf);
+        round(Node.class, root);
+    }
+    
+    private static void testMalformed() {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        buf.writeVarInt(State.values().length);
+        checkRejected(Stateful.class, buf, "an unknown enum constant");
+        Node node = new Node();
+        node.name = "deep";
+        node.next = Optional.empty();
+        node.children = Collections.emptyList();
+        for (int i = 0; i < 100; i++) {
+            Node parent = new Node();
+            parent.name = "deep";
+            parent.next = Optional.of(node);
+            parent.children = Collections.emptyList();
+            node = parent;
+        }
+        checkRejected(Node.class, encode(Node.class, node), "messages nested 100 deep");
+    }
+    
+    private static void checkRejected(Class<?> type, FriendlyByteBuf buf, String what) {
+        try {
+            MessageCodec.of(type).decode(buf);
+        } catch (DecoderException expected) {
+            return;
+        }
+        throw new IllegalStateException("Message codecs are broken, " + what + " decoded without an error");
+    }
+    
+    private static <T> void round(Class<T> type, T message) {
+        T decoded = decode(type, encode(type, message));
+        check(message.toString().equals(decoded.toString()), type.getSimpleName() + " decoded as " + decoded + ", expected " + message);
+    }
+    
+    private static <T> FriendlyByteBuf encode(Class<T> type, T message) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        MessageCodec.of(type).encode(message, buf);
+        return buf;
+    }
+    
+    private static <T> T decode(Class<T> type, FriendlyByteBuf buf) {
+        T message = MessageCodec.of(type).decode(buf);
+        check(!buf.isReadable(), type.getSimpleName() + " left " + buf.readableBytes() + " bytes unread");
+        return message;
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("Message codecs are broken, " + message);
+        }
+    }
+    
+    private enum State {
+        OPEN,
+        CLOSED,
+    }
+    
+    private static class Stateful {
+        @NetworkField(0)
+        private State state;
+    }
+    
+    private static class Flags {
+        @NetworkField(0)
+        private boolean first;
+        @NetworkField(1)
+        private boolean second;
+        @NetworkField(2)
+        private boolean third;
+        @NetworkField(3)
+        private boolean fourth;
+        @NetworkField(4)
+        private boolean fifth;
+        
+        @Override
+        public String toString() {
+            return first + " " + second + " " + third + " " + fourth + " " + fifth;
+        }
+    }
+    
+    private static class Base {
+        @NetworkField(0)
+        protected int id;
+        @NetworkField(value = 1, fixed = true)
+        protected int hash;
+    }
+    
+    /**
+     * Booleans between other fields, inherited fields and every kind of reference field.
+     */
+    private static class Message extends Base {
+        @NetworkField(2)
+        private long time;
+        @NetworkField(3)
+        private boolean visible;
+        @NetworkField(4)
+        private String name;
+        @NetworkField(5)
+        private boolean locked;
+        @NetworkField(6)
+        private UUID uuid;
+        @NetworkField(7)
+        private State state;
+        @NetworkField(8)
+        private ResourceLocation location;
+        @NetworkField(9)
+        private BlockPos pos;
+        @NetworkField(10)
+        private Optional<String> label;
+        @NetworkField(11)
+        private Optional<String> missing;
+        @NetworkField(12)
+        private Inner inner;
+        @NetworkField(13)
+        private List<Inner> inners;
+        @NetworkField(14)
+        private double ratio;
+        @NetworkField(15)
+        private Integer boxed;
+        
+        private Message() {}
+        
+        @Override
+        public String toString() {
+            return id + " " + hash + " " + time + " " + visible + " " + name + " " + locked + " " + uuid + " " + state + " " + location + " " + pos + " "
+                   + label + " " + missing + " " + inner + " " + inners + " " + ratio + " " + boxed;
+        }
+    }
+    
+    private static class Inner {
+        @NetworkField(0)
+        private int value;
+        @NetworkField(1)
+        private boolean enabled;
+        
+        @Override
+        public String toString() {
+            return "Inner[" + value + " " + enabled + "]";
+        }
+    }
+    
+    private static class Node {
+        @NetworkField(0)
+        private String name;
+        @NetworkField(1)
+        private Optional<Node> next;
+        @NetworkField(2)
+        private List<Node> children;
+        
+        @Override
+        public String toString() {
+            return "Node[" + name + " " + next + " " + children + "]";
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package me.shedaniel.architectury.test.networking;
+
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import me.shedaniel.architectury.event.events.CommandRegistrationEvent;
+import me.shedaniel.architectury.event.events.LifecycleEvent;
+import me.shedaniel.architectury.event.events.TickEvent;
+import me.shedaniel.architectury.networking.NetworkChannel;
+import me.shedaniel.architectury.networking.NetworkManager;
+import me.shedaniel.architectury.platform.Platform;
+import me.shedaniel.architectury.test.TestMod;
+import me.shedaniel.architectury.utils.Env;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.chat.TextComponent;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static me.shedaniel.architectury.test.TestMod.SINK;
+
+/**
+ * {@code /architectury_harness <clients> <ticks>}, runs a scenario through the {@link NetworkHarness} on the integrated
+ * server: every tick the server sends coalesced entity positions to all virtual clients and each of them sends an
+ * input, and every second the server sends each of them a chunk large enough to be fragmented. Once the ticks are over
+ * and every packet has been received, the measurements are printed and the virtual clients disconnected.
+ */
+public class TestNetworkHarness {
+    private static final NetworkChannel CHANNEL = NetworkChannel.create(new ResourceLocation(TestMod.MOD_ID, "harness"));
+    private static final int ENTITIES = 8;
+    private static final int POSITIONS_PER_TICK = 16;
+    private static final int CHUNK_INTERVAL = 20;
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int MAX_DRAIN_TICKS = 100;
+    private static final AtomicInteger POSITIONS = new AtomicInteger();
+    private static final AtomicInteger CHUNKS = new AtomicInteger();
+    private static final AtomicInteger INPUTS = new AtomicInteger();
+    @Nullable
+    private static Scenario running;
+    
+    public static void initialize() {
+        CHANNEL.register(NetworkManager.s2c(), Position.class, Position::write, Position::new, (message, context) -> POSITIONS.incrementAndGet());
+        CHANNEL.register(NetworkManager.s2c(), Chunk.class, Chunk::write, Chunk::new, (message, context) -> CHUNKS.incrementAndGet());
+        CHANNEL.register(NetworkManager.c2s(), Input.class, Input::write, Input::new, (message, context) -> INPUTS.incrementAndGet());
+        CHANNEL.registerCoalescingKey(Position.class, position -> position.entity);
+        CHANNEL.setBatched(true);
+        
+        CommandRegistrationEvent.EVENT.register((dispatcher, selection) -> dispatcher.register(Commands.literal("architectury_harness")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.argument("clients", IntegerArgumentType.integer(1, 1000))
+                        .then(Commands.argument("ticks", IntegerArgumentType.integer(1, 72000))
+                                .executes(TestNetworkHarness::start)))));
+        TickEvent.SERVER_POST.register(server -> {
+            if (running != null && running.tick()) {
+                running = null;
+            }
+        });
+        LifecycleEvent.SERVER_STOPPING.register(server -> {
+            if (running != null) {
+                running.harness.disconnectAll();
+                running = null;
+            }
+        });
+    }
+    
+    private static int start(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        MinecraftServer server = source.getServer();
+        if (Platform.getEnvironment() != Env.CLIENT || server.isDedicatedServer()) {
+            source.sendFailure(new TextComponent("The network harness only runs on an integrated server"));
+            return 0;
+        }
+        if (running != null) {
+            source.sendFailure(new TextComponent("The network harness is already running"));
+            return 0;
+        }
+        int clients = IntegerArgumentType.getInteger(context, "clients");
+        int ticks = IntegerArgumentType.getInteger(context, "ticks");
+        running = new Scenario(source, new NetworkHarness(server), clients, ticks);
+        source.sendSuccess(new TextComponent("Running the network harness with " + clients + " clients for " + ticks + " ticks"), false);
+        return 1;
+    }
+    
+    private static class Scenario {
+        private final CommandSourceStack source;
+        private final NetworkHarness harness;
+        private final int ticks;
+        private final Random random = new Random(0);
+        private int tick;
+        
+        private Scenario(CommandSourceStack source, NetworkHarness harness, int clients, int ticks) {
+            this.source = source;
+            this.harness = harness;
+            this.ticks = ticks;
+            harness.connect(clients);
+            POSITIONS.set(0);
+            CHUNKS.set(0);
+            INPUTS.set(0);
+        }
+        
+        /**
+         * @return whether the scenario is over
+         */
+        private boolean tick() {
+            if (tick < ticks) {
+                for (int i = 0; i < POSITIONS_PER_TICK; i++) {
+                    harness.sendToAll(CHANNEL, new Position(i % ENTITIES, random.nextDouble(), random.nextDouble(), random.nextDouble()));
+                }
+                if (tick % CHUNK_INTERVAL == 0) {
+                    byte[] data = new byte[CHUNK_SIZE];
+                    random.nextBytes(data);
+                    harness.sendToAll(CHANNEL, new Chunk(data));
+                }
+                for (NetworkHarness.VirtualClient client : harness.getClients()) {
+                    harness.sendToServer(client, CHANNEL, new Input(tick));
+                }
+            }
+            harness.tick();
+            tick++;
+            if (tick < ticks || !harness.isIdle() && tick < ticks + MAX_DRAIN_TICKS) {
+                return false;
+            }
+            report();
+            harness.disconnectAll();
+            return true;
+        }
+        
+        private void report() {
+            String received = "Received " + POSITIONS.get() + " positions, " + CHUNKS.get() + " chunks and " + INPUTS.get() + " inputs"
+                              + (harness.isIdle() ? "" : ", some packets were still in flight");
+            SINK.accept("Network harness finished after %d ticks%n%s%n%s", ticks, harness.report(), received);
+            for (String line : (harness.report() + "\n" + received).split("\\R")) {
+                source.sendSuccess(new TextComponent(line), false);
+            }
+        }
+    }
+    
+    private static class Position {
+        private final int entity;
+        private final double x;
+        private final double y;
+        private final double z;
+        
+        private Position(int entity, double x, double y, double z) {
+            this.entity = entity;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+        
+        private Position(FriendlyByteBuf buf) {
+            this(buf.readVarInt(), buf.readDouble(), buf.readDouble(), buf.readDouble());
+        }
+        
+        private void write(FriendlyByteBuf buf) {
+            buf.writeVarInt(entity);
+            buf.writeDouble(x);
+            buf.writeDouble(y);
+            buf.writeDouble(z);
+        }
+    }
+    
+    private static class Chunk {
+        private final byte[] data;
+        
+        private Chunk(byte[] data) {
+            this.data = data;
+        }
+        
+        private Chunk(FriendlyByteBuf buf) {
+            this(buf.readByteArray(CHUNK_SIZE));
+        }
+        
+        private void write(FriendlyByteBuf buf) {
+            buf.writeByteArray(data);
+        }
+    }
+    
+    private static class Input {
+        private final int tick;
+        
+        private Input(int tick) {
+            this.tick = tick;
+        }
+        
+        private Input(FriendlyByteBuf buf) {
+            this(buf.readVarInt());
+        }
+        
+        private void write(FriendlyByteBuf buf) {
+            buf.writeVarInt(tick);
+        }
+    }
+}
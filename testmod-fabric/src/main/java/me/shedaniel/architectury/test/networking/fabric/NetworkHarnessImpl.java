@@ -0,0 +1,53 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package me.shedaniel.architectury.test.networking.fabric;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ServerboundCustomPayloadPacket;
+import net.minecraft.resources.ResourceLocation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.StringJoiner;
+
+public class NetworkHarnessImpl {
+    private static final ResourceLocation REGISTER = new ResourceLocation("minecraft", "register");
+    
+    public static Packet<?> createRegisterPacket(Collection<ResourceLocation> ids) {
+        StringJoiner joiner = new StringJoiner("\0");
+        for (ResourceLocation id : ids) {
+            joiner.add(id.toString());
+        }
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        buf.writeResourceLocation(REGISTER);
+        buf.writeBytes(joiner.toString().getBytes(StandardCharsets.US_ASCII));
+        // The constructor taking the payload is only there on the client
+        ServerboundCustomPayloadPacket packet = new ServerboundCustomPayloadPacket();
+        try {
+            packet.read(buf);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return packet;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * This file is part of architectury.
+ * Copyright (C) 2020, 2021 shedaniel
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package me.shedaniel.architectury.test.networking.forge;
+
+import io.netty.buffer.Unpooled;
+import me.shedaniel.architectury.networking.NetworkManager;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.Collection;
+
+public class NetworkHarnessImpl {
+    private static final ResourceLocation SYNC_IDS = new ResourceLocation("architectury", "sync_ids");
+    
+    public static Packet<?> createRegisterPacket(Collection<ResourceLocation> ids) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        buf.writeVarInt(ids.size());
+        for (ResourceLocation id : ids) {
+            buf.writeResourceLocation(id);
+        }
+        return NetworkManager.toPacket(NetworkManager.c2s(), SYNC_IDS, buf);
+    }
+}